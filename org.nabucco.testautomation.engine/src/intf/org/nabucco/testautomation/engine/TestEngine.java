@@ -18,11 +18,15 @@ package org.nabucco.testautomation.engine;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
+import org.nabucco.framework.base.facade.datatype.Identifier;
 import org.nabucco.testautomation.config.facade.datatype.TestConfiguration;
 import org.nabucco.testautomation.engine.base.client.ClientInteraction;
 import org.nabucco.testautomation.engine.base.context.TestContext;
+import org.nabucco.testautomation.engine.delta.ResultDelta;
 import org.nabucco.testautomation.result.facade.datatype.TestConfigurationResult;
+import org.nabucco.testautomation.result.facade.datatype.TestResult;
 import org.nabucco.testautomation.settings.facade.datatype.engine.TestExecutionInfo;
 import org.nabucco.testautomation.settings.facade.exception.engine.TestEngineException;
 
@@ -45,6 +49,70 @@ public interface TestEngine extends Remote {
      */
     public TestExecutionInfo executeTestConfiguration(TestConfiguration configuration, TestContext context) throws TestEngineException, RemoteException;
     
+    /**
+     * Executes a TestConfiguration with the given priority.
+     * 
+     * If all job slots are busy, the execution is queued and started as soon as a slot is free.
+     * Queued executions with a higher priority are started first. While queued, the status of
+     * the execution is INITIALIZED and its start time is the estimated start time.
+     * 
+     * @param configuration
+     *            The TestConfiguration to be executed.
+     * @param priority
+     *            The priority of the execution, higher values are started first.
+     * @return An information about the test status containing its job id
+     * @throws TestEngineException thrown, if a problem occurs before or during the test run
+     */
+    public TestExecutionInfo executeTestConfiguration(TestConfiguration configuration, TestContext context, int priority) throws TestEngineException, RemoteException;
+    
+    /**
+     * Executes a batch of TestConfigurations in a single call.
+     * 
+     * The batch is scheduled as one unit: either all TestConfigurations are accepted or all
+     * are rejected. The TestConfigurations are started in the given order as job slots become
+     * free.
+     * 
+     * @param configurations
+     *            The TestConfigurations to be executed.
+     * @param contexts
+     *            The TestContexts of the TestConfigurations, in the same order.
+     * @param priority
+     *            The priority of the executions, higher values are started first.
+     * @return The information about the test status of each TestConfiguration in the same order
+     * @throws TestEngineException thrown, if a problem occurs before or during the test run
+     */
+    public List<TestExecutionInfo> executeTestConfigurations(List<TestConfiguration> configurations, List<TestContext> contexts, int priority) throws TestEngineException, RemoteException;
+    
+    /**
+     * Accesses the status of a batch of tests.
+     * 
+     * @param testStatusList
+     *            TestStatusInfos of the test runner jobs containing the job ids
+     * @return The actual status of the jobs in the same order.
+     * @throws TestEngineException throw, if an error occurs
+     */
+    public List<TestExecutionInfo> getBatchStatus(List<TestExecutionInfo> testStatusList) throws TestEngineException, RemoteException;
+    
+    /**
+     * Interrupts the execution of a batch of tests. Queued tests of the batch are not started.
+     * 
+     * @param testStatusList
+     *            TestStatusInfos of the test runner jobs containing the job ids
+     * @return The actual status of the cancelled jobs in the same order.
+     * @throws TestEngineException throw, if an error occurs
+     */
+    public List<TestExecutionInfo> cancelBatch(List<TestExecutionInfo> testStatusList) throws TestEngineException, RemoteException;
+    
+    /**
+     * Gets the position of a queued test in the queue of the TestEngine.
+     * 
+     * @param testStatus
+     *            TestStatusInfo of the test runner job containing the job id
+     * @return the position starting with 1, or 0 if the test is not queued
+     * @throws TestEngineException throw, if an error occurs
+     */
+    public int getQueuePosition(TestExecutionInfo testStatus) throws TestEngineException, RemoteException;
+    
     /**
      * Accesses the status of an running test.
      * 
@@ -55,6 +123,21 @@ public interface TestEngine extends Remote {
      */
     public TestExecutionInfo getTestStatus(TestExecutionInfo testStatus) throws TestEngineException, RemoteException;
     
+    /**
+     * Waits until the status of a test or the currently executed TestScript or TestScriptElement
+     * differs from the given information, and returns the actual status. Clients track the
+     * progress of a test by passing the last returned information again.
+     * 
+     * @param testStatus
+     *            TestStatusInfo of the test runner job containing the job id and the status known
+     *            by the client
+     * @param timeout
+     *            the maximum time to wait in milliseconds
+     * @return The actual status of the job, unchanged if the timeout elapsed.
+     * @throws TestEngineException throw, if an error occurs
+     */
+    public TestExecutionInfo awaitTestStatus(TestExecutionInfo testStatus, long timeout) throws TestEngineException, RemoteException;
+    
     /**
      * Loads the result of a finished test.
      * 
@@ -64,6 +147,60 @@ public interface TestEngine extends Remote {
      * @return The complete testresult.
      */
     public TestConfigurationResult getTestConfigurationResult(TestExecutionInfo testStatus) throws TestEngineException, RemoteException;
+    
+    /**
+     * Loads a page of the top-level TestResults of a test, e.g. to load a large result in chunks.
+     * Screenshots and files are not contained, the ScreenshotTraces and FileTraces reference them
+     * by their image id and file id, to be read by {@link #getScreenshot} and {@link #getFile}.
+     * 
+     * @param testStatus TestStatusInfo of the test runner job containing the job id
+     * @param offset the index of the first TestResult
+     * @param limit the maximum number of TestResults, at most 100 are returned
+     * @return The TestResults, empty if the offset is beyond the last TestResult.
+     * @throws TestEngineException throw, if an error occurs
+     * @throws RemoteException throw, if an error occurs
+     */
+    public List<TestResult> getTestResults(TestExecutionInfo testStatus, int offset, int limit) throws TestEngineException, RemoteException;
+    
+    /**
+     * Loads the changes of the result of a test since a known version, e.g. to follow a running
+     * test without loading the complete result on every poll.
+     * 
+     * @param testStatus TestStatusInfo of the test runner job containing the job id
+     * @param knownVersion the version of the last delta received, 0 for the complete result
+     * @return The changed TestResults and TestScriptResults and the current version.
+     * @throws TestEngineException throw, if an error occurs
+     * @throws RemoteException throw, if an error occurs
+     */
+    public ResultDelta getResultDelta(TestExecutionInfo testStatus, long knownVersion) throws TestEngineException, RemoteException;
+    
+    /**
+     * Reads a range of a screenshot of a test. Clients read a screenshot by consecutive ranges
+     * until a range is shorter than requested.
+     * 
+     * @param testStatus TestStatusInfo of the test runner job containing the job id
+     * @param imageId the image id of the ScreenshotTrace
+     * @param offset the position of the first byte
+     * @param length the maximum number of bytes, at most 1 MB are returned
+     * @return The bytes read.
+     * @throws TestEngineException throw, if the screenshot does not exist or an error occurs
+     * @throws RemoteException throw, if an error occurs
+     */
+    public byte[] getScreenshot(TestExecutionInfo testStatus, Identifier imageId, long offset, int length) throws TestEngineException, RemoteException;
+    
+    /**
+     * Reads a range of a file of a test. Clients read a file by consecutive ranges until a range
+     * is shorter than requested.
+     * 
+     * @param testStatus TestStatusInfo of the test runner job containing the job id
+     * @param fileId the file id of the FileTrace
+     * @param offset the position of the first byte
+     * @param length the maximum number of bytes, at most 1 MB are returned
+     * @return The bytes read.
+     * @throws TestEngineException throw, if the file does not exist or an error occurs
+     * @throws RemoteException throw, if an error occurs
+     */
+    public byte[] getFile(TestExecutionInfo testStatus, Identifier fileId, long offset, int length) throws TestEngineException, RemoteException;
 
     /**
      * Interrupts the execution of the running test.
@@ -85,4 +222,25 @@ public interface TestEngine extends Remote {
      */
     public void setClientInteraction(TestExecutionInfo testStatus, ClientInteraction userInput) throws TestEngineException, RemoteException;
     
+    /**
+     * Lists the interrupted TestConfigurations having a checkpoint, e.g. after a restart of the
+     * TestEngine.
+     * 
+     * @return TestStatusInfos with status INTERRUPTED and the time of the last checkpoint as stop time
+     * @throws TestEngineException throw, if an error occurs
+     * @throws RemoteException throw, if an error occurs
+     */
+    public List<TestExecutionInfo> getResumableTestConfigurations() throws TestEngineException, RemoteException;
+    
+    /**
+     * Continues an interrupted TestConfiguration from its last checkpoint in a new job.
+     * TestConfigElements completed before the checkpoint are not executed again.
+     * 
+     * @param testStatus TestStatusInfo of the interrupted job containing the job id
+     * @return The status of the new job.
+     * @throws TestEngineException throw, if no checkpoint exists or an error occurs
+     * @throws RemoteException throw, if an error occurs
+     */
+    public TestExecutionInfo resumeTestConfiguration(TestExecutionInfo testStatus) throws TestEngineException, RemoteException;
+    
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.delta;
+
+import java.io.Serializable;
+
+import org.nabucco.testautomation.result.facade.datatype.TestResult;
+import org.nabucco.testautomation.result.facade.datatype.TestScriptResult;
+
+/**
+ * ResultChange
+ * <p>
+ * A node of a TestConfigurationResult changed since a given version, either a TestResult or a
+ * TestScriptResult. A changed TestResult is usually contained without its child TestResults and
+ * TestScriptResults, they are contained as changes of their own. A TestResult resumed from a
+ * checkpoint is contained with its children.
+ * <p>
+ * The node replaces the node at its index in the list of its parent, or is appended, if the
+ * index equals the size of the list. A node with index -1 was removed from its parent.
+ * 
+ * @author agent
+ */
+public final class ResultChange implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long version;
+
+    private final Long parentElementId;
+
+    private final int index;
+
+    private final TestResult testResult;
+
+    private final TestScriptResult testScriptResult;
+
+    /**
+     * Constructs a new ResultChange.
+     * 
+     * @param version
+     *            the version of the change
+     * @param parentElementId
+     *            the TestConfigElement id of the parent TestResult, null for top-level TestResults
+     * @param index
+     *            the index of the node in the TestResults or TestScriptResults of its parent
+     * @param testResult
+     *            the changed TestResult, or null
+     * @param testScriptResult
+     *            the changed TestScriptResult, or null
+     */
+    public ResultChange(long version, Long parentElementId, int index, TestResult testResult,
+            TestScriptResult testScriptResult) {
+        this.version = version;
+        this.parentElementId = parentElementId;
+        this.index = index;
+        this.testResult = testResult;
+        this.testScriptResult = testScriptResult;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Long getParentElementId() {
+        return parentElementId;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public TestResult getTestResult() {
+        return testResult;
+    }
+
+    public TestScriptResult getTestScriptResult() {
+        return testScriptResult;
+    }
+
+}
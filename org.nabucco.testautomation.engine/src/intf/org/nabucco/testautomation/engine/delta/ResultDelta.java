@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.delta;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ResultDelta
+ * <p>
+ * The changes of a TestConfigurationResult since a given version. Clients pass the version of
+ * the last delta to receive the next one.
+ * 
+ * @author agent
+ */
+public final class ResultDelta implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long version;
+
+    private final List<ResultChange> changes;
+
+    /**
+     * Constructs a new ResultDelta.
+     * 
+     * @param version
+     *            the current version of the result
+     * @param changes
+     *            the changes in the order of their versions
+     */
+    public ResultDelta(long version, List<ResultChange> changes) {
+        this.version = version;
+        this.changes = new ArrayList<ResultChange>(changes);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<ResultChange> getChanges() {
+        return Collections.unmodifiableList(changes);
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.net;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * FrameInputStream
+ * <p>
+ * Reads the frames written by a {@link FrameOutputStream} and inflates the deflated ones.
+ *
+ * @author agent
+ */
+class FrameInputStream extends InputStream {
+
+    private final DataInputStream in;
+
+    private final Inflater inflater = new Inflater();
+
+    private final byte[] buffer = new byte[FrameOutputStream.FRAME_SIZE];
+
+    private final byte[] deflated = new byte[FrameOutputStream.FRAME_SIZE];
+
+    private int position;
+
+    private int limit;
+
+    private volatile boolean closed;
+
+    /**
+     * Constructs a new FrameInputStream.
+     *
+     * @param in
+     *            the stream of the socket
+     */
+    FrameInputStream(InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        while (position == limit) {
+            if (!readFrame()) {
+                return -1;
+            }
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (position == limit) {
+            if (!readFrame()) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return limit - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        try {
+            in.close();
+        } finally {
+            end();
+        }
+    }
+
+    /**
+     * Releases the native memory of the {@link Inflater} without closing the underlying stream.
+     */
+    synchronized void end() {
+
+        if (!closed) {
+            closed = true;
+            inflater.end();
+        }
+    }
+
+    /**
+     * Reads the next frame into the buffer.
+     *
+     * @return true, if a frame was read, false at the end of the stream
+     * @throws IOException
+     *             thrown, if the frame is corrupt or cannot be read
+     */
+    private boolean readFrame() throws IOException {
+        int type = in.read();
+
+        if (type < 0) {
+            return false;
+        }
+
+        try {
+            int length = readLength();
+            position = 0;
+            limit = 0;
+
+            if (type == FrameOutputStream.RAW) {
+                in.readFully(buffer, 0, length);
+                limit = length;
+            } else if (type == FrameOutputStream.DEFLATED) {
+                int inflatedLength = readLength();
+                in.readFully(deflated, 0, length);
+                limit = inflate(length, inflatedLength);
+            } else {
+                throw new IOException("Corrupt frame of type " + type);
+            }
+        } catch (EOFException ex) {
+            throw new IOException("Incomplete frame of type " + type);
+        }
+        return true;
+    }
+
+    private int readLength() throws IOException {
+        int length = in.readInt();
+
+        if (length < 0 || length > FrameOutputStream.FRAME_SIZE) {
+            throw new IOException("Corrupt frame of length " + length);
+        }
+        return length;
+    }
+
+    private synchronized int inflate(int length, int inflatedLength) throws IOException {
+
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        inflater.reset();
+        inflater.setInput(deflated, 0, length);
+        int count = 0;
+
+        try {
+            while (count < inflatedLength && !inflater.finished()) {
+                int n = inflater.inflate(buffer, count, inflatedLength - count);
+
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                count += n;
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Corrupt deflated frame: " + ex.getMessage());
+        }
+
+        if (count != inflatedLength) {
+            throw new IOException("Corrupt deflated frame of length " + length);
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.net;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * FrameOutputStream
+ * <p>
+ * Buffers the written data and sends it as a frame when the buffer is full or the stream is
+ * flushed. RMI flushes after every call and return, so a frame never delays a message. A frame
+ * of at least the compression threshold is deflated, unless deflating does not shrink it.
+ * <p>
+ * A frame consists of its type, its length and its data. A deflated frame additionally contains
+ * the length of the inflated data.
+ *
+ * @author agent
+ */
+class FrameOutputStream extends OutputStream {
+
+    /**
+     * The maximum number of bytes of a frame.
+     */
+    static final int FRAME_SIZE = 64 * 1024;
+
+    static final int RAW = 0;
+
+    static final int DEFLATED = 1;
+
+    private final OutputStream out;
+
+    private final int threshold;
+
+    private final Deflater deflater;
+
+    private final byte[] buffer = new byte[FRAME_SIZE];
+
+    private final byte[] deflated = new byte[FRAME_SIZE];
+
+    private final byte[] header = new byte[9];
+
+    private int count;
+
+    private volatile boolean closed;
+
+    /**
+     * Constructs a new FrameOutputStream.
+     *
+     * @param out
+     *            the stream of the socket
+     * @param threshold
+     *            the number of bytes of a frame deflated at least
+     * @param level
+     *            the level of the {@link Deflater}
+     */
+    FrameOutputStream(OutputStream out, int threshold, int level) {
+        this.out = out;
+        this.threshold = threshold;
+        this.deflater = new Deflater(level);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+
+        if (count == buffer.length) {
+            writeFrame();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        while (len > 0) {
+            if (count == buffer.length) {
+                writeFrame();
+            }
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+
+        if (count > 0) {
+            writeFrame();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        if (closed) {
+            return;
+        }
+
+        try {
+            flush();
+        } finally {
+            end();
+            out.close();
+        }
+    }
+
+    /**
+     * Releases the native memory of the {@link Deflater} without flushing or closing the
+     * underlying stream.
+     */
+    synchronized void end() {
+
+        if (!closed) {
+            closed = true;
+            deflater.end();
+        }
+    }
+
+    private void writeFrame() throws IOException {
+        int length = count >= threshold ? deflate() : -1;
+
+        if (length < 0) {
+            header[0] = RAW;
+            writeInt(count, 1);
+            out.write(header, 0, 5);
+            out.write(buffer, 0, count);
+        } else {
+            header[0] = DEFLATED;
+            writeInt(length, 1);
+            writeInt(count, 5);
+            out.write(header, 0, 9);
+            out.write(deflated, 0, length);
+        }
+        count = 0;
+    }
+
+    /**
+     * Deflates the buffer.
+     *
+     * @return the number of deflated bytes, or -1 if deflating does not shrink the buffer
+     */
+    private synchronized int deflate() throws IOException {
+
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        deflater.reset();
+        deflater.setInput(buffer, 0, count);
+        deflater.finish();
+        int length = 0;
+
+        // the deflated data must be shorter than the raw data
+        while (!deflater.finished() && length < count) {
+            length += deflater.deflate(deflated, length, count - length);
+        }
+        return deflater.finished() && length < count ? length : -1;
+    }
+
+    private void writeInt(int value, int offset) {
+        header[offset] = (byte) (value >>> 24);
+        header[offset + 1] = (byte) (value >>> 16);
+        header[offset + 2] = (byte) (value >>> 8);
+        header[offset + 3] = (byte) value;
+    }
+
+}
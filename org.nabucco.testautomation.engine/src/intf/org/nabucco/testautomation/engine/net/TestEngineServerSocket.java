@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.net;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * TestEngineServerSocket
+ * <p>
+ * ServerSocket accepting {@link TestEngineSocket}s with the settings of its factory.
+ *
+ * @author agent
+ */
+class TestEngineServerSocket extends ServerSocket {
+
+    private final TestEngineSocketFactory factory;
+
+    /**
+     * Constructs a new unbound TestEngineServerSocket.
+     *
+     * @param factory
+     *            the factory holding the transport settings
+     * @throws IOException
+     *             thrown, if the socket cannot be created
+     */
+    TestEngineServerSocket(TestEngineSocketFactory factory) throws IOException {
+        this.factory = factory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Socket accept() throws IOException {
+        Socket socket = new TestEngineSocket(factory);
+        implAccept(socket);
+        factory.configure(socket);
+        return socket;
+    }
+
+}
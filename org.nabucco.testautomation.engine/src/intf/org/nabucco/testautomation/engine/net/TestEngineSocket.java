@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * TestEngineSocket
+ * <p>
+ * Socket sending and receiving its data in frames, if compression is enabled.
+ *
+ * @author agent
+ */
+class TestEngineSocket extends Socket {
+
+    private final TestEngineSocketFactory factory;
+
+    private FrameInputStream in;
+
+    private FrameOutputStream out;
+
+    /**
+     * Constructs a new unconnected TestEngineSocket.
+     *
+     * @param factory
+     *            the factory holding the transport settings
+     */
+    TestEngineSocket(TestEngineSocketFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized InputStream getInputStream() throws IOException {
+
+        if (!factory.isCompressing()) {
+            return super.getInputStream();
+        }
+        if (in == null) {
+            in = new FrameInputStream(super.getInputStream());
+        }
+        return in;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized OutputStream getOutputStream() throws IOException {
+
+        if (!factory.isCompressing()) {
+            return super.getOutputStream();
+        }
+        if (out == null) {
+            out = new FrameOutputStream(super.getOutputStream(), factory.getCompressionThreshold(),
+                    factory.getCompressionLevel());
+        }
+        return out;
+    }
+
+    /**
+     * Closes the socket and releases the native memory of the compression of its streams, as
+     * RMI closes an idle connection by closing its socket only.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+
+        try {
+            super.close();
+        } finally {
+            if (in != null) {
+                in.end();
+            }
+            if (out != null) {
+                out.end();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.net;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+import java.util.zip.Deflater;
+
+/**
+ * TestEngineSocketFactory
+ * <p>
+ * Socket factory of the TestEngine transport. The sockets are created with TCP_NODELAY and the
+ * configured buffer sizes. If a compression threshold is set, the data is sent in frames, each
+ * frame of at least the threshold is deflated.
+ * <p>
+ * The factory is sent to the clients within the stub of the TestEngine. RMI reuses the
+ * connections of equal factories, so two factories with the same settings are equal.
+ *
+ * @author agent
+ */
+public final class TestEngineSocketFactory implements RMIClientSocketFactory, RMIServerSocketFactory,
+        Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The default size in bytes of the socket buffers.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * The default size in bytes of the frames deflated at least.
+     */
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
+    private final int bufferSize;
+
+    private final int compressionThreshold;
+
+    private final int compressionLevel;
+
+    /**
+     * Constructs a new TestEngineSocketFactory with the default buffer size and compression.
+     */
+    public TestEngineSocketFactory() {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_COMPRESSION_THRESHOLD, Deflater.BEST_SPEED);
+    }
+
+    /**
+     * Constructs a new TestEngineSocketFactory.
+     *
+     * @param bufferSize
+     *            the size in bytes of the socket buffers, 0 for the system default
+     * @param compressionThreshold
+     *            the size in bytes of the frames deflated at least, 0 disables compression
+     * @param compressionLevel
+     *            the level of the {@link Deflater}
+     */
+    public TestEngineSocketFactory(int bufferSize, int compressionThreshold, int compressionLevel) {
+
+        if (bufferSize < 0 || compressionThreshold < 0 || compressionThreshold > FrameOutputStream.FRAME_SIZE) {
+            throw new IllegalArgumentException("Invalid transport settings [bufferSize=" + bufferSize
+                    + ", compressionThreshold=" + compressionThreshold + "]");
+        }
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+        }
+        this.bufferSize = bufferSize;
+        this.compressionThreshold = compressionThreshold;
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        Socket socket = new TestEngineSocket(this);
+        configure(socket);
+        socket.connect(new InetSocketAddress(host, port));
+        return socket;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        ServerSocket serverSocket = new TestEngineServerSocket(this);
+
+        // the receive buffer of the accepted sockets must be set before binding
+        if (bufferSize > 0) {
+            serverSocket.setReceiveBufferSize(bufferSize);
+        }
+        serverSocket.bind(new InetSocketAddress(port));
+        return serverSocket;
+    }
+
+    /**
+     * Applies the socket options to a socket, before it is connected.
+     *
+     * @param socket
+     *            the socket
+     * @throws IOException
+     *             thrown, if an option is not supported
+     */
+    void configure(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        socket.setKeepAlive(true);
+
+        if (bufferSize > 0) {
+            socket.setSendBufferSize(bufferSize);
+            socket.setReceiveBufferSize(bufferSize);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public boolean isCompressing() {
+        return compressionThreshold > 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 31 + bufferSize;
+        result = 31 * result + compressionThreshold;
+        return 31 * result + compressionLevel;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TestEngineSocketFactory)) {
+            return false;
+        }
+        TestEngineSocketFactory other = (TestEngineSocketFactory) obj;
+        return bufferSize == other.bufferSize && compressionThreshold == other.compressionThreshold
+                && compressionLevel == other.compressionLevel;
+    }
+
+    @Override
+    public String toString() {
+        return "TestEngineSocketFactory [bufferSize=" + bufferSize + ", compressionThreshold="
+                + compressionThreshold + ", compressionLevel=" + compressionLevel + "]";
+    }
+
+}
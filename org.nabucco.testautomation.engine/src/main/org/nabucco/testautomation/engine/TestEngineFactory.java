@@ -17,8 +17,12 @@
 package org.nabucco.testautomation.engine;
 
 import java.rmi.RemoteException;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+import java.util.zip.Deflater;
 
 import org.nabucco.testautomation.engine.execution.TestExecutionService;
+import org.nabucco.testautomation.engine.net.TestEngineSocketFactory;
 import org.nabucco.testautomation.settings.facade.exception.engine.TestEngineException;
 
 /**
@@ -29,6 +33,29 @@ import org.nabucco.testautomation.settings.facade.exception.engine.TestEngineExc
  */
 public class TestEngineFactory {
 
+	/**
+	 * The port the TestEngine is exported on, 0 for an anonymous port.
+	 */
+	public static int EXPORT_PORT = 0;
+	
+	/**
+	 * The size in bytes of the socket buffers of the TestEngine, 0 for the system default.
+	 */
+	public static int SOCKET_BUFFER_SIZE = TestEngineSocketFactory.DEFAULT_BUFFER_SIZE;
+	
+	/**
+	 * The size in bytes of the transferred frames deflated at least, 0 disables compression.
+	 * Compression is disabled by default, as the clients then need the TestEngineSocketFactory of
+	 * this version. Enable it, e.g. with {@link TestEngineSocketFactory#DEFAULT_COMPRESSION_THRESHOLD},
+	 * once the clients are upgraded.
+	 */
+	public static int COMPRESSION_THRESHOLD = 0;
+	
+	/**
+	 * The level of the compression of the transferred frames.
+	 */
+	public static int COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+	
 	private static TestEngineFactory instance;
 	
     private TestEngineFactory() {
@@ -48,12 +75,32 @@ public class TestEngineFactory {
     }
 	
     /**
-     * Creates an instance of {@link TestEngine}.
+     * Creates an instance of {@link TestEngine} exported with a {@link TestEngineSocketFactory}
+     * using the configured socket buffer size and compression. Without compression the clients
+     * connect with default sockets, so they do not need the TestEngineSocketFactory.
      * @return
      */
 	public TestEngine createTestEngine(TestExecutionService service) throws TestEngineException {
+		TestEngineSocketFactory socketFactory;
+		
+		try {
+			socketFactory = new TestEngineSocketFactory(SOCKET_BUFFER_SIZE, COMPRESSION_THRESHOLD, COMPRESSION_LEVEL);
+		} catch (IllegalArgumentException ex) {
+			throw new TestEngineException(ex.getMessage());
+		}
+		return createTestEngine(service, EXPORT_PORT, socketFactory.isCompressing() ? socketFactory : null,
+				socketFactory);
+	}
+	
+    /**
+     * Creates an instance of {@link TestEngine} exported with the given socket factories.
+     * @return
+     */
+	public TestEngine createTestEngine(TestExecutionService service, int port,
+			RMIClientSocketFactory clientSocketFactory, RMIServerSocketFactory serverSocketFactory)
+			throws TestEngineException {
 		try {
-			return new TestEngineImpl(service);
+			return new TestEngineImpl(service, port, clientSocketFactory, serverSocketFactory);
 		} catch (RemoteException ex) {
 			throw new TestEngineException(ex.getMessage());
 		}
@@ -16,19 +16,36 @@
  */
 package org.nabucco.testautomation.engine;
 
+import java.io.IOException;
 import java.rmi.RemoteException;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+import java.rmi.server.RemoteServer;
+import java.rmi.server.ServerNotActiveException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.nabucco.framework.base.facade.datatype.Identifier;
 import org.nabucco.framework.base.facade.datatype.logger.NabuccoLogger;
 import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
 import org.nabucco.testautomation.config.facade.datatype.TestConfiguration;
 import org.nabucco.testautomation.engine.base.client.ClientInteraction;
 import org.nabucco.testautomation.engine.base.context.TestContext;
+import org.nabucco.testautomation.engine.delta.ResultDelta;
 import org.nabucco.testautomation.engine.exception.ExecutionServiceException;
 import org.nabucco.testautomation.engine.exception.JobRejectionException;
 import org.nabucco.testautomation.engine.execution.TestExecutionService;
+import org.nabucco.testautomation.engine.execution.checkpoint.Checkpoint;
+import org.nabucco.testautomation.engine.execution.checkpoint.CheckpointJournal;
+import org.nabucco.testautomation.engine.execution.info.TestExecutionInfoFactory;
 import org.nabucco.testautomation.engine.execution.job.TestConfigurationExecutionJob;
+import org.nabucco.testautomation.engine.execution.job.TestExecutionJob;
 import org.nabucco.testautomation.result.facade.datatype.TestConfigurationResult;
+import org.nabucco.testautomation.result.facade.datatype.TestResult;
 import org.nabucco.testautomation.settings.facade.datatype.engine.ExecutionStatusType;
 import org.nabucco.testautomation.settings.facade.datatype.engine.TestExecutionInfo;
 import org.nabucco.testautomation.settings.facade.exception.engine.TestEngineException;
@@ -47,6 +64,12 @@ public class TestEngineImpl extends UnicastRemoteObject implements TestEngine {
 
     private TestExecutionService service;
 
+    /**
+     * The ids of the interrupted jobs already resumed by the ids of the new jobs, their journal is
+     * removed by the new job.
+     */
+    private final Map<Long, Long> resumedJobs = new HashMap<Long, Long>();
+
     /**
      * Constructs a new instance.
      */
@@ -54,18 +77,38 @@ public class TestEngineImpl extends UnicastRemoteObject implements TestEngine {
         this.service = service;
     }
 
+    /**
+     * Constructs a new instance exported on the given port with the given socket factories.
+     */
+    TestEngineImpl(TestExecutionService service, int port, RMIClientSocketFactory clientSocketFactory,
+            RMIServerSocketFactory serverSocketFactory) throws RemoteException {
+        super(port, clientSocketFactory, serverSocketFactory);
+        this.service = service;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public TestExecutionInfo executeTestConfiguration(TestConfiguration testConfiguration, TestContext context)
             throws TestEngineException {
+        return this.executeTestConfiguration(testConfiguration, context, TestExecutionJob.DEFAULT_PRIORITY);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TestExecutionInfo executeTestConfiguration(TestConfiguration testConfiguration, TestContext context,
+            int priority) throws TestEngineException {
         TestExecutionInfo testExecutionInfo = null;
 
         try {
             TestConfigurationExecutionJob testJob = new TestConfigurationExecutionJob();
             testJob.setTestConfiguration(testConfiguration);
             testJob.setContext(context);
+            testJob.setPriority(priority);
+            testJob.setSubmitter(getSubmitter());
 
             long jobId = this.service.startExecution(testJob);
             logger.info("[JobId:"
@@ -86,6 +129,111 @@ public class TestEngineImpl extends UnicastRemoteObject implements TestEngine {
         return testExecutionInfo;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<TestExecutionInfo> executeTestConfigurations(List<TestConfiguration> configurations,
+            List<TestContext> contexts, int priority) throws TestEngineException {
+
+        if (configurations == null || contexts == null || configurations.size() != contexts.size()) {
+            throw new TestEngineException("Each TestConfiguration of a batch requires exactly one TestContext");
+        }
+        List<TestExecutionInfo> testExecutionInfos = new ArrayList<TestExecutionInfo>(configurations.size());
+
+        try {
+            String submitter = getSubmitter();
+            List<TestExecutionJob> jobs = new ArrayList<TestExecutionJob>(configurations.size());
+
+            for (int i = 0; i < configurations.size(); i++) {
+                TestConfigurationExecutionJob testJob = new TestConfigurationExecutionJob();
+                testJob.setTestConfiguration(configurations.get(i));
+                testJob.setContext(contexts.get(i));
+                testJob.setPriority(priority);
+                testJob.setSubmitter(submitter);
+                jobs.add(testJob);
+            }
+
+            List<Long> jobIds = this.service.startExecutions(jobs);
+            logger.info("Started execution of a batch of " + jobIds.size() + " TestConfigurations: " + jobIds);
+
+            for (Long jobId : jobIds) {
+                testExecutionInfos.add(this.service.getTestExecutionInfo(jobId));
+            }
+        } catch (JobRejectionException e) {
+            testExecutionInfos.clear();
+
+            for (int i = 0; i < configurations.size(); i++) {
+                TestExecutionInfo testExecutionInfo = new TestExecutionInfo();
+                testExecutionInfo.setTestStatus(ExecutionStatusType.REJECTED);
+                testExecutionInfos.add(testExecutionInfo);
+            }
+            logger.info("Rejected execution of a batch of " + configurations.size() + " TestConfigurations: "
+                    + e.getMessage());
+        } catch (ExecutionServiceException e) {
+            throw e;
+        } catch (Exception e) {
+            String error = "Unexpected error while executing a batch of TestConfigurations: " + e.getMessage();
+            logger.fatal(e, error);
+            throw new TestEngineException(error);
+        }
+        return testExecutionInfos;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<TestExecutionInfo> getBatchStatus(List<TestExecutionInfo> testInfos) throws TestEngineException {
+
+        if (testInfos == null) {
+            throw new TestEngineException("No batch of TestExecutionInfos given");
+        }
+        List<TestExecutionInfo> testExecutionInfos = new ArrayList<TestExecutionInfo>(testInfos.size());
+
+        for (TestExecutionInfo testInfo : testInfos) {
+            // a rejected job has no job id and keeps its status
+            if (hasJobId(testInfo)) {
+                testExecutionInfos.add(this.service.getTestExecutionInfo(testInfo.getJobId().getValue()));
+            } else {
+                testExecutionInfos.add(testInfo);
+            }
+        }
+        return testExecutionInfos;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<TestExecutionInfo> cancelBatch(List<TestExecutionInfo> testInfos) throws TestEngineException {
+
+        if (testInfos == null) {
+            throw new TestEngineException("No batch of TestExecutionInfos given");
+        }
+        List<Long> jobIds = new ArrayList<Long>(testInfos.size());
+
+        for (TestExecutionInfo testInfo : testInfos) {
+            if (hasJobId(testInfo)) {
+                jobIds.add(testInfo.getJobId().getValue());
+            }
+        }
+        this.service.stopExecutions(jobIds);
+        return getBatchStatus(testInfos);
+    }
+
+    private static boolean hasJobId(TestExecutionInfo testInfo) {
+        return testInfo != null && testInfo.getJobId() != null && testInfo.getJobId().getValue() != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getQueuePosition(TestExecutionInfo testInfo) throws TestEngineException {
+        return this.service.getQueuePosition(testInfo.getJobId().getValue());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -94,6 +242,41 @@ public class TestEngineImpl extends UnicastRemoteObject implements TestEngine {
         return this.service.getTestConfigurationResult(testInfo.getJobId().getValue());
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<TestResult> getTestResults(TestExecutionInfo testInfo, int offset, int limit)
+            throws TestEngineException {
+        return this.service.getTestResults(testInfo.getJobId().getValue(), offset, limit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResultDelta getResultDelta(TestExecutionInfo testInfo, long knownVersion) throws TestEngineException {
+        return this.service.getResultDelta(testInfo.getJobId().getValue(), knownVersion);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] getScreenshot(TestExecutionInfo testInfo, Identifier imageId, long offset, int length)
+            throws TestEngineException {
+        return this.service.readScreenshot(testInfo.getJobId().getValue(), imageId, offset, length);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] getFile(TestExecutionInfo testInfo, Identifier fileId, long offset, int length)
+            throws TestEngineException {
+        return this.service.readFile(testInfo.getJobId().getValue(), fileId, offset, length);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -102,6 +285,14 @@ public class TestEngineImpl extends UnicastRemoteObject implements TestEngine {
         return this.service.getTestExecutionInfo(testInfo.getJobId().getValue());
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TestExecutionInfo awaitTestStatus(TestExecutionInfo testInfo, long timeout) throws TestEngineException {
+        return this.service.awaitTestExecutionInfo(testInfo.getJobId().getValue(), testInfo, timeout);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -123,4 +314,111 @@ public class TestEngineImpl extends UnicastRemoteObject implements TestEngine {
         this.service.setClientInteraction(jobId, userInput);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<TestExecutionInfo> getResumableTestConfigurations() throws TestEngineException {
+        List<TestExecutionInfo> testExecutionInfos = new ArrayList<TestExecutionInfo>();
+        CheckpointJournal journal = CheckpointJournal.getInstance();
+        Set<Long> runningJobs = this.service.getRunningJobs();
+
+        synchronized (resumedJobs) {
+            for (Long jobId : journal.getJobIds()) {
+                if (!runningJobs.contains(jobId) && !isResumed(jobId)) {
+                    testExecutionInfos.add(TestExecutionInfoFactory.getInstance().createTestExecutionInfo(jobId,
+                            ExecutionStatusType.INTERRUPTED, null, journal.getCheckpointTime(jobId)));
+                }
+            }
+        }
+        return testExecutionInfos;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TestExecutionInfo resumeTestConfiguration(TestExecutionInfo testInfo) throws TestEngineException {
+        long jobId = testInfo.getJobId().getValue();
+        CheckpointJournal journal = CheckpointJournal.getInstance();
+
+        synchronized (resumedJobs) {
+            if (isResumed(jobId) || this.service.getRunningJobs().contains(jobId)) {
+                throw new TestEngineException("Job " + jobId + " is already running");
+            }
+            TestConfiguration testConfiguration;
+            Checkpoint checkpoint;
+
+            try {
+                testConfiguration = journal.readConfiguration(jobId);
+                checkpoint = journal.readCheckpoint(jobId);
+            } catch (IOException ex) {
+                throw new TestEngineException("No checkpoint found for job " + jobId + ": " + ex.getMessage());
+            }
+
+            TestConfigurationExecutionJob testJob = new TestConfigurationExecutionJob();
+            testJob.setTestConfiguration(testConfiguration);
+            testJob.setContext(checkpoint.getContext());
+            testJob.setResumedCheckpoint(checkpoint);
+            testJob.setSubmitter(getSubmitter());
+
+            try {
+                long newJobId = this.service.startExecution(testJob);
+                resumedJobs.put(jobId, newJobId);
+                logger.info("[JobId:"
+                        + newJobId + "] Resumed execution of TestConfiguration: "
+                        + testConfiguration.getName().getValue() + " from job " + jobId);
+                return this.service.getTestExecutionInfo(newJobId);
+            } catch (JobRejectionException e) {
+                TestExecutionInfo testExecutionInfo = new TestExecutionInfo();
+                testExecutionInfo.setTestStatus(ExecutionStatusType.REJECTED);
+                logger.info("Rejected resume of TestConfiguration: " + testConfiguration.getName().getValue());
+                return testExecutionInfo;
+            }
+        }
+    }
+
+    /**
+     * Checks whether an interrupted job is resumed by a job still queued or running. A new job
+     * cancelled before it took over the checkpoint leaves the journal, so the interrupted job can
+     * be resumed again.
+     * 
+     * @param jobId
+     *            the id of the interrupted job
+     * @return true, if the job is being resumed
+     */
+    private boolean isResumed(Long jobId) {
+        Long newJobId = resumedJobs.get(jobId);
+
+        if (newJobId == null) {
+            return false;
+        }
+
+        try {
+            ExecutionStatusType status = this.service.getJobStatus(newJobId);
+
+            if (status != ExecutionStatusType.FINISHED && status != ExecutionStatusType.INTERRUPTED
+                    && status != ExecutionStatusType.REJECTED) {
+                return true;
+            }
+        } catch (ExecutionServiceException ex) {
+            // the new job was evicted
+        }
+        resumedJobs.remove(jobId);
+        return false;
+    }
+
+    /**
+     * Gets the host of the client submitting a job, used for fair dispatching of queued jobs.
+     * 
+     * @return the client host
+     */
+    private String getSubmitter() {
+        try {
+            return RemoteServer.getClientHost();
+        } catch (ServerNotActiveException ex) {
+            return TestExecutionJob.UNKNOWN_SUBMITTER;
+        }
+    }
+
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution;
+
+/**
+ * ExecutionMode
+ * 
+ * @author agent
+ */
+public enum ExecutionMode {
+
+    /**
+     * Jobs are executed by a fixed pool of platform threads, one per job slot.
+     */
+    PLATFORM_THREADS,
+
+    /**
+     * Every job and its forked tasks are executed by a new virtual thread, if the JVM supports
+     * virtual threads. Otherwise platform threads are used.
+     */
+    VIRTUAL_THREADS;
+
+}
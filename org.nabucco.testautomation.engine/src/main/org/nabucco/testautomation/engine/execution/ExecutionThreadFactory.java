@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.nabucco.framework.base.facade.datatype.logger.NabuccoLogger;
+import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
+
+/**
+ * ExecutionThreadFactory
+ * <p>
+ * Creates the named threads executing jobs. In {@link ExecutionMode#VIRTUAL_THREADS} virtual
+ * threads are created. As the engine is compiled for older JVMs, the virtual thread builder is
+ * looked up reflectively and platform threads are used, if it is not available.
+ * 
+ * @author agent
+ */
+public final class ExecutionThreadFactory implements ThreadFactory {
+
+    private static final NabuccoLogger logger = NabuccoLoggingFactory.getInstance().getLogger(
+            ExecutionThreadFactory.class);
+
+    private final AtomicInteger counter = new AtomicInteger(1);
+
+    private final String prefix;
+
+    private final ThreadFactory virtualThreadFactory;
+
+    /**
+     * Constructs a new ExecutionThreadFactory.
+     * 
+     * @param prefix
+     *            the prefix of the thread names
+     * @param mode
+     *            the execution mode
+     */
+    public ExecutionThreadFactory(String prefix, ExecutionMode mode) {
+        this.prefix = prefix;
+        this.virtualThreadFactory = mode == ExecutionMode.VIRTUAL_THREADS ? createVirtualThreadFactory(prefix)
+                : null;
+    }
+
+    /**
+     * Checks whether this factory creates virtual threads.
+     * 
+     * @return true, if virtual threads are created
+     */
+    public boolean isVirtual() {
+        return virtualThreadFactory != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Thread newThread(Runnable runnable) {
+
+        if (virtualThreadFactory != null) {
+            return virtualThreadFactory.newThread(runnable);
+        }
+        Thread thread = new Thread(runnable, prefix + counter.getAndIncrement());
+        thread.setDaemon(false);
+        return thread;
+    }
+
+    /**
+     * Creates the factory of virtual threads using <code>Thread.ofVirtual().name(prefix, 1).factory()</code>.
+     * 
+     * @param prefix
+     *            the prefix of the thread names
+     * @return the factory or null, if virtual threads are not supported
+     */
+    private static ThreadFactory createVirtualThreadFactory(String prefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Method name = builderClass.getMethod("name", String.class, long.class);
+            Method factory = builderClass.getMethod("factory");
+
+            Object builder = ofVirtual.invoke(null);
+            builder = name.invoke(builder, prefix, Long.valueOf(1));
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (Exception ex) {
+            logger.warning("Virtual threads are not supported by this JVM, using platform threads");
+            return null;
+        }
+    }
+
+}
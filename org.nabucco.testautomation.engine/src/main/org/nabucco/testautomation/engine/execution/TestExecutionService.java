@@ -16,12 +16,17 @@
  */
 package org.nabucco.testautomation.engine.execution;
 
+import java.util.List;
 import java.util.Set;
 
+import org.nabucco.framework.base.facade.datatype.Identifier;
 import org.nabucco.testautomation.engine.base.client.ClientInteraction;
+import org.nabucco.testautomation.engine.delta.ResultDelta;
 import org.nabucco.testautomation.engine.exception.ExecutionServiceException;
+import org.nabucco.testautomation.engine.execution.event.ExecutionEventListener;
 import org.nabucco.testautomation.engine.execution.job.TestExecutionJob;
 import org.nabucco.testautomation.result.facade.datatype.TestConfigurationResult;
+import org.nabucco.testautomation.result.facade.datatype.TestResult;
 import org.nabucco.testautomation.settings.facade.datatype.engine.ExecutionStatusType;
 import org.nabucco.testautomation.settings.facade.datatype.engine.TestExecutionInfo;
 
@@ -41,6 +46,17 @@ public interface TestExecutionService {
 	 */
 	public long startExecution(TestExecutionJob job) throws ExecutionServiceException;
 	
+	/**
+	 * Starts a batch of jobs as one unit. Either all jobs are accepted or the whole batch is
+	 * rejected.
+	 * 
+	 * @param jobs
+	 *            the jobs of the batch
+	 * @return the job ids in the order of the jobs
+	 * @throws ExecutionServiceException
+	 */
+	public List<Long> startExecutions(List<TestExecutionJob> jobs) throws ExecutionServiceException;
+	
 	/**
 	 * 
 	 * @param jobId
@@ -57,6 +73,30 @@ public interface TestExecutionService {
 	 */
 	public TestExecutionInfo getTestExecutionInfo(long jobId) throws ExecutionServiceException;
 	
+	/**
+	 * Waits until the status or the progress of a job differs from the given TestExecutionInfo.
+	 * 
+	 * @param jobId
+	 *            the job id
+	 * @param knownInfo
+	 *            the TestExecutionInfo known by the caller
+	 * @param timeout
+	 *            the maximum time to wait in milliseconds
+	 * @return the current TestExecutionInfo, which is unchanged if the timeout elapsed
+	 * @throws ExecutionServiceException
+	 */
+	public TestExecutionInfo awaitTestExecutionInfo(long jobId, TestExecutionInfo knownInfo, long timeout)
+			throws ExecutionServiceException;
+	
+	/**
+	 * Gets the position of a job waiting for a free job slot.
+	 * 
+	 * @param jobId
+	 * @return the position starting with 1, or 0 if the job is not queued
+	 * @throws ExecutionServiceException
+	 */
+	public int getQueuePosition(long jobId) throws ExecutionServiceException;
+	
 	/**
 	 * 
 	 * @param jobId
@@ -64,6 +104,66 @@ public interface TestExecutionService {
 	 * @throws ExecutionServiceException
 	 */
 	public TestConfigurationResult getTestConfigurationResult(long jobId) throws ExecutionServiceException;
+	
+	/**
+	 * Gets a page of the top-level TestResults of a job. Screenshots and files are not contained,
+	 * the traces reference them by their image id and file id.
+	 * 
+	 * @param jobId
+	 *            the job id
+	 * @param offset
+	 *            the index of the first TestResult
+	 * @param limit
+	 *            the maximum number of TestResults
+	 * @return the TestResults, empty if the offset is beyond the last TestResult
+	 * @throws ExecutionServiceException
+	 */
+	public List<TestResult> getTestResults(long jobId, int offset, int limit) throws ExecutionServiceException;
+	
+	/**
+	 * Gets the changes of the result of a job since a known version.
+	 * 
+	 * @param jobId
+	 *            the job id
+	 * @param knownVersion
+	 *            the version known by the client, 0 for all TestResults and TestScriptResults
+	 * @return the changes and the current version
+	 * @throws ExecutionServiceException
+	 */
+	public ResultDelta getResultDelta(long jobId, long knownVersion) throws ExecutionServiceException;
+	
+	/**
+	 * Reads a range of a screenshot referenced by a result of a job.
+	 * 
+	 * @param jobId
+	 *            the job id
+	 * @param imageId
+	 *            the image id of the ScreenshotTrace
+	 * @param offset
+	 *            the position of the first byte
+	 * @param length
+	 *            the maximum number of bytes
+	 * @return the bytes read, shorter than the length at the end of the screenshot
+	 * @throws ExecutionServiceException
+	 */
+	public byte[] readScreenshot(long jobId, Identifier imageId, long offset, int length)
+			throws ExecutionServiceException;
+	
+	/**
+	 * Reads a range of a file referenced by a result of a job.
+	 * 
+	 * @param jobId
+	 *            the job id
+	 * @param fileId
+	 *            the file id of the FileTrace
+	 * @param offset
+	 *            the position of the first byte
+	 * @param length
+	 *            the maximum number of bytes
+	 * @return the bytes read, shorter than the length at the end of the file
+	 * @throws ExecutionServiceException
+	 */
+	public byte[] readFile(long jobId, Identifier fileId, long offset, int length) throws ExecutionServiceException;
 
 	/**
 	 * 
@@ -74,12 +174,30 @@ public interface TestExecutionService {
 	public void setClientInteraction(long jobId, ClientInteraction clientInteraction) throws ExecutionServiceException;
 	
 	/**
+	 * Stops a queued or running job. A job, which already completed, is not changed.
 	 * 
 	 * @param jobId
 	 * @throws ExecutionServiceException
 	 */
 	public void stopExecution(long jobId) throws ExecutionServiceException;
 	
+	/**
+	 * Stops a batch of jobs. Queued jobs of the batch are removed before the running jobs are
+	 * interrupted, so no further job of the batch is started. Jobs of the batch, which already
+	 * completed, are skipped.
+	 * 
+	 * @param jobIds
+	 *            the ids of the jobs
+	 * @throws ExecutionServiceException
+	 */
+	public void stopExecutions(List<Long> jobIds) throws ExecutionServiceException;
+	
+	/**
+	 * Stops all queued and running jobs, because the TestEngine shuts down. Unlike stopped jobs,
+	 * the running jobs keep their checkpoints, so they can be resumed after a restart.
+	 */
+	public void suspendExecutions();
+	
 	/**
 	 * 
 	 * @param jobId
@@ -101,4 +219,85 @@ public interface TestExecutionService {
 	 */
 	public Set<Long> getRunningJobs() throws ExecutionServiceException;
 	
+	/**
+	 * Stops accepting new jobs. Running and queued jobs are executed to the end.
+	 */
+	public void drain();
+	
+	/**
+	 * Checks whether the service stopped accepting new jobs.
+	 * 
+	 * @return true, if the service is draining
+	 */
+	public boolean isDraining();
+	
+	/**
+	 * Waits until no job is running or queued.
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait in milliseconds
+	 * @return true, if all jobs finished, false if the timeout elapsed
+	 */
+	public boolean awaitIdle(long timeout);
+	
+	/**
+	 * Releases the threads of the service, i.e. the watchdog and the executors of the jobs. Jobs
+	 * still running are interrupted, if they do not finish within the timeout. The service must
+	 * not be used afterwards.
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait for the executors to terminate in milliseconds
+	 * @return true, if the executors terminated, false if the timeout elapsed
+	 */
+	public boolean shutdown(long timeout);
+	
+	/**
+	 * Gets the number of job slots, i.e. the number of jobs executed concurrently.
+	 * 
+	 * @return the number of job slots
+	 */
+	public int getJobSlots();
+	
+	/**
+	 * Changes the number of job slots at runtime. Additional slots are filled with queued jobs
+	 * immediately, removed slots are released when running jobs finish.
+	 * 
+	 * @param jobSlots
+	 *            the new number of job slots, at least 1
+	 */
+	public void setJobSlots(int jobSlots);
+	
+	/**
+	 * Gets the maximum number of jobs waiting for a free job slot.
+	 * 
+	 * @return the queue capacity
+	 */
+	public int getQueueCapacity();
+	
+	/**
+	 * Changes the maximum number of queued jobs at runtime. Jobs already queued are kept, if the
+	 * capacity is reduced below the current queue size.
+	 * 
+	 * @param capacity
+	 *            the new queue capacity, at least 0
+	 */
+	public void setQueueCapacity(int capacity);
+	
+	/**
+	 * Subscribes a listener to the start and the end of jobs, TestConfigElements, TestScripts
+	 * and Actions. Events are delivered asynchronously, they never block the executing jobs.
+	 * 
+	 * @param listener
+	 *            the listener
+	 */
+	public void addExecutionEventListener(ExecutionEventListener listener);
+	
+	/**
+	 * Unsubscribes a listener added by {@link #addExecutionEventListener(ExecutionEventListener)}.
+	 * 
+	 * @param listener
+	 *            the listener
+	 */
+	public void removeExecutionEventListener(ExecutionEventListener listener);
+	
 }
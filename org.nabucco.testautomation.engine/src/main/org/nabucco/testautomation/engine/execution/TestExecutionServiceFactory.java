@@ -16,6 +16,8 @@
  */
 package org.nabucco.testautomation.engine.execution;
 
+import org.nabucco.testautomation.engine.execution.cache.ResultRetentionPolicy;
+
 /**
  * TestExecutionServiceFactory
  * 
@@ -23,8 +25,93 @@ package org.nabucco.testautomation.engine.execution;
  */
 public class TestExecutionServiceFactory {
 
+	/**
+	 * The number of job slots, i.e. the number of TestConfigurations executed concurrently.
+	 */
 	public static int THREAD_POOL_SIZE = 1;
 	
+	/**
+	 * The maximum number of jobs waiting for a free job slot.
+	 */
+	public static int QUEUE_SIZE = 20;
+	
+	/**
+	 * The kind of threads executing the jobs.
+	 */
+	public static ExecutionMode EXECUTION_MODE = ExecutionMode.PLATFORM_THREADS;
+	
+	/**
+	 * The number of job slots in {@link ExecutionMode#VIRTUAL_THREADS}. A job waiting for a
+	 * SubEngine or a delay does not block a platform thread, so far more jobs are executed
+	 * concurrently than with platform threads.
+	 */
+	public static int VIRTUAL_JOB_SLOTS = 1000;
+	
+	/**
+	 * The maximum number of platform threads executing the forked branches of all jobs. A branch
+	 * forked while all of them are busy is executed by the forking thread itself.
+	 */
+	public static int FORK_POOL_SIZE = 16;
+	
+	/**
+	 * The interval in milliseconds of the watchdog checking the running jobs for timeouts.
+	 */
+	public static long WATCHDOG_INTERVAL = 5000;
+	
+	/**
+	 * The maximum duration in milliseconds without progress of a job, unless the TestContext
+	 * defines a STALL_TIMEOUT. 0 disables the stall detection.
+	 */
+	public static long STALL_TIMEOUT = 60 * 60 * 1000;
+	
+	/**
+	 * The maximum number of finished jobs, whose results are retained for the clients.
+	 */
+	public static int RESULT_RETENTION_COUNT = 20;
+	
+	/**
+	 * The time in milliseconds the result of a finished job is retained. 0 disables the limit.
+	 */
+	public static long RESULT_RETENTION_TIME = 24 * 60 * 60 * 1000;
+	
+	/**
+	 * The approximate number of bytes the retained results may use. 0 disables the limit.
+	 */
+	public static long RESULT_HEAP_BUDGET = Runtime.getRuntime().maxMemory() / 4;
+	
+	/**
+	 * The minimum time in milliseconds between two checkpoints of a running TestConfiguration,
+	 * unless the TestContext defines a CHECKPOINT_INTERVAL. 0 disables checkpoints.
+	 */
+	public static long CHECKPOINT_INTERVAL = 5 * 60 * 1000;
+	
+	/**
+	 * The directory of the checkpoint journal of running TestConfigurations.
+	 */
+	public static String JOURNAL_PATH = "./journal";
+	
+	/**
+	 * The approximate number of bytes of screenshots and files kept on the heap, further
+	 * contents are spilled to files below BLOB_PATH.
+	 */
+	public static long BLOB_MEMORY_BUDGET = Runtime.getRuntime().maxMemory() / 8;
+	
+	/**
+	 * The directory of the spilled screenshots and files.
+	 */
+	public static String BLOB_PATH = "./blobs";
+	
+	/**
+	 * The directory of the stored results of finished jobs.
+	 */
+	public static String RESULT_STORE_PATH = "./results";
+	
+	/**
+	 * The maximum number of bytes of the stored results, the oldest results beyond are deleted.
+	 * 0 disables the store, finished results are then retained on the heap only.
+	 */
+	public static long RESULT_STORE_SIZE = 1024L * 1024 * 1024;
+	
 	private static TestExecutionServiceFactory instance;
 	
 	private TestExecutionServiceFactory() {}
@@ -38,7 +125,10 @@ public class TestExecutionServiceFactory {
 	}
 	
 	public TestExecutionService createTestExecutionService() {
-		return new TestExecutionServiceImpl(THREAD_POOL_SIZE);
+		ResultRetentionPolicy retention = new ResultRetentionPolicy(RESULT_RETENTION_COUNT, RESULT_RETENTION_TIME,
+				RESULT_HEAP_BUDGET);
+		return new TestExecutionServiceImpl(THREAD_POOL_SIZE, VIRTUAL_JOB_SLOTS, FORK_POOL_SIZE, QUEUE_SIZE,
+				EXECUTION_MODE, retention);
 	}
 	
 }
@@ -16,26 +16,59 @@
  */
 package org.nabucco.testautomation.engine.execution;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.nabucco.framework.base.facade.datatype.Identifier;
 import org.nabucco.framework.base.facade.datatype.logger.NabuccoLogger;
 import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
+import org.nabucco.framework.base.facade.datatype.visitor.VisitorException;
 import org.nabucco.testautomation.engine.base.client.ClientInteraction;
+import org.nabucco.testautomation.engine.delta.ResultDelta;
 import org.nabucco.testautomation.engine.exception.ExecutionServiceException;
 import org.nabucco.testautomation.engine.exception.JobNotFoundException;
 import org.nabucco.testautomation.engine.exception.JobRejectionException;
+import org.nabucco.testautomation.engine.execution.blob.TraceStore;
+import org.nabucco.testautomation.engine.execution.cache.ResultRetentionPolicy;
 import org.nabucco.testautomation.engine.execution.cache.TestConfigurationResultCache;
 import org.nabucco.testautomation.engine.execution.cache.TestExecutionJobCache;
+import org.nabucco.testautomation.engine.execution.checkpoint.CheckpointJournal;
+import org.nabucco.testautomation.engine.execution.delta.ResultVersions;
+import org.nabucco.testautomation.engine.execution.event.ExecutionEventBus;
+import org.nabucco.testautomation.engine.execution.event.ExecutionEventListener;
 import org.nabucco.testautomation.engine.execution.job.JobIdFactory;
 import org.nabucco.testautomation.engine.execution.job.TestConfigurationExecutionJob;
 import org.nabucco.testautomation.engine.execution.job.TestExecutionJob;
+import org.nabucco.testautomation.engine.execution.queue.TestExecutionJobQueue;
+import org.nabucco.testautomation.engine.execution.store.ResultStore;
+import org.nabucco.testautomation.engine.execution.store.StoredResult;
+import org.nabucco.testautomation.engine.execution.timing.ExecutionClock;
+import org.nabucco.testautomation.engine.execution.watchdog.TestExecutionWatchdog;
+import org.nabucco.testautomation.engine.visitor.result.TestResultCollectionVisitor;
+import org.nabucco.testautomation.engine.visitor.result.TestResultFinalizationVisitor;
+import org.nabucco.testautomation.engine.visitor.result.TestResultReleaseVisitor;
 import org.nabucco.testautomation.result.facade.datatype.TestConfigurationResult;
+import org.nabucco.testautomation.result.facade.datatype.TestResult;
+import org.nabucco.testautomation.result.facade.datatype.TestResultContainer;
+import org.nabucco.testautomation.result.facade.datatype.status.TestConfigurationStatusType;
 import org.nabucco.testautomation.settings.facade.datatype.engine.ExecutionStatusType;
+import org.nabucco.testautomation.settings.facade.datatype.engine.SubEngineType;
 import org.nabucco.testautomation.settings.facade.datatype.engine.TestExecutionInfo;
 
 /**
@@ -48,23 +81,64 @@ public final class TestExecutionServiceImpl implements TestExecutionService, Tes
     private static final NabuccoLogger logger = NabuccoLoggingFactory.getInstance().getLogger(
             TestExecutionServiceImpl.class);
 
+    /**
+     * The maximum number of bytes of a screenshot or file returned by one call.
+     */
+    private static final int MAX_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * The maximum number of TestResults returned by one call.
+     */
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final Lock lock = new ReentrantLock();
 
+    private final Condition idle = lock.newCondition();
+
+    private volatile boolean draining = false;
+
     private final TestExecutionJobCache jobCache;
 
     private final TestConfigurationResultCache resultCache;
 
+    private final ResultRetentionPolicy retention;
+
+    private final TestExecutionJobQueue queue;
+
+    private final List<TestExecutionJob> running = new CopyOnWriteArrayList<TestExecutionJob>();
+
+    private final TestExecutionWatchdog watchdog;
+
     private ExecutorService executor;
 
-    private boolean busy = false;
+    private ThreadPoolExecutor jobPool;
 
-    private final int threadPoolSize;
+    private ExecutorService forkExecutor;
 
-    TestExecutionServiceImpl(int threadPoolSize) {
+    private volatile int threadPoolSize;
+
+    private final ExecutionMode executionMode;
+
+    private volatile long averageDuration = 0;
+
+    TestExecutionServiceImpl(int threadPoolSize, int virtualJobSlots, int forkPoolSize, int queueSize,
+            ExecutionMode executionMode, ResultRetentionPolicy retention) {
         this.threadPoolSize = threadPoolSize;
-        initExecutorService();
+        this.executionMode = executionMode;
+        this.retention = retention;
+        initExecutorService(virtualJobSlots, forkPoolSize);
         jobCache = new TestExecutionJobCache();
         resultCache = new TestConfigurationResultCache();
+        queue = new TestExecutionJobQueue(queueSize);
+
+        // ids of journaled jobs are not reused after a restart
+        for (Long journaledJobId : CheckpointJournal.getInstance().getJobIds()) {
+            JobIdFactory.getInstance().reserve(journaledJobId);
+        }
+        JobIdFactory.getInstance().reserve(ResultStore.getInstance().getMaxJobId());
+        watchdog = new TestExecutionWatchdog(running, TestExecutionServiceFactory.WATCHDOG_INTERVAL,
+                TestExecutionServiceFactory.STALL_TIMEOUT);
+        watchdog.start();
     }
 
     /**
@@ -74,28 +148,41 @@ public final class TestExecutionServiceImpl implements TestExecutionService, Tes
     public long startExecution(TestExecutionJob job) throws ExecutionServiceException {
         lock.lock();
         try {
-            if (busy) {
-                throw new JobRejectionException();
+            checkDraining();
+            boolean dispatchable = isDispatchable(job);
+
+            if (!dispatchable && queue.size() >= queue.getCapacity()) {
+                throw new JobRejectionException("Job rejected: no job slot or proxy is available for "
+                        + threadPoolSize + " job slots and the queue is full");
             }
+            evictFinishedJobs();
+            return admit(job, dispatchable);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Long> startExecutions(List<TestExecutionJob> jobs) throws ExecutionServiceException {
+        lock.lock();
+        try {
+            checkDraining();
 
-            busy = true;
-            final long jobId = JobIdFactory.getInstance().createNewId();
-            job.setId(jobId);
-            job.addTestExecutionListener(this);
-            jobCache.clean();
-            jobCache.addTestExecutionJob(job);
-            resultCache.clean();
+            if (jobs == null || jobs.isEmpty()) {
+                throw new ExecutionServiceException("No jobs given");
+            }
+            List<Boolean> dispatchable = planBatch(jobs);
+            evictFinishedJobs();
+            List<Long> jobIds = new ArrayList<Long>(jobs.size());
 
-            try {
-                executor.execute(job);
-            } catch (RejectedExecutionException ex) {
-                job.rejected();
-                jobCache.removeTestExecutionJob(jobId);
-                String msg = "Job rejected: TestExecutionService is busy";
-                logger.warning(msg);
-                throw new JobRejectionException(msg, ex);
-            }
-            return jobId;
+            for (int i = 0; i < jobs.size(); i++) {
+                jobIds.add(Long.valueOf(admit(jobs.get(i), dispatchable.get(i).booleanValue())));
+            }
+            logger.info("Batch of " + jobs.size() + " jobs started: " + jobIds);
+            return jobIds;
         } finally {
             lock.unlock();
         }
@@ -108,12 +195,20 @@ public final class TestExecutionServiceImpl implements TestExecutionService, Tes
     public void stopExecution(long jobId) throws ExecutionServiceException {
         lock.lock();
         try {
-            TestExecutionJob job = getJob(jobId);
+            TestExecutionJob job = getActiveJob(jobId);
+
+            if (job == null) {
+                logger.info("[JobId:" + jobId + "] Job already completed, not stopped");
+                return;
+            }
+
+            // Queued jobs are just removed from the queue, the job notifies the service
+            if (queue.remove(jobId) != null) {
+                job.cancelled();
+                return;
+            }
             job.interrupt();
-            executor.shutdownNow();
-            initExecutorService();
         } finally {
-            busy = false;
             lock.unlock();
         }
     }
@@ -122,11 +217,32 @@ public final class TestExecutionServiceImpl implements TestExecutionService, Tes
      * {@inheritDoc}
      */
     @Override
-    public void pauseExecution(long jobId) throws ExecutionServiceException {
+    public void stopExecutions(List<Long> jobIds) throws ExecutionServiceException {
         lock.lock();
         try {
-            TestExecutionJob job = getJob(jobId);
-            job.pause();
+            List<TestExecutionJob> jobs = new ArrayList<TestExecutionJob>(jobIds.size());
+
+            // jobs of the batch, which already completed, are skipped
+            for (Long jobId : jobIds) {
+                TestExecutionJob job = getActiveJob(jobId);
+
+                if (job != null) {
+                    jobs.add(job);
+                }
+            }
+
+            for (TestExecutionJob job : jobs) {
+                if (queue.remove(job.getId()) != null) {
+                    job.cancelled();
+                }
+            }
+
+            for (TestExecutionJob job : jobs) {
+                if (job.getStatus() != ExecutionStatusType.INTERRUPTED) {
+                    job.interrupt();
+                }
+            }
+            dispatchQueued();
         } finally {
             lock.unlock();
         }
@@ -136,11 +252,22 @@ public final class TestExecutionServiceImpl implements TestExecutionService, Tes
      * {@inheritDoc}
      */
     @Override
-    public void resumeExecution(long jobId) throws ExecutionServiceException {
+    public void suspendExecutions() {
         lock.lock();
         try {
-            TestExecutionJob job = getJob(jobId);
-            job.resume();
+            for (Long jobId : jobCache.getCachedJobs()) {
+                TestExecutionJob job = jobCache.getTestExecutionJob(jobId);
+
+                if (job == null || isCompleted(job.getStatus())) {
+                    continue;
+                }
+                if (queue.remove(jobId) != null) {
+                    job.cancelled();
+                } else {
+                    job.suspend();
+                }
+            }
+            logger.info("Jobs suspended, checkpoints are kept");
         } finally {
             lock.unlock();
         }
@@ -150,11 +277,14 @@ public final class TestExecutionServiceImpl implements TestExecutionService, Tes
      * {@inheritDoc}
      */
     @Override
-    public ExecutionStatusType getJobStatus(long jobId) throws ExecutionServiceException {
+    public void pauseExecution(long jobId) throws ExecutionServiceException {
         lock.lock();
         try {
-            TestExecutionJob job = getJob(jobId);
-            return job.getStatus();
+            TestExecutionJob job = getActiveJob(jobId);
+
+            if (job != null) {
+                job.pause();
+            }
         } finally {
             lock.unlock();
         }
@@ -164,26 +294,470 @@ public final class TestExecutionServiceImpl implements TestExecutionService, Tes
      * {@inheritDoc}
      */
     @Override
-    public TestConfigurationResult getTestConfigurationResult(long jobId) throws ExecutionServiceException {
+    public void resumeExecution(long jobId) throws ExecutionServiceException {
         lock.lock();
         try {
-            TestExecutionJob job = getJob(jobId);
+            TestExecutionJob job = getActiveJob(jobId);
 
-            if (job instanceof TestConfigurationExecutionJob) {
-                TestConfigurationResult result = resultCache.getTestConfigurationResult(jobId);
+            if (job != null) {
+                job.resume();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ExecutionStatusType getJobStatus(long jobId) throws ExecutionServiceException {
+        TestExecutionJob job = jobCache.getTestExecutionJob(jobId);
+
+        if (job == null) {
+            return getStoredResult(jobId).getTestExecutionInfo().getTestStatus();
+        }
+        return job.getStatus();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TestConfigurationResult getTestConfigurationResult(long jobId) throws ExecutionServiceException {
+        TestConfigurationResult snapshot = resultCache.getFinalizedResult(jobId);
+
+        if (snapshot != null) {
+            retention.touch(jobId);
+            return snapshot;
+        }
+        TestExecutionJob job = jobCache.getTestExecutionJob(jobId);
+
+        if (job == null) {
+            return finalizeStored(jobId, getStoredResult(jobId));
+        }
+        TestConfigurationResult result = findTestConfigurationResult(job);
+
+        if (result.getStatus() == TestConfigurationStatusType.FINISHED
+                || result.getStatus() == TestConfigurationStatusType.CANCELLED) {
+            return finalizeOnce(jobId, result);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<TestResult> getTestResults(long jobId, int offset, int limit) throws ExecutionServiceException {
+
+        if (offset < 0 || limit < 0) {
+            throw new ExecutionServiceException("Invalid page [" + offset + ", " + limit + "] requested");
+        }
+        TestExecutionJob job = jobCache.getTestExecutionJob(jobId);
+
+        if (job == null) {
+            return getPage(readStoredResult(getStoredResult(jobId)).getTestResultList(), offset, limit, false);
+        }
+        List<TestResultContainer> containers = findTestConfigurationResult(job).getTestResultList();
+        ResultVersions versions = job.getResultVersions();
+
+        // the TestResults of a running job are copied while the job cannot change them
+        versions.lock();
+        try {
+            return getPage(containers, offset, limit, true);
+        } finally {
+            versions.unlock();
+        }
+    }
+
+    /**
+     * Gets a page of the top-level TestResults.
+     * 
+     * @param containers
+     *            the TestResults
+     * @param offset
+     *            the index of the first TestResult
+     * @param limit
+     *            the maximum number of TestResults, at most MAX_PAGE_SIZE are returned
+     * @param copy
+     *            true, if the TestResults are copied
+     * @return the page
+     */
+    private static List<TestResult> getPage(List<TestResultContainer> containers, int offset, int limit,
+            boolean copy) {
+        List<TestResult> page = new ArrayList<TestResult>();
+        int end = Math.min(containers.size(), offset + Math.min(limit, MAX_PAGE_SIZE));
+
+        for (int i = offset; i < end; i++) {
+            TestResult result = containers.get(i).getResult();
+            page.add(copy ? result.cloneObject() : result);
+        }
+        return page;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResultDelta getResultDelta(long jobId, long knownVersion) throws ExecutionServiceException {
+
+        if (knownVersion < 0) {
+            throw new ExecutionServiceException("Invalid version " + knownVersion + " requested");
+        }
+        TestExecutionJob job = jobCache.getTestExecutionJob(jobId);
 
-                if (result == null) {
-                    result = ((TestConfigurationExecutionJob) job).getTestConfigurationResult();
+        if (job == null) {
+            StoredResult stored = getStoredResult(jobId);
+            return ResultVersions.getCompleteChanges(readStoredResult(stored), stored.getVersion(), knownVersion);
+        }
+        retention.touch(jobId);
+        return job.getResultVersions().getChanges(knownVersion);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] readScreenshot(long jobId, Identifier imageId, long offset, int length)
+            throws ExecutionServiceException {
+        checkRange(offset, length);
+        TestExecutionJob job = jobCache.getTestExecutionJob(jobId);
+        length = Math.min(length, MAX_CHUNK_SIZE);
+
+        // only the screenshots of the job itself are read
+        byte[] range = job != null && job.ownsImage(imageId) ? TraceStore.getInstance().readImage(imageId, offset,
+                length) : null;
+
+        // the screenshots of a stored job are released from the TraceStore
+        if (range == null && imageId != null && (job == null || ResultStore.getInstance().contains(jobId))) {
+            StoredResult stored = getStoredResult(jobId);
+
+            try {
+                range = ResultStore.getInstance().readImage(stored, imageId.getValue(), offset, length);
+            } catch (IOException ex) {
+                logger.error(ex, "Could not read stored screenshot " + imageId + " of job " + jobId);
+                throw new ExecutionServiceException("Could not read stored screenshot " + imageId + ": "
+                        + ex.getMessage());
+            }
+        }
+
+        if (range == null) {
+            throw new ExecutionServiceException("No screenshot found for ImageId " + imageId);
+        }
+        return range;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] readFile(long jobId, Identifier fileId, long offset, int length) throws ExecutionServiceException {
+        checkRange(offset, length);
+        TestExecutionJob job = jobCache.getTestExecutionJob(jobId);
+        length = Math.min(length, MAX_CHUNK_SIZE);
+
+        // only the files of the job itself are read
+        byte[] range = job != null && job.ownsFile(fileId) ? TraceStore.getInstance().readData(fileId, offset, length)
+                : null;
+
+        // the files of a stored job are released from the TraceStore
+        if (range == null && fileId != null && (job == null || ResultStore.getInstance().contains(jobId))) {
+            StoredResult stored = getStoredResult(jobId);
+
+            try {
+                range = ResultStore.getInstance().readFile(stored, fileId.getValue(), offset, length);
+            } catch (IOException ex) {
+                logger.error(ex, "Could not read stored file " + fileId + " of job " + jobId);
+                throw new ExecutionServiceException("Could not read stored file " + fileId + ": " + ex.getMessage());
+            }
+        }
+
+        if (range == null) {
+            throw new ExecutionServiceException("No file found for FileId " + fileId);
+        }
+        return range;
+    }
+
+    private static void checkRange(long offset, int length) throws ExecutionServiceException {
+
+        if (offset < 0 || length < 0) {
+            throw new ExecutionServiceException("Invalid range [" + offset + ", " + length + "] requested");
+        }
+    }
+
+    /**
+     * Gets the TestConfigurationResult of a job from the result cache or the job itself.
+     * 
+     * @param job
+     *            the job
+     * @return the TestConfigurationResult
+     * @throws ExecutionServiceException
+     *             thrown, if the result does not exist
+     */
+    private TestConfigurationResult findTestConfigurationResult(TestExecutionJob job)
+            throws ExecutionServiceException {
+        long jobId = job.getId();
+        retention.touch(jobId);
+
+        if (job instanceof TestConfigurationExecutionJob) {
+            TestConfigurationResult result = resultCache.getTestConfigurationResult(jobId);
+
+            if (result == null) {
+                result = ((TestConfigurationExecutionJob) job).getTestConfigurationResult();
+            }
+
+            if (result == null) {
+                throw new ExecutionServiceException("No TestConfigurationResult found for JobId " + jobId);
+            } else {
+                return result;
+            }
+        } else {
+            throw new ExecutionServiceException("Invalid type of job requested: " + job.getClass().getName());
+        }
+    }
+
+    /**
+     * Gets the finalized snapshot of a stored TestConfigurationResult. The snapshot is created
+     * from the stored result and cached apart from the retained results, only the most recently
+     * requested snapshots of stored results are kept.
+     * 
+     * @param jobId
+     *            the job id
+     * @param stored
+     *            the stored result
+     * @return the snapshot containing screenshots and files
+     * @throws ExecutionServiceException
+     *             thrown, if the result cannot be finalized
+     */
+    private TestConfigurationResult finalizeStored(long jobId, StoredResult stored) throws ExecutionServiceException {
+
+        synchronized (stored) {
+            TestConfigurationResult snapshot = resultCache.getStoredSnapshot(jobId);
+
+            if (snapshot != null) {
+                return snapshot;
+            }
+            ResultStore store = ResultStore.getInstance();
+            Map<Long, byte[]> images = new HashMap<Long, byte[]>();
+            Map<Long, byte[]> files = new HashMap<Long, byte[]>();
+
+            try {
+                for (Long imageId : stored.getImageIds()) {
+                    images.put(imageId, store.readImage(stored, imageId, 0, (int) stored.getImageLength(imageId)));
                 }
+                for (Long fileId : stored.getFileIds()) {
+                    files.put(fileId, store.readFile(stored, fileId, 0, (int) stored.getFileLength(fileId)));
+                }
+            } catch (IOException ex) {
+                logger.error(ex, "Could not read stored screenshots and files of job " + jobId);
+                throw new ExecutionServiceException("Could not read stored result of JobId " + jobId + ": "
+                        + ex.getMessage());
+            }
+            snapshot = finalizeCopy(readStoredResult(stored), new TestResultFinalizationVisitor(images, files));
+            resultCache.addStoredSnapshot(jobId, snapshot);
+            return snapshot;
+        }
+    }
 
-                if (result == null) {
-                    throw new ExecutionServiceException("No TestConfigurationResult found for JobId " + jobId);
-                } else {
-                    return result;
+    /**
+     * Reads the TestConfigurationResult of a finished job from the ResultStore.
+     * 
+     * @param stored
+     *            the stored job
+     * @return the result referencing screenshots and files by their ids
+     * @throws ExecutionServiceException
+     *             thrown, if the result cannot be read
+     */
+    private TestConfigurationResult readStoredResult(StoredResult stored) throws ExecutionServiceException {
+
+        try {
+            return ResultStore.getInstance().readResult(stored);
+        } catch (IOException ex) {
+            logger.error(ex, "Could not read stored result of job " + stored.getJobId());
+            throw new ExecutionServiceException("Could not read stored result of JobId " + stored.getJobId() + ": "
+                    + ex.getMessage());
+        }
+    }
+
+    /**
+     * Gets a finished job from the ResultStore. Its TestExecutionInfo is available without
+     * reading the stored result.
+     * 
+     * @param jobId
+     *            the job id
+     * @return the stored job
+     * @throws ExecutionServiceException
+     *             thrown, if neither the job nor its stored result exists
+     */
+    private StoredResult getStoredResult(long jobId) throws ExecutionServiceException {
+        StoredResult stored = ResultStore.getInstance().get(jobId);
+
+        if (stored == null) {
+            throw new JobNotFoundException("Job with Id '" + jobId + " not found");
+        }
+        return stored;
+    }
+
+    /**
+     * Gets the finalized snapshot of a completed TestConfigurationResult. The snapshot is created
+     * on the first request, or again after it was dropped from the cache. Concurrent callers
+     * create the snapshot once.
+     * 
+     * @param jobId
+     *            the job id
+     * @param result
+     *            the completed TestConfigurationResult
+     * @return the snapshot containing screenshots and files
+     * @throws ExecutionServiceException
+     *             thrown, if the result cannot be finalized
+     */
+    private TestConfigurationResult finalizeOnce(long jobId, TestConfigurationResult result)
+            throws ExecutionServiceException {
+
+        synchronized (result) {
+            TestConfigurationResult snapshot = resultCache.getFinalizedResult(jobId);
+
+            if (snapshot != null) {
+                return snapshot;
+            }
+            snapshot = finalizeCopy(result);
+
+            // Only retained results are cached, the snapshot of an evicted job would never be removed
+            lock.lock();
+            try {
+                if (resultCache.getTestConfigurationResult(jobId) == result) {
+                    resultCache.addFinalizedResult(jobId, snapshot);
                 }
-            } else {
-                throw new ExecutionServiceException("Invalid type of job requested: " + job.getClass().getName());
+            } finally {
+                lock.unlock();
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Copies a completed TestConfigurationResult and puts its screenshots and files into the copy.
+     * The retained result keeps referencing them in the TraceStore.
+     * 
+     * @param result
+     *            the completed TestConfigurationResult
+     * @return the copy containing screenshots and files
+     * @throws ExecutionServiceException
+     *             thrown, if the result cannot be finalized
+     */
+    private TestConfigurationResult finalizeCopy(TestConfigurationResult result) throws ExecutionServiceException {
+        return finalizeCopy(result, new TestResultFinalizationVisitor());
+    }
+
+    /**
+     * Copies a completed TestConfigurationResult and applies the given finalization to the copy.
+     * 
+     * @param result
+     *            the completed TestConfigurationResult
+     * @param visitor
+     *            the finalization putting screenshots and files into the copy
+     * @return the copy containing screenshots and files
+     * @throws ExecutionServiceException
+     *             thrown, if the result cannot be finalized
+     */
+    private TestConfigurationResult finalizeCopy(TestConfigurationResult result, TestResultFinalizationVisitor visitor)
+            throws ExecutionServiceException {
+        TestConfigurationResult copy = result.cloneObject();
+
+        try {
+            copy.accept(visitor);
+        } catch (VisitorException ex) {
+            logger.error(ex, "Could not finalize TestConfigurationResult");
+            throw new ExecutionServiceException("Could not finalize TestConfigurationResult: " + ex.getMessage());
+        }
+        return copy;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TestExecutionInfo getTestExecutionInfo(long jobId) throws ExecutionServiceException {
+        TestExecutionJob job = jobCache.getTestExecutionJob(jobId);
+
+        if (job == null) {
+            return getStoredResult(jobId).getTestExecutionInfo();
+        }
+        TestExecutionInfo info = job.getTestExecutionInfo();
+
+        // The start time of a queued job is the estimated start time
+        if (info.getTestStatus() == ExecutionStatusType.INITIALIZED) {
+            int position = queue.getPosition(jobId);
+
+            if (position > 0) {
+                info.setStartTime(estimateStartTime(position));
+            }
+        }
+        return info;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TestExecutionInfo awaitTestExecutionInfo(long jobId, TestExecutionInfo knownInfo, long timeout)
+            throws ExecutionServiceException {
+        TestExecutionJob job = jobCache.getTestExecutionJob(jobId);
+
+        // a stored job is completed
+        if (job == null) {
+            return getStoredResult(jobId).getTestExecutionInfo();
+        }
+        long deadline = ExecutionClock.currentTimeMillis() + timeout;
+
+        while (true) {
+            long version = job.getVersion();
+            TestExecutionInfo info = getTestExecutionInfo(jobId);
+            long remaining = deadline - ExecutionClock.currentTimeMillis();
+
+            if (remaining <= 0 || isChanged(knownInfo, info) || isCompleted(info.getTestStatus())) {
+                return info;
             }
+            job.awaitChange(version, remaining);
+
+            if (Thread.currentThread().isInterrupted()) {
+                return getTestExecutionInfo(jobId);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getQueuePosition(long jobId) throws ExecutionServiceException {
+
+        if (jobCache.getTestExecutionJob(jobId) == null) {
+            getStoredResult(jobId);
+            return 0;
+        }
+        return queue.getPosition(jobId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Long> getRunningJobs() throws ExecutionServiceException {
+        return jobCache.getCachedJobs();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void drain() {
+        lock.lock();
+        try {
+            draining = true;
+            logger.info("Draining: no new jobs accepted, " + running.size() + " running and " + queue.size()
+                    + " queued jobs are finished");
         } finally {
             lock.unlock();
         }
@@ -193,11 +767,29 @@ public final class TestExecutionServiceImpl implements TestExecutionService, Tes
      * {@inheritDoc}
      */
     @Override
-    public TestExecutionInfo getTestExecutionInfo(long jobId) throws ExecutionServiceException {
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean awaitIdle(long timeout) {
         lock.lock();
         try {
-            TestExecutionJob job = getJob(jobId);
-            return job.getTestExecutionInfo();
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+
+            while (!running.isEmpty() || queue.size() > 0) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = idle.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
         } finally {
             lock.unlock();
         }
@@ -207,15 +799,119 @@ public final class TestExecutionServiceImpl implements TestExecutionService, Tes
      * {@inheritDoc}
      */
     @Override
-    public Set<Long> getRunningJobs() throws ExecutionServiceException {
+    public boolean shutdown(long timeout) {
+        watchdog.stop();
+        executor.shutdown();
+        forkExecutor.shutdown();
+
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+            if (executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)
+                    && forkExecutor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                logger.info("TestExecutionService shut down");
+                return true;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        // jobs still running are interrupted by the shutdown, not cancelled
+        for (TestExecutionJob job : running) {
+            job.suspend();
+        }
+        executor.shutdownNow();
+        forkExecutor.shutdownNow();
+        logger.warning("TestExecutionService shut down, executing threads interrupted");
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getJobSlots() {
+        return threadPoolSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setJobSlots(int jobSlots) {
+
+        if (jobSlots < 1) {
+            throw new IllegalArgumentException("Number of job slots must be at least 1: " + jobSlots);
+        }
+
+        lock.lock();
+        try {
+            int previous = threadPoolSize;
+
+            if (jobPool != null) {
+                if (jobSlots > previous) {
+                    jobPool.setMaximumPoolSize(jobSlots);
+                    jobPool.setCorePoolSize(jobSlots);
+                } else {
+                    jobPool.setCorePoolSize(jobSlots);
+                    jobPool.setMaximumPoolSize(jobSlots);
+                }
+            }
+            threadPoolSize = jobSlots;
+            logger.info("Job slots changed from " + previous + " to " + jobSlots);
+            dispatchQueued();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getQueueCapacity() {
+        return queue.getCapacity();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setQueueCapacity(int capacity) {
+
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Queue capacity must not be negative: " + capacity);
+        }
+
         lock.lock();
         try {
-            return jobCache.getCachedJobs();
+            int previous = queue.getCapacity();
+            queue.setCapacity(capacity);
+            logger.info("Queue capacity changed from " + previous + " to " + capacity);
         } finally {
             lock.unlock();
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addExecutionEventListener(ExecutionEventListener listener) {
+
+        if (listener == null) {
+            throw new IllegalArgumentException("ExecutionEventListener must not be null");
+        }
+        ExecutionEventBus.getInstance().subscribe(listener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeExecutionEventListener(ExecutionEventListener listener) {
+        ExecutionEventBus.getInstance().unsubscribe(listener);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -241,33 +937,415 @@ public final class TestExecutionServiceImpl implements TestExecutionService, Tes
      */
     @Override
     public void testExecutionFinished(TestExecutionEvent e) {
+        TestExecutionJob job = jobCache.getTestExecutionJob(e.getJobId());
+        TestConfigurationResult result = null;
+        boolean stored = false;
+        long size = 0;
+
+        // Store or measure the TestResult before locking, the snapshot is created on the first request
+        if (job instanceof TestConfigurationExecutionJob) {
+            result = ((TestConfigurationExecutionJob) job).getTestConfigurationResult();
+            stored = store(job, result);
+
+            if (!stored && result != null) {
+                size = ResultRetentionPolicy.estimateSize(result);
+            }
+        }
+
         lock.lock();
         try {
-            TestExecutionJob job = getJob(e.getJobId());
+            if (job == null) {
+                logger.warning("Finished job with Id '" + e.getJobId() + "' not found");
+                return;
+            }
+
+            // A stored job is read from the ResultStore on request and leaves the heap
+            if (stored) {
+                jobCache.removeTestExecutionJob(job.getId());
+                release(job.getId(), result);
+                return;
+            }
 
             // Put TestResult into Cache
-            if (job instanceof TestConfigurationExecutionJob) {
-                TestConfigurationResult result = ((TestConfigurationExecutionJob) job).getTestConfigurationResult();
+            if (result != null) {
                 resultCache.addTestConfigurationResult(job.getId(), result);
             }
-        } catch (JobNotFoundException ex) {
-            logger.warning(ex);
+            retention.retain(job.getId(), size);
+            evictFinishedJobs();
         } finally {
-            busy = false;
+            finished(e.getJobId());
             lock.unlock();
         }
     }
 
     /**
-	 * 
-	 */
-    private void initExecutorService() {
+     * Assigns an id to a job and dispatches or queues it. Must be called holding the lock.
+     * 
+     * @param job
+     *            the job to admit
+     * @param dispatchable
+     *            whether the job can be dispatched immediately
+     * @return the job id
+     * @throws JobRejectionException
+     *             thrown, if the executor rejects the job
+     */
+    private long admit(TestExecutionJob job, boolean dispatchable) throws JobRejectionException {
+        final long jobId = JobIdFactory.getInstance().createNewId();
+        job.setId(jobId);
+        job.addTestExecutionListener(this);
+        job.setForkExecutor(forkExecutor);
+        jobCache.addTestExecutionJob(job);
+
+        if (dispatchable) {
+            dispatch(job);
+        } else {
+            queue.offer(job);
+            logger.info("[JobId:" + jobId + "] Job queued at position " + queue.getPosition(jobId));
+        }
+        return jobId;
+    }
+
+    /**
+     * Removes the finished jobs and results evicted by the retention policy and releases their
+     * screenshots and files.
+     */
+    private void evictFinishedJobs() {
+
+        for (Long evictedJobId : retention.evict()) {
+            jobCache.removeTestExecutionJob(evictedJobId);
+            release(evictedJobId, resultCache.removeTestConfigurationResult(evictedJobId));
+            logger.info("[JobId:" + evictedJobId + "] Finished job evicted");
+        }
+    }
+
+    /**
+     * Releases the screenshots and files referenced by the result of a job from the TraceStore.
+     * 
+     * @param jobId
+     *            the job id
+     * @param result
+     *            the result or null
+     */
+    private void release(long jobId, TestConfigurationResult result) {
+
+        if (result != null) {
+            try {
+                result.accept(new TestResultReleaseVisitor());
+            } catch (VisitorException ex) {
+                logger.warning(ex, "Could not release TestConfigurationResult of job " + jobId);
+            }
+        }
+    }
+
+    /**
+     * Writes the result of a finished job together with its screenshots and files to the
+     * ResultStore.
+     * 
+     * @param job
+     *            the finished job
+     * @param result
+     *            the completed TestConfigurationResult
+     * @return true, if the result was stored, false if the ResultStore is disabled or failed
+     */
+    private boolean store(TestExecutionJob job, TestConfigurationResult result) {
+        ResultStore store = ResultStore.getInstance();
+
+        if (result == null || !store.isEnabled()) {
+            return false;
+        }
+
+        try {
+            TestResultCollectionVisitor collector = new TestResultCollectionVisitor();
+            result.accept(collector);
+            store.write(job.getId(), job.getTestExecutionInfo(), job.getResultVersions().getVersion(), result,
+                    collector.getImages(), collector.getFiles());
+            logger.info("[JobId:" + job.getId() + "] TestConfigurationResult stored");
+            return true;
+        } catch (VisitorException ex) {
+            logger.error(ex, "[JobId:" + job.getId() + "] Could not collect screenshots and files");
+        } catch (IOException ex) {
+            logger.error(ex, "[JobId:" + job.getId() + "] Could not store TestConfigurationResult");
+        }
+        return false;
+    }
+
+    /**
+     * Executes the given job in a free job slot.
+     * 
+     * @param job
+     *            the job to execute
+     * @throws JobRejectionException
+     *             thrown, if the executor rejects the job
+     */
+    private void dispatch(TestExecutionJob job) throws JobRejectionException {
+        try {
+            executor.execute(job);
+            running.add(job);
+        } catch (RejectedExecutionException ex) {
+            job.rejected();
+            jobCache.removeTestExecutionJob(job.getId());
+            String msg = "Job rejected: TestExecutionService is busy";
+            logger.warning(msg);
+            throw new JobRejectionException(msg, ex);
+        }
+    }
+
+    /**
+     * Frees the job slot of a finished job and dispatches the next queued job.
+     * 
+     * @param jobId
+     *            the id of the finished job
+     */
+    private void finished(long jobId) {
+
+        for (int i = 0; i < running.size(); i++) {
+            TestExecutionJob job = running.get(i);
+
+            if (job.getId() == jobId) {
+                running.remove(i);
+
+                if (job.getStartTime() != null) {
+                    long duration = ExecutionClock.currentTimeMillis() - job.getStartTime();
+                    averageDuration = averageDuration == 0 ? duration : (3 * averageDuration + duration) / 4;
+                }
+                break;
+            }
+        }
+        dispatchQueued();
+    }
+
+    /**
+     * Dispatches queued jobs while job slots are free and their proxies are not busy.
+     */
+    private void dispatchQueued() {
+
+        while (running.size() < threadPoolSize) {
+            TestExecutionJob next = queue.poll(getBusySubEngineTypes());
+
+            if (next == null) {
+                break;
+            }
+
+            try {
+                dispatch(next);
+                logger.info("[JobId:" + next.getId() + "] Dispatched queued job");
+            } catch (JobRejectionException ex) {
+                logger.error(ex, "Could not dispatch queued job " + next.getId());
+            }
+        }
+
+        if (running.isEmpty() && queue.size() == 0) {
+            idle.signalAll();
+        }
+    }
+
+    /**
+     * Checks whether the status or the progress of a job differs from the information known by a
+     * client.
+     * 
+     * @param known
+     *            the information known by the client
+     * @param current
+     *            the current information
+     * @return true, if the information differs
+     */
+    private static boolean isChanged(TestExecutionInfo known, TestExecutionInfo current) {
+        return known == null
+                || known.getTestStatus() != current.getTestStatus()
+                || !equal(known.getCurrentTestScriptId(), current.getCurrentTestScriptId())
+                || !equal(known.getCurrentTestScriptElementId(), current.getCurrentTestScriptElementId());
+    }
+
+    private static boolean equal(Object o1, Object o2) {
+        return o1 == null ? o2 == null : o1.equals(o2);
+    }
+
+    /**
+     * Checks whether a job cannot change anymore.
+     * 
+     * @param status
+     *            the status of the job
+     * @return true, if the job finished, was interrupted or rejected
+     */
+    private static boolean isCompleted(ExecutionStatusType status) {
+        return status == ExecutionStatusType.FINISHED
+                || status == ExecutionStatusType.INTERRUPTED
+                || status == ExecutionStatusType.REJECTED;
+    }
 
-        if (threadPoolSize <= 1) {
-            this.executor = Executors.newSingleThreadExecutor();
+    /**
+     * Rejects new jobs while draining.
+     * 
+     * @throws JobRejectionException
+     *             thrown, if the service is draining
+     */
+    private void checkDraining() throws JobRejectionException {
+
+        if (draining) {
+            throw new JobRejectionException("Job rejected: TestExecutionService is draining");
+        }
+    }
+
+    /**
+     * Checks whether a new job can be dispatched immediately. A job slot must be free and the job
+     * must not use a proxy used by a running job or reserved by a queued job.
+     * 
+     * @param job
+     *            the new job
+     * @return true, if the job can be dispatched
+     */
+    private boolean isDispatchable(TestExecutionJob job) {
+        return running.size() < threadPoolSize && queue.canOvertake(job, getBusySubEngineTypes());
+    }
+
+    /**
+     * Decides for each job of a batch, whether it is dispatched or queued, before any job of the
+     * batch is admitted. Jobs of the batch occupy job slots and reserve proxies like admitted
+     * jobs.
+     * 
+     * @param jobs
+     *            the jobs of the batch
+     * @return for each job true, if it is dispatched, false if it is queued
+     * @throws JobRejectionException
+     *             thrown, if the batch does not fit into the free job slots and the queue
+     */
+    private List<Boolean> planBatch(List<TestExecutionJob> jobs) throws JobRejectionException {
+        List<Boolean> dispatchable = new ArrayList<Boolean>(jobs.size());
+        Set<SubEngineType> busy = getBusySubEngineTypes();
+        Set<SubEngineType> reserved = EnumSet.noneOf(SubEngineType.class);
+        int slots = running.size();
+        int queued = queue.size();
+
+        for (TestExecutionJob job : jobs) {
+            Set<SubEngineType> required = job.getRequiredSubEngineTypes();
+
+            if (slots < threadPoolSize && Collections.disjoint(required, reserved)
+                    && queue.canOvertake(job, busy)) {
+                busy.addAll(required);
+                slots++;
+                dispatchable.add(Boolean.TRUE);
+            } else if (queued < queue.getCapacity()) {
+                reserved.addAll(required);
+                queued++;
+                dispatchable.add(Boolean.FALSE);
+            } else {
+                throw new JobRejectionException("Batch of " + jobs.size() + " jobs rejected: only "
+                        + Math.max(threadPoolSize - running.size(), 0) + " job slots and "
+                        + Math.max(queue.getCapacity() - queue.size(), 0) + " queue places are available");
+            }
+        }
+        return dispatchable;
+    }
+
+    /**
+     * Gets the SubEngineTypes whose proxies are used by the running jobs.
+     * 
+     * @return the busy SubEngineTypes
+     */
+    private Set<SubEngineType> getBusySubEngineTypes() {
+        Set<SubEngineType> busy = EnumSet.noneOf(SubEngineType.class);
+
+        for (TestExecutionJob job : running) {
+            busy.addAll(job.getRequiredSubEngineTypes());
+        }
+        return busy;
+    }
+
+    /**
+     * Estimates the start time of a queued job using the average duration of the finished jobs.
+     * 
+     * @param position
+     *            the position of the job in the queue
+     * @return the estimated start time or null, if no job has finished yet
+     */
+    private Long estimateStartTime(int position) {
+
+        if (averageDuration == 0) {
+            return null;
+        }
+        long now = ExecutionClock.currentTimeMillis();
+        List<Long> remaining = new ArrayList<Long>();
+
+        for (TestExecutionJob job : running) {
+            long elapsed = job.getStartTime() != null ? now - job.getStartTime() : 0;
+            remaining.add(Long.valueOf(Math.max(averageDuration - elapsed, 0)));
+        }
+        Collections.sort(remaining);
+
+        int slots = threadPoolSize;
+        int slot = (position - 1) % slots;
+        int round = (position - 1) / slots;
+        long firstFree = slot < remaining.size() ? remaining.get(slot).longValue() : 0;
+        return Long.valueOf(now + firstFree + round * averageDuration);
+    }
+
+    /**
+     * Initializes the executors of the jobs and their forked tasks. Virtual threads are not
+     * pooled, every task gets a new thread and the number of jobs is limited by the virtual job
+     * slots. Platform threads are pooled with one thread per job slot, the pool is resized with
+     * the job slots. Forked tasks on platform threads share a bounded pool, a task forked while
+     * the pool is busy is executed by the forking thread.
+     * 
+     * @param virtualJobSlots
+     *            the number of job slots, if the jobs are executed on virtual threads
+     * @param forkPoolSize
+     *            the maximum number of platform threads executing forked tasks
+     */
+    private void initExecutorService(int virtualJobSlots, int forkPoolSize) {
+        ExecutionThreadFactory jobThreadFactory = new ExecutionThreadFactory("TestExecutionJob-", executionMode);
+        ExecutionThreadFactory forkThreadFactory = new ExecutionThreadFactory("TestExecutionFork-", executionMode);
+
+        if (jobThreadFactory.isVirtual()) {
+            this.threadPoolSize = virtualJobSlots;
+            this.executor = newThreadPerTaskExecutor(jobThreadFactory);
+            logger.info("Executing jobs on virtual threads");
+        } else {
+            this.jobPool = new ThreadPoolExecutor(threadPoolSize, threadPoolSize, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(), jobThreadFactory);
+            this.executor = this.jobPool;
+        }
+
+        if (forkThreadFactory.isVirtual()) {
+            this.forkExecutor = newThreadPerTaskExecutor(forkThreadFactory);
         } else {
-            this.executor = Executors.newFixedThreadPool(threadPoolSize);
+            this.forkExecutor = new ThreadPoolExecutor(0, forkPoolSize, 60L, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(), forkThreadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+    }
+
+    /**
+     * Creates an executor starting a new thread for every task without keeping idle threads.
+     * 
+     * @param threadFactory
+     *            the factory of the threads
+     * @return the executor
+     */
+    private static ExecutorService newThreadPerTaskExecutor(ExecutionThreadFactory threadFactory) {
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                threadFactory);
+    }
+
+    /**
+     * Gets a job to be stopped, paused or resumed. A completed job is not controlled anymore, it
+     * may already be removed from the cache, e.g. when its result was written to the
+     * ResultStore or evicted.
+     * 
+     * @param jobId
+     *            the job id
+     * @return the job, or null if the job already completed
+     * @throws JobNotFoundException
+     *             thrown, if no job with the id was started
+     */
+    private TestExecutionJob getActiveJob(long jobId) throws JobNotFoundException {
+        TestExecutionJob job = jobCache.getTestExecutionJob(jobId);
+
+        if (job == null) {
+            if (JobIdFactory.getInstance().isCreated(jobId)) {
+                return null;
+            }
+            throw new JobNotFoundException("Job with Id '" + jobId + " not found");
         }
+        return isCompleted(job.getStatus()) ? null : job;
     }
 
     /**
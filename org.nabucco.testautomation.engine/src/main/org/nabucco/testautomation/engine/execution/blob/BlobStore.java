@@ -0,0 +1,506 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.blob;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.nabucco.framework.base.facade.datatype.logger.NabuccoLogger;
+import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
+
+/**
+ * BlobStore
+ * <p>
+ * Stores large binary contents of a running execution, e.g. screenshots and files. Contents are
+ * kept on the heap up to a memory budget, the oldest contents beyond the budget are appended to
+ * segment files and read back on demand. A segment file is deleted as soon as none of its
+ * contents is referenced anymore.
+ * <p>
+ * Contents stored by {@link #store(byte[], byte[])} are shared: an identical content is kept
+ * only once and counts its references, each {@link #remove(long)} releases one reference.
+ * Contents are identical, if their digests and lengths are equal.
+ * 
+ * @author agent
+ */
+public class BlobStore {
+
+    private static final NabuccoLogger logger = NabuccoLoggingFactory.getInstance().getLogger(BlobStore.class);
+
+    private static final String SEGMENT_PREFIX = "blobs-";
+
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    private final File directory;
+
+    private final long memoryBudget;
+
+    /** Contents on the heap in the order they were stored. */
+    private final LinkedHashMap<Long, byte[]> memory = new LinkedHashMap<Long, byte[]>();
+
+    /** Contents spilled to a segment file. */
+    private final Map<Long, Location> spilled = new HashMap<Long, Location>();
+
+    /** The references of shared contents referenced more than once. */
+    private final Map<Long, Integer> references = new HashMap<Long, Integer>();
+
+    /** The digests of shared contents. */
+    private final Map<Long, byte[]> digests = new HashMap<Long, byte[]>();
+
+    private long memoryUsage;
+
+    private long diskUsage;
+
+    private Segment segment;
+
+    private int segmentCounter;
+
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Constructs a new BlobStore. Segment files left over in the directory by a previous process
+     * are deleted, they are not referenced by any result anymore.
+     * 
+     * @param directory
+     *            the directory of the segment files
+     * @param memoryBudget
+     *            the maximum number of bytes kept on the heap
+     */
+    public BlobStore(File directory, long memoryBudget) {
+        this.directory = directory;
+        this.memoryBudget = memoryBudget;
+        File[] files = directory.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith(SEGMENT_PREFIX) && !file.delete()) {
+                    logger.warning("Could not delete stale blob segment " + file.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores a content. A content stored with the same id before is replaced.
+     * 
+     * @param id
+     *            the id of the content
+     * @param content
+     *            the content
+     */
+    public void put(long id, byte[] content) {
+        lock.lock();
+        try {
+            delete(id);
+            memory.put(id, content);
+            memoryUsage += content.length;
+            spill();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores a shared content under an id derived from its digest. An identical content stored
+     * before is referenced once more instead of being stored again. A different content with the
+     * same id is stored under the next free id.
+     * 
+     * @param digest
+     *            the digest of the content, at least 8 bytes
+     * @param content
+     *            the content
+     * @return the id of the content
+     */
+    public long store(byte[] digest, byte[] content) {
+        long id = 0;
+
+        for (int i = 0; i < 8; i++) {
+            id = (id << 8) | (digest[i] & 0xFF);
+        }
+
+        lock.lock();
+        try {
+            while (true) {
+                if (!contains(id)) {
+                    put(id, content);
+                    digests.put(id, digest);
+                    return id;
+                }
+
+                if (Arrays.equals(digests.get(id), digest) && getLength(id) == content.length) {
+                    retain(id);
+                    return id;
+                }
+                id++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a reference to a content, e.g. for a copy of a result referencing the content. Each
+     * reference is released by {@link #remove(long)}.
+     * 
+     * @param id
+     *            the id of the content
+     * @return true, if the reference was added, false if no content is stored with the id
+     */
+    public boolean retain(long id) {
+        lock.lock();
+        try {
+            if (!contains(id)) {
+                return false;
+            }
+            Integer count = references.get(id);
+            references.put(id, count == null ? 2 : count + 1);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets a content.
+     * 
+     * @param id
+     *            the id of the content
+     * @return the content, or null if no content is stored with the id
+     */
+    public byte[] get(long id) {
+        lock.lock();
+        try {
+            byte[] content = memory.get(id);
+
+            if (content != null) {
+                return content;
+            }
+            Location location = spilled.get(id);
+
+            if (location == null) {
+                return null;
+            }
+            try {
+                return location.segment.read(location.offset, location.length);
+            } catch (IOException ex) {
+                logger.error(ex, "Could not read blob " + id + " from " + location.segment.file.getAbsolutePath());
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads a range of a content. Spilled contents are read from their segment without loading
+     * the whole content.
+     * 
+     * @param id
+     *            the id of the content
+     * @param offset
+     *            the position of the first byte to read
+     * @param length
+     *            the maximum number of bytes to read
+     * @return the bytes read, empty if the offset is beyond the end of the content, or null if no
+     *         content is stored with the id
+     */
+    public byte[] read(long id, long offset, int length) {
+
+        lock.lock();
+        try {
+            if (offset < 0 || length < 0) {
+                throw new IllegalArgumentException("Invalid range [" + offset + ", " + length + "]");
+            }
+            byte[] content = memory.get(id);
+
+            if (content != null) {
+                int from = (int) Math.min(offset, content.length);
+                return Arrays.copyOfRange(content, from, (int) Math.min((long) from + length, content.length));
+            }
+            Location location = spilled.get(id);
+
+            if (location == null) {
+                return null;
+            }
+            int count = (int) Math.max(0, Math.min(length, location.length - offset));
+
+            try {
+                return location.segment.read(location.offset + offset, count);
+            } catch (IOException ex) {
+                logger.error(ex, "Could not read blob " + id + " from " + location.segment.file.getAbsolutePath());
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a content. A shared content is only removed with its last reference.
+     * 
+     * @param id
+     *            the id of the content
+     * @return the removed content, or null if no content is stored with the id
+     */
+    public byte[] remove(long id) {
+        lock.lock();
+        try {
+            Integer count = references.get(id);
+
+            if (count != null) {
+                if (count > 2) {
+                    references.put(id, count - 1);
+                } else {
+                    references.remove(id);
+                }
+                return get(id);
+            }
+            return delete(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private byte[] delete(long id) {
+        references.remove(id);
+        digests.remove(id);
+        byte[] content = memory.remove(id);
+
+        if (content != null) {
+            memoryUsage -= content.length;
+            return content;
+        }
+
+        if (!spilled.containsKey(id)) {
+            return null;
+        }
+        content = get(id);
+        Location location = spilled.remove(id);
+        diskUsage -= location.length;
+        location.segment.release();
+        return content;
+    }
+
+    /**
+     * Checks whether a content is stored.
+     * 
+     * @param id
+     *            the id of the content
+     * @return true, if a content is stored with the id
+     */
+    public boolean contains(long id) {
+        lock.lock();
+        try {
+            return memory.containsKey(id) || spilled.containsKey(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long getLength(long id) {
+        byte[] content = memory.get(id);
+
+        if (content != null) {
+            return content.length;
+        }
+        Location location = spilled.get(id);
+        return location != null ? location.length : -1;
+    }
+
+    /**
+     * Gets the number of bytes kept on the heap.
+     * 
+     * @return the number of bytes
+     */
+    public long getMemoryUsage() {
+        lock.lock();
+        try {
+            return memoryUsage;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of bytes spilled to the segment files.
+     * 
+     * @return the number of bytes
+     */
+    public long getDiskUsage() {
+        lock.lock();
+        try {
+            return diskUsage;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends the oldest contents to the current segment, until the contents on the heap fit
+     * into the memory budget. Contents that cannot be written remain on the heap.
+     */
+    private void spill() {
+        Iterator<Map.Entry<Long, byte[]>> iterator = memory.entrySet().iterator();
+
+        while (memoryUsage > memoryBudget && iterator.hasNext()) {
+            Map.Entry<Long, byte[]> entry = iterator.next();
+            byte[] content = entry.getValue();
+
+            try {
+                Segment target = getSegment(content.length);
+                long offset = target.append(content);
+                spilled.put(entry.getKey(), new Location(target, offset, content.length));
+                iterator.remove();
+                memoryUsage -= content.length;
+                diskUsage += content.length;
+            } catch (IOException ex) {
+                logger.error(ex, "Could not spill blobs to " + directory.getAbsolutePath());
+                return;
+            }
+        }
+    }
+
+    private Segment getSegment(int length) throws IOException {
+
+        if (segment == null || segment.size + length > SEGMENT_SIZE) {
+
+            if (segment != null) {
+                segment.seal();
+            }
+
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Could not create blob directory " + directory.getAbsolutePath());
+            }
+            segment = new Segment(new File(directory, SEGMENT_PREFIX + (++segmentCounter) + SEGMENT_SUFFIX));
+        }
+        return segment;
+    }
+
+    /**
+     * Position of a spilled content.
+     */
+    private static final class Location {
+
+        private final Segment segment;
+
+        private final long offset;
+
+        private final int length;
+
+        private Location(Segment segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Append-only segment file. Guarded by the lock of the BlobStore.
+     */
+    private static final class Segment {
+
+        private final File file;
+
+        private final RandomAccessFile access;
+
+        private final FileChannel channel;
+
+        private long size;
+
+        private int references;
+
+        private boolean sealed;
+
+        private Segment(File file) throws IOException {
+            this.file = file;
+            this.access = new RandomAccessFile(file, "rw");
+            this.channel = access.getChannel();
+        }
+
+        private long append(byte[] content) throws IOException {
+            long offset = size;
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+            size += content.length;
+            references++;
+            return offset;
+        }
+
+        private byte[] read(long offset, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of blob segment");
+                }
+            }
+            return buffer.array();
+        }
+
+        private void release() {
+            references--;
+            deleteIfUnused();
+        }
+
+        private void seal() {
+            sealed = true;
+            deleteIfUnused();
+        }
+
+        private void deleteIfUnused() {
+
+            if (references > 0) {
+                return;
+            }
+
+            // the current segment is reused from its start
+            if (!sealed) {
+                try {
+                    channel.truncate(0);
+                    size = 0;
+                } catch (IOException ex) {
+                    logger.warning("Could not truncate blob segment " + file.getAbsolutePath());
+                }
+                return;
+            }
+            try {
+                access.close();
+            } catch (IOException ex) {
+                logger.warning("Could not close blob segment " + file.getAbsolutePath());
+            }
+
+            if (!file.delete()) {
+                logger.warning("Could not delete blob segment " + file.getAbsolutePath());
+            }
+        }
+    }
+
+}
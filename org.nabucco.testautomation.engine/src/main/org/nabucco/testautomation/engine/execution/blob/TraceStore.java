@@ -0,0 +1,302 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.blob;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.nabucco.framework.base.facade.datatype.Data;
+import org.nabucco.framework.base.facade.datatype.Identifier;
+import org.nabucco.framework.base.facade.datatype.image.ImageData;
+import org.nabucco.testautomation.engine.execution.TestExecutionServiceFactory;
+import org.nabucco.testautomation.engine.proxy.cache.DataCache;
+import org.nabucco.testautomation.engine.proxy.cache.ImageCache;
+import org.nabucco.testautomation.result.facade.datatype.trace.ActionTrace;
+import org.nabucco.testautomation.result.facade.datatype.trace.FileTrace;
+import org.nabucco.testautomation.result.facade.datatype.trace.ScreenshotTrace;
+
+/**
+ * TraceStore
+ * <p>
+ * Stores the screenshots and files of ActionTraces in the {@link BlobStore} of the engine. The
+ * contents are referenced by the image id and file id of the traces, which are derived from the
+ * contents, so identical screenshots and files are stored once. Contents put into the
+ * ImageCache and DataCache by the proxies are adopted from there after each Action and are
+ * still found there, if they were not adopted.
+ * 
+ * @author agent
+ */
+public final class TraceStore {
+
+    private static final String DIGEST = "SHA-1";
+
+    private static TraceStore instance;
+
+    private final BlobStore images;
+
+    private final BlobStore files;
+
+    private TraceStore(BlobStore images, BlobStore files) {
+        this.images = images;
+        this.files = files;
+    }
+
+    public static synchronized TraceStore getInstance() {
+
+        if (instance == null) {
+            File directory = new File(TestExecutionServiceFactory.BLOB_PATH);
+            long budget = TestExecutionServiceFactory.BLOB_MEMORY_BUDGET / 2;
+            instance = new TraceStore(new BlobStore(new File(directory, "images"), budget), new BlobStore(
+                    new File(directory, "files"), budget));
+        }
+        return instance;
+    }
+
+    /**
+     * Moves the screenshot or the file of an ActionTrace received from a proxy into the store.
+     * The trace then references the content by its content id.
+     * 
+     * @param trace
+     *            the ActionTrace
+     */
+    public void adopt(ActionTrace trace) {
+
+        if (trace instanceof ScreenshotTrace) {
+            ScreenshotTrace screenshot = (ScreenshotTrace) trace;
+
+            if (screenshot.getImageId() != null) {
+                ImageData image = ImageCache.getInstance().remove(screenshot.getImageId());
+
+                if (image != null) {
+                    screenshot.setImageId(storeImage(image));
+                }
+            }
+        } else if (trace instanceof FileTrace) {
+            FileTrace file = (FileTrace) trace;
+
+            if (file.getFileId() != null) {
+                Data data = DataCache.getInstance().remove(file.getFileId());
+
+                if (data != null) {
+                    file.setFileId(storeData(data));
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores a screenshot under an id derived from its content. Identical screenshots are
+     * stored once, each call adds a reference released by {@link #removeImage(Identifier)}.
+     * 
+     * @param image
+     *            the screenshot
+     * @return the image id, or null if the screenshot is empty
+     */
+    public Identifier storeImage(ImageData image) {
+
+        if (image == null || image.getValue() == null) {
+            return null;
+        }
+        byte[] content = image.getValue();
+        return new Identifier(images.store(digest(content), content));
+    }
+
+    /**
+     * Gets a screenshot.
+     * 
+     * @param imageId
+     *            the image id
+     * @return the screenshot or null
+     */
+    public ImageData getImage(Identifier imageId) {
+
+        if (imageId == null) {
+            return null;
+        }
+        byte[] content = images.get(imageId.getValue());
+        return content != null ? new ImageData(content) : ImageCache.getInstance().get(imageId);
+    }
+
+    /**
+     * Reads a range of a screenshot.
+     * 
+     * @param imageId
+     *            the image id
+     * @param offset
+     *            the position of the first byte to read
+     * @param length
+     *            the maximum number of bytes to read
+     * @return the bytes read, empty beyond the end of the screenshot, or null if the screenshot
+     *         does not exist
+     */
+    public byte[] readImage(Identifier imageId, long offset, int length) {
+
+        if (imageId == null) {
+            return null;
+        }
+        byte[] range = images.read(imageId.getValue(), offset, length);
+        return range != null ? range : slice(ImageCache.getInstance().get(imageId), offset, length);
+    }
+
+    /**
+     * Adds a reference to a screenshot, e.g. for a copy of a ScreenshotTrace keeping its image id.
+     * 
+     * @param imageId
+     *            the image id
+     */
+    public void retainImage(Identifier imageId) {
+
+        if (imageId != null) {
+            images.retain(imageId.getValue());
+        }
+    }
+
+    /**
+     * Removes a reference of a screenshot.
+     * 
+     * @param imageId
+     *            the image id
+     * @return the removed screenshot or null
+     */
+    public ImageData removeImage(Identifier imageId) {
+
+        if (imageId == null) {
+            return null;
+        }
+        byte[] content = images.remove(imageId.getValue());
+        return content != null ? new ImageData(content) : ImageCache.getInstance().remove(imageId);
+    }
+
+    /**
+     * Stores a file under an id derived from its content. Identical files are stored once, each
+     * call adds a reference released by {@link #removeData(Identifier)}.
+     * 
+     * @param data
+     *            the file content
+     * @return the file id, or null if the file is empty
+     */
+    public Identifier storeData(Data data) {
+
+        if (data == null || data.getValue() == null) {
+            return null;
+        }
+        byte[] content = data.getValue();
+        return new Identifier(files.store(digest(content), content));
+    }
+
+    /**
+     * Gets a file.
+     * 
+     * @param fileId
+     *            the file id
+     * @return the file content or null
+     */
+    public Data getData(Identifier fileId) {
+
+        if (fileId == null) {
+            return null;
+        }
+        byte[] content = files.get(fileId.getValue());
+        return content != null ? new Data(content) : DataCache.getInstance().get(fileId);
+    }
+
+    /**
+     * Reads a range of a file.
+     * 
+     * @param fileId
+     *            the file id
+     * @param offset
+     *            the position of the first byte to read
+     * @param length
+     *            the maximum number of bytes to read
+     * @return the bytes read, empty beyond the end of the file, or null if the file does not
+     *         exist
+     */
+    public byte[] readData(Identifier fileId, long offset, int length) {
+
+        if (fileId == null) {
+            return null;
+        }
+        byte[] range = files.read(fileId.getValue(), offset, length);
+        return range != null ? range : slice(DataCache.getInstance().get(fileId), offset, length);
+    }
+
+    /**
+     * Adds a reference to a file, e.g. for a copy of a FileTrace keeping its file id.
+     * 
+     * @param fileId
+     *            the file id
+     */
+    public void retainData(Identifier fileId) {
+
+        if (fileId != null) {
+            files.retain(fileId.getValue());
+        }
+    }
+
+    /**
+     * Removes a reference of a file.
+     * 
+     * @param fileId
+     *            the file id
+     * @return the removed file content or null
+     */
+    public Data removeData(Identifier fileId) {
+
+        if (fileId == null) {
+            return null;
+        }
+        byte[] content = files.remove(fileId.getValue());
+        return content != null ? new Data(content) : DataCache.getInstance().remove(fileId);
+    }
+
+    private static byte[] slice(ImageData image, long offset, int length) {
+        return image != null ? slice(image.getValue(), offset, length) : null;
+    }
+
+    private static byte[] slice(Data data, long offset, int length) {
+        return data != null ? slice(data.getValue(), offset, length) : null;
+    }
+
+    private static byte[] slice(byte[] content, long offset, int length) {
+
+        if (content == null) {
+            return null;
+        }
+        int from = (int) Math.min(Math.max(offset, 0), content.length);
+        return Arrays.copyOfRange(content, from, (int) Math.min((long) from + Math.max(length, 0), content.length));
+    }
+
+    /**
+     * Computes the SHA-1 digest of a content.
+     * 
+     * @param content
+     *            the content
+     * @return the digest
+     */
+    private static byte[] digest(byte[] content) {
+        try {
+            return MessageDigest.getInstance(DIGEST).digest(content);
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform supports SHA-1
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
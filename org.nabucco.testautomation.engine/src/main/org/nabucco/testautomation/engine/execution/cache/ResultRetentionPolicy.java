@@ -0,0 +1,191 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.cache;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.nabucco.testautomation.engine.execution.timing.ExecutionClock;
+
+/**
+ * 
+ * ResultRetentionPolicy
+ * <p>
+ * Keeps track of finished jobs and decides which of them are evicted from the
+ * {@link TestExecutionJobCache} and the {@link TestConfigurationResultCache}. A finished job is
+ * evicted, when its time to live expired. The least recently used jobs are evicted, while more
+ * jobs are retained than allowed or their results exceed the heap budget.
+ *
+ * @author agent
+ *
+ */
+public final class ResultRetentionPolicy {
+
+	private final Map<Long, RetainedJob> retained = new ConcurrentHashMap<Long, RetainedJob>();
+
+	private final int maxCount;
+	
+	private final long timeToLive;
+	
+	private final long heapBudget;
+	
+	/**
+	 * Constructs a new ResultRetentionPolicy.
+	 * 
+	 * @param maxCount the maximum number of retained finished jobs
+	 * @param timeToLive the time in milliseconds a finished job is retained, 0 for no limit
+	 * @param heapBudget the approximate number of bytes the retained results may use, 0 for no limit
+	 */
+	public ResultRetentionPolicy(int maxCount, long timeToLive, long heapBudget) {
+		this.maxCount = maxCount;
+		this.timeToLive = timeToLive;
+		this.heapBudget = heapBudget;
+	}
+	
+	/**
+	 * Starts retaining a finished job.
+	 * 
+	 * @param jobId the job id
+	 * @param size the approximate size of the job's result in bytes
+	 */
+	public void retain(long jobId, long size) {
+		retained.put(jobId, new RetainedJob(jobId, size, ExecutionClock.currentTimeMillis()));
+	}
+	
+	/**
+	 * Marks a retained job as recently used.
+	 * 
+	 * @param jobId the job id
+	 */
+	public void touch(long jobId) {
+		RetainedJob job = retained.get(jobId);
+		
+		if (job != null) {
+			job.lastAccess = ExecutionClock.currentTimeMillis();
+		}
+	}
+	
+	/**
+	 * Removes the finished jobs to be evicted.
+	 * 
+	 * @return the ids of the evicted jobs
+	 */
+	public synchronized List<Long> evict() {
+		List<Long> evicted = new ArrayList<Long>();
+		long now = ExecutionClock.currentTimeMillis();
+		long size = 0;
+		
+		Iterator<RetainedJob> iterator = retained.values().iterator();
+		
+		while (iterator.hasNext()) {
+			RetainedJob job = iterator.next();
+			
+			if (timeToLive > 0 && now - job.finished > timeToLive) {
+				evicted.add(job.jobId);
+				iterator.remove();
+			} else {
+				size += job.size;
+			}
+		}
+		
+		List<RetainedJob> lru = new ArrayList<RetainedJob>(retained.values());
+		Collections.sort(lru, new Comparator<RetainedJob>() {
+			@Override
+			public int compare(RetainedJob o1, RetainedJob o2) {
+				return o1.lastAccess < o2.lastAccess ? -1 : (o1.lastAccess == o2.lastAccess ? 0 : 1);
+			}
+		});
+		int count = lru.size();
+		
+		for (RetainedJob job : lru) {
+			
+			if (count <= maxCount && (heapBudget <= 0 || size <= heapBudget)) {
+				break;
+			}
+			retained.remove(job.jobId);
+			evicted.add(job.jobId);
+			size -= job.size;
+			count--;
+		}
+		return evicted;
+	}
+	
+	/**
+	 * Estimates the heap used by a result by the size of its serialized form.
+	 * 
+	 * @param result the result
+	 * @return the approximate size in bytes, or 0 if the result cannot be serialized
+	 */
+	public static long estimateSize(Object result) {
+		
+		if (result == null) {
+			return 0;
+		}
+		CountingOutputStream counter = new CountingOutputStream();
+		
+		try {
+			ObjectOutputStream out = new ObjectOutputStream(counter);
+			out.writeObject(result);
+			out.close();
+		} catch (IOException ex) {
+			return 0;
+		}
+		return counter.count;
+	}
+	
+	private static final class RetainedJob {
+		
+		private final long jobId;
+		
+		private final long size;
+		
+		private final long finished;
+		
+		private volatile long lastAccess;
+		
+		private RetainedJob(long jobId, long size, long finished) {
+			this.jobId = jobId;
+			this.size = size;
+			this.finished = finished;
+			this.lastAccess = finished;
+		}
+	}
+	
+	private static final class CountingOutputStream extends OutputStream {
+		
+		private long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+	
+}
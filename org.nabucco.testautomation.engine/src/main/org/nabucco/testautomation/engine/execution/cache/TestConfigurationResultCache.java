@@ -16,21 +16,48 @@
  */
 package org.nabucco.testautomation.engine.execution.cache;
 
-import java.util.HashMap;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.nabucco.testautomation.result.facade.datatype.TestConfigurationResult;
 
 /**
  * 
  * TestResultCache
+ * <p>
+ * Besides the TestConfigurationResults of the finished jobs, the cache holds their finalized
+ * snapshots containing screenshots and files. The snapshots are softly referenced, so they are
+ * dropped before the heap runs out.
+ * <p>
+ * The snapshots of results read from the ResultStore are held apart from the retained results,
+ * only the most recently requested ones are kept.
  *
  * @author Steffen Schmidt, PRODYNA AG
  *
  */
 public class TestConfigurationResultCache {
 	
-	private final Map<Long, TestConfigurationResult> cache = new HashMap<Long, TestConfigurationResult>();
+	/**
+	 * The maximum number of snapshots of stored results.
+	 */
+	private static final int STORED_SNAPSHOTS = 8;
+	
+	private final Map<Long, TestConfigurationResult> cache = new ConcurrentHashMap<Long, TestConfigurationResult>();
+
+	private final ConcurrentHashMap<Long, SoftReference<TestConfigurationResult>> snapshots = new ConcurrentHashMap<Long, SoftReference<TestConfigurationResult>>();
+
+	private final Map<Long, SoftReference<TestConfigurationResult>> storedSnapshots = new LinkedHashMap<Long, SoftReference<TestConfigurationResult>>(
+			16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, SoftReference<TestConfigurationResult>> eldest) {
+			return size() > STORED_SNAPSHOTS;
+		}
+	};
 
 	public TestConfigurationResultCache() {}
 	
@@ -39,7 +66,7 @@ public class TestConfigurationResultCache {
 	 * 
 	 * @param result the TestResult to be added
 	 */
-	public synchronized void addTestConfigurationResult(Long resultId, TestConfigurationResult result) {
+	public void addTestConfigurationResult(Long resultId, TestConfigurationResult result) {
 		cache.put(resultId, result);
 	}
 	
@@ -49,24 +76,94 @@ public class TestConfigurationResultCache {
 	 * @param resultId the result id
 	 * @return the TestResult or null, if no job was found
 	 */
-	public synchronized TestConfigurationResult getTestConfigurationResult(Long resultId) {
+	public TestConfigurationResult getTestConfigurationResult(Long resultId) {
 		return cache.get(resultId);
 	}
 	
 	/**
-	 * Removes a TestResult from the cache identified by the given job id.
+	 * Adds the finalized snapshot of a TestResult to the cache.
+	 * 
+	 * @param resultId the result id
+	 * @param snapshot the finalized snapshot, which must not be modified afterwards
+	 */
+	public void addFinalizedResult(Long resultId, TestConfigurationResult snapshot) {
+		snapshots.put(resultId, new SoftReference<TestConfigurationResult>(snapshot));
+	}
+	
+	/**
+	 * Gets the finalized snapshot of a TestResult identified by the given job id.
+	 * 
+	 * @param resultId the result id
+	 * @return the snapshot or null, if no snapshot was added or it was dropped
+	 */
+	public TestConfigurationResult getFinalizedResult(Long resultId) {
+		SoftReference<TestConfigurationResult> reference = snapshots.get(resultId);
+		
+		if (reference == null) {
+			return null;
+		}
+		TestConfigurationResult snapshot = reference.get();
+		
+		if (snapshot == null) {
+			snapshots.remove(resultId, reference);
+		}
+		return snapshot;
+	}
+	
+	/**
+	 * Adds the finalized snapshot of a result read from the ResultStore to the cache. The least
+	 * recently requested snapshot is dropped beyond the maximum number of stored snapshots.
+	 * 
+	 * @param resultId the result id
+	 * @param snapshot the finalized snapshot, which must not be modified afterwards
+	 */
+	public void addStoredSnapshot(Long resultId, TestConfigurationResult snapshot) {
+		synchronized (storedSnapshots) {
+			storedSnapshots.put(resultId, new SoftReference<TestConfigurationResult>(snapshot));
+		}
+	}
+	
+	/**
+	 * Gets the finalized snapshot of a result read from the ResultStore.
+	 * 
+	 * @param resultId the result id
+	 * @return the snapshot or null, if no snapshot was added or it was dropped
+	 */
+	public TestConfigurationResult getStoredSnapshot(Long resultId) {
+		synchronized (storedSnapshots) {
+			SoftReference<TestConfigurationResult> reference = storedSnapshots.get(resultId);
+			
+			if (reference == null) {
+				return null;
+			}
+			TestConfigurationResult snapshot = reference.get();
+			
+			if (snapshot == null) {
+				storedSnapshots.remove(resultId);
+			}
+			return snapshot;
+		}
+	}
+	
+	/**
+	 * Removes a TestResult and its snapshot from the cache identified by the given job id.
 	 * 
 	 * @param resultId the result id
 	 * @return the TestResult or null, if no job was found
 	 */
-	public synchronized TestConfigurationResult removeTestConfigurationResult(Long resultId) {
+	public TestConfigurationResult removeTestConfigurationResult(Long resultId) {
+		snapshots.remove(resultId);
 		return cache.remove(resultId);
 	}
 	
 	/**
 	 * Removes all TestConfigurationResults from the Cache.
 	 */
-	public synchronized void clean() {
+	public void clean() {
+		synchronized (storedSnapshots) {
+			storedSnapshots.clear();
+		}
+		snapshots.clear();
 		cache.clear();
 	}
 	
@@ -16,9 +16,10 @@
  */
 package org.nabucco.testautomation.engine.execution.cache;
 
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.nabucco.testautomation.engine.execution.job.TestExecutionJob;
 
@@ -32,7 +33,7 @@ import org.nabucco.testautomation.engine.execution.job.TestExecutionJob;
  */
 public final class TestExecutionJobCache {
 
-	private final Map<Long, TestExecutionJob> cache = new HashMap<Long, TestExecutionJob>();
+	private final Map<Long, TestExecutionJob> cache = new ConcurrentHashMap<Long, TestExecutionJob>();
 
 	public TestExecutionJobCache() {}
 	
@@ -41,7 +42,7 @@ public final class TestExecutionJobCache {
 	 * 
 	 * @param job the job to be added
 	 */
-	public synchronized void addTestExecutionJob(TestExecutionJob job) {
+	public void addTestExecutionJob(TestExecutionJob job) {
 		cache.put(job.getId(), job);
 	}
 	
@@ -51,7 +52,7 @@ public final class TestExecutionJobCache {
 	 * @param jobId the job id
 	 * @return the TestRunnerJob or null, if no job was found
 	 */
-	public synchronized TestExecutionJob getTestExecutionJob(Long jobId) {
+	public TestExecutionJob getTestExecutionJob(Long jobId) {
 		return cache.get(jobId);
 	}
 	
@@ -61,14 +62,14 @@ public final class TestExecutionJobCache {
 	 * @param jobId the job id
 	 * @return the TestRunnerJob or null, if no job was found
 	 */
-	public synchronized TestExecutionJob removeTestExecutionJob(Long jobId) {
+	public TestExecutionJob removeTestExecutionJob(Long jobId) {
 		return cache.remove(jobId);
 	}
 	
 	/**
 	 * Removes all Jobs from the Cache.
 	 */
-	public synchronized void clean() {
+	public void clean() {
 		cache.clear();
 	}
 	
@@ -77,8 +78,8 @@ public final class TestExecutionJobCache {
 	 * 
 	 * @return the jobIds
 	 */
-	public synchronized Set<Long> getCachedJobs() {
-		return cache.keySet();
+	public Set<Long> getCachedJobs() {
+		return new HashSet<Long>(cache.keySet());
 	}
 	
 }
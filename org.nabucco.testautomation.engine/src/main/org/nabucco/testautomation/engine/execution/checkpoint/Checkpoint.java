@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.checkpoint;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.nabucco.testautomation.engine.base.context.TestContext;
+import org.nabucco.testautomation.result.facade.datatype.TestConfigurationResult;
+
+/**
+ * Checkpoint
+ * <p>
+ * State of a running TestConfiguration at a TestConfigElement boundary: the TestConfigElements
+ * completed so far, the partial TestConfigurationResult and a snapshot of the TestContext.
+ * 
+ * @author agent
+ */
+public final class Checkpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long jobId;
+
+    private final long timestamp;
+
+    private final TestContext context;
+
+    private final TestConfigurationResult result;
+
+    private final Set<Long> completedElements;
+
+    /**
+     * Constructs a new Checkpoint.
+     * 
+     * @param jobId
+     *            the id of the job
+     * @param timestamp
+     *            the time of the checkpoint
+     * @param context
+     *            the snapshot of the TestContext, without ExecutionController and result
+     * @param result
+     *            the partial TestConfigurationResult
+     * @param completedElements
+     *            the ids of the completed TestConfigElements
+     */
+    public Checkpoint(long jobId, long timestamp, TestContext context, TestConfigurationResult result,
+            Set<Long> completedElements) {
+        this.jobId = jobId;
+        this.timestamp = timestamp;
+        this.context = context;
+        this.result = result;
+        this.completedElements = new HashSet<Long>(completedElements);
+    }
+
+    public long getJobId() {
+        return jobId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public TestContext getContext() {
+        return context;
+    }
+
+    public TestConfigurationResult getResult() {
+        return result;
+    }
+
+    public Set<Long> getCompletedElements() {
+        return Collections.unmodifiableSet(completedElements);
+    }
+
+}
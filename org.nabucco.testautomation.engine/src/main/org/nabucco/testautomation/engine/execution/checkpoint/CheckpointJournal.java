@@ -0,0 +1,230 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.checkpoint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.nabucco.framework.base.facade.datatype.logger.NabuccoLogger;
+import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
+import org.nabucco.testautomation.config.facade.datatype.TestConfiguration;
+import org.nabucco.testautomation.engine.execution.TestExecutionServiceFactory;
+
+/**
+ * CheckpointJournal
+ * <p>
+ * Local journal of the checkpoints of running TestConfigurations. The TestConfiguration of a job
+ * is written once, its latest {@link Checkpoint} is synced to disk before it replaces the
+ * previous one, so a crash while writing never destroys the last complete checkpoint. Where the
+ * platform cannot rename over an existing file, a crash between removing the previous file and
+ * the rename leaves the complete temporary file, which is read instead.
+ * 
+ * @author agent
+ */
+public final class CheckpointJournal {
+
+    private static final NabuccoLogger logger = NabuccoLoggingFactory.getInstance().getLogger(
+            CheckpointJournal.class);
+
+    private static final String CONFIGURATION = ".configuration";
+
+    private static final String CHECKPOINT = ".checkpoint";
+
+    private static final String TEMP = ".tmp";
+
+    private static CheckpointJournal instance;
+
+    private final File directory;
+
+    private CheckpointJournal(File directory) {
+        this.directory = directory;
+    }
+
+    public static synchronized CheckpointJournal getInstance() {
+
+        if (instance == null) {
+            instance = new CheckpointJournal(new File(TestExecutionServiceFactory.JOURNAL_PATH));
+        }
+        return instance;
+    }
+
+    /**
+     * Writes the TestConfiguration of a job.
+     * 
+     * @param jobId
+     *            the job id
+     * @param testConfiguration
+     *            the TestConfiguration
+     * @throws IOException
+     *             thrown, if the TestConfiguration could not be written
+     */
+    public void writeConfiguration(long jobId, TestConfiguration testConfiguration) throws IOException {
+        write(testConfiguration, getFile(jobId, CONFIGURATION));
+    }
+
+    /**
+     * Writes a checkpoint and replaces the previous checkpoint of the job.
+     * 
+     * @param checkpoint
+     *            the checkpoint
+     * @throws IOException
+     *             thrown, if the checkpoint could not be written
+     */
+    public void writeCheckpoint(Checkpoint checkpoint) throws IOException {
+        write(checkpoint, getFile(checkpoint.getJobId(), CHECKPOINT));
+    }
+
+    /**
+     * Reads the TestConfiguration of a job.
+     * 
+     * @param jobId
+     *            the job id
+     * @return the TestConfiguration
+     * @throws IOException
+     *             thrown, if no TestConfiguration was journaled for the job
+     */
+    public TestConfiguration readConfiguration(long jobId) throws IOException {
+        return (TestConfiguration) read(getFile(jobId, CONFIGURATION));
+    }
+
+    /**
+     * Reads the latest checkpoint of a job.
+     * 
+     * @param jobId
+     *            the job id
+     * @return the checkpoint
+     * @throws IOException
+     *             thrown, if no checkpoint was journaled for the job
+     */
+    public Checkpoint readCheckpoint(long jobId) throws IOException {
+        return (Checkpoint) read(getFile(jobId, CHECKPOINT));
+    }
+
+    /**
+     * Gets the time of the latest checkpoint of a job.
+     * 
+     * @param jobId
+     *            the job id
+     * @return the time of the checkpoint or 0, if no checkpoint exists
+     */
+    public long getCheckpointTime(long jobId) {
+        File file = getFile(jobId, CHECKPOINT);
+        return file.exists() ? file.lastModified() : getFile(jobId, CHECKPOINT + TEMP).lastModified();
+    }
+
+    /**
+     * Gets the ids of the jobs having a checkpoint.
+     * 
+     * @return the job ids
+     */
+    public Set<Long> getJobIds() {
+        Set<Long> jobIds = new TreeSet<Long>();
+        String[] names = directory.list();
+
+        if (names == null) {
+            return jobIds;
+        }
+
+        for (String name : names) {
+            String jobId = null;
+
+            if (name.endsWith(CHECKPOINT)) {
+                jobId = name.substring(0, name.length() - CHECKPOINT.length());
+            } else if (name.endsWith(CHECKPOINT + TEMP)) {
+                jobId = name.substring(0, name.length() - CHECKPOINT.length() - TEMP.length());
+            }
+
+            if (jobId != null) {
+                try {
+                    jobIds.add(Long.valueOf(jobId));
+                } catch (NumberFormatException ex) {
+                    logger.warning("Unknown file in journal: " + name);
+                }
+            }
+        }
+        return jobIds;
+    }
+
+    /**
+     * Removes the TestConfiguration and the checkpoint of a job.
+     * 
+     * @param jobId
+     *            the job id
+     */
+    public void remove(long jobId) {
+        getFile(jobId, CHECKPOINT).delete();
+        getFile(jobId, CHECKPOINT + TEMP).delete();
+        getFile(jobId, CONFIGURATION).delete();
+        getFile(jobId, CONFIGURATION + TEMP).delete();
+    }
+
+    private File getFile(long jobId, String suffix) {
+        return new File(directory, jobId + suffix);
+    }
+
+    private void write(Object object, File file) throws IOException {
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create journal directory " + directory.getAbsolutePath());
+        }
+        File temp = new File(directory, file.getName() + TEMP);
+        FileOutputStream stream = new FileOutputStream(temp);
+        ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(stream));
+
+        try {
+            out.writeObject(object);
+            out.flush();
+
+            // the content must be on disk before it replaces the previous file
+            stream.getChannel().force(true);
+        } finally {
+            out.close();
+        }
+
+        // File.renameTo does not replace an existing file on every platform, see read
+        if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+            throw new IOException("Could not write " + file.getAbsolutePath());
+        }
+    }
+
+    private Object read(File file) throws IOException {
+        File temp = new File(directory, file.getName() + TEMP);
+
+        // the previous file was removed, but the complete temporary file not renamed yet
+        if (!file.exists() && temp.exists()) {
+            file = temp;
+        }
+        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+        try {
+            return in.readObject();
+        } catch (ClassNotFoundException ex) {
+            throw new IOException("Could not read " + file.getAbsolutePath() + ": " + ex.getMessage());
+        } finally {
+            in.close();
+        }
+    }
+
+}
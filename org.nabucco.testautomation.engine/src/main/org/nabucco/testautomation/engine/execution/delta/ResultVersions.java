@@ -0,0 +1,429 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.delta;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.nabucco.testautomation.engine.base.context.TestContext;
+import org.nabucco.testautomation.engine.base.util.TestResultHelper;
+import org.nabucco.testautomation.engine.delta.ResultChange;
+import org.nabucco.testautomation.engine.delta.ResultDelta;
+import org.nabucco.testautomation.engine.execution.job.TestExecutionJob;
+import org.nabucco.testautomation.result.facade.datatype.TestConfigurationResult;
+import org.nabucco.testautomation.result.facade.datatype.TestResult;
+import org.nabucco.testautomation.result.facade.datatype.TestResultContainer;
+import org.nabucco.testautomation.result.facade.datatype.TestScriptResult;
+
+/**
+ * ResultVersions
+ * <p>
+ * Assigns a version to every TestResult and TestScriptResult of a job when it is changed. The
+ * nodes are kept ordered by their latest version, so the changes since a version are found
+ * without walking the whole result. The job adds and removes the nodes of its result through
+ * its ResultVersions, so the nodes are never copied for a client while their lists change.
+ * 
+ * @author agent
+ */
+public final class ResultVersions {
+
+    private static final ResultVersions DISABLED = new ResultVersions();
+
+    private final Map<Object, Node> nodes = new IdentityHashMap<Object, Node>();
+
+    private final TreeMap<Long, Node> versions = new TreeMap<Long, Node>();
+
+    private final Lock lock = new ReentrantLock();
+
+    private long version;
+
+    /**
+     * Gets the ResultVersions of the job executing in the given TestContext.
+     * 
+     * @param context
+     *            the TestContext
+     * @return the ResultVersions of the job, or ResultVersions ignoring all changes
+     */
+    public static ResultVersions getInstance(TestContext context) {
+
+        if (context != null && context.getExecutionController() instanceof TestExecutionJob) {
+            return ((TestExecutionJob) context.getExecutionController()).getResultVersions();
+        }
+        return DISABLED;
+    }
+
+    /**
+     * Marks a TestResult or TestScriptResult as changed.
+     * 
+     * @param result
+     *            the changed TestResult or TestScriptResult
+     * @param parent
+     *            the TestResult or TestConfigurationResult containing the result
+     */
+    public void changed(Object result, Object parent) {
+        update(result, parent, false);
+    }
+
+    /**
+     * Marks a TestResult as added together with all of its children, e.g. a TestResult taken
+     * from a checkpoint. The change of the TestResult contains its children.
+     * 
+     * @param result
+     *            the added TestResult
+     * @param parent
+     *            the TestResult or TestConfigurationResult containing the result
+     */
+    public void added(TestResult result, Object parent) {
+        update(result, parent, true);
+    }
+
+    /**
+     * Marks a TestResult as moved to another parent, e.g. from the branch of a parallel
+     * execution into the TestResult of its siblings. The TestResult and all of its marked
+     * descendants are changed.
+     * 
+     * @param result
+     *            the moved TestResult
+     * @param parent
+     *            the new TestResult or TestConfigurationResult containing the result
+     */
+    public void moved(TestResult result, Object parent) {
+
+        if (this == DISABLED || result == null) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            update(result, parent, false);
+            changeDescendants(result);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void changeDescendants(TestResult result) {
+
+        for (TestScriptResult testScriptResult : result.getTestScriptResultList()) {
+            changed(testScriptResult);
+        }
+
+        for (TestResultContainer container : result.getTestResultList()) {
+            changed(container.getResult());
+            changeDescendants(container.getResult());
+        }
+    }
+
+    private void update(Object result, Object parent, boolean withChildren) {
+
+        if (this == DISABLED || result == null) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            Node node = nodes.get(result);
+
+            if (node == null) {
+                node = new Node(result);
+                nodes.put(result, node);
+            } else {
+                versions.remove(node.version);
+            }
+            node.parent = parent;
+            node.withChildren |= withChildren;
+            node.version = ++version;
+            versions.put(node.version, node);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks a TestResult or TestScriptResult as changed, keeping the parent it was marked with
+     * before. Results not marked with a parent before are ignored.
+     * 
+     * @param result
+     *            the changed TestResult or TestScriptResult
+     */
+    public void changed(Object result) {
+
+        if (this == DISABLED || result == null) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            Node node = nodes.get(result);
+
+            if (node != null) {
+                update(result, node.parent, false);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a TestResult to its parent under the lock.
+     * 
+     * @param result
+     *            the TestResult
+     * @param parent
+     *            the parent TestResult
+     */
+    public void addTestResult(TestResult result, TestResult parent) {
+        lock.lock();
+        try {
+            TestResultHelper.addTestResult(result, parent);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a top-level TestResult to the TestConfigurationResult under the lock.
+     * 
+     * @param result
+     *            the TestResult
+     * @param parent
+     *            the TestConfigurationResult
+     */
+    public void addTestResult(TestResult result, TestConfigurationResult parent) {
+        lock.lock();
+        try {
+            TestResultHelper.addTestResult(result, parent);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a TestResult from its parent under the lock.
+     * 
+     * @param result
+     *            the TestResult
+     * @param parent
+     *            the parent TestResult
+     */
+    public void removeTestResult(TestResult result, TestResult parent) {
+        lock.lock();
+        try {
+            TestResultHelper.removeTestResult(result, parent);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds an element to a list of a result node under the lock, e.g. a TestScriptResult or an
+     * ActionTrace.
+     * 
+     * @param list
+     *            the list of the node
+     * @param element
+     *            the element
+     */
+    public <T> void add(List<T> list, T element) {
+        lock.lock();
+        try {
+            list.add(element);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes an element from a list of a result node under the lock.
+     * 
+     * @param list
+     *            the list of the node
+     * @param index
+     *            the index of the element
+     * @return the removed element
+     */
+    public <T> T remove(List<T> list, int index) {
+        lock.lock();
+        try {
+            return list.remove(index);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Acquires the lock guarding the versions. Structural changes of the result and copies of
+     * its nodes made while holding the lock are consistent with each other.
+     */
+    public void lock() {
+        lock.lock();
+    }
+
+    /**
+     * Releases the lock acquired by {@link #lock()}.
+     */
+    public void unlock() {
+        lock.unlock();
+    }
+
+    /**
+     * Gets the current version.
+     * 
+     * @return the version of the latest change
+     */
+    public long getVersion() {
+        lock.lock();
+        try {
+            return version;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the changes since a version. Nodes not yet attached to the TestConfigurationResult,
+     * e.g. within the branch of a parallel execution, are left out until they are moved. The
+     * changed nodes are copied under the lock, so the lists of a node are not changed by the job
+     * while it is copied.
+     * 
+     * @param knownVersion
+     *            the version known by the caller, 0 for all nodes
+     * @return the changes
+     */
+    public ResultDelta getChanges(long knownVersion) {
+        lock.lock();
+        try {
+            List<ResultChange> changes = new ArrayList<ResultChange>();
+
+            for (Map.Entry<Long, Node> entry : versions.tailMap(knownVersion + 1).entrySet()) {
+                if (isAttached(entry.getValue())) {
+                    changes.add(createChange(entry.getKey(), entry.getValue()));
+                }
+            }
+            return new ResultDelta(version, changes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the changes of a completed result no longer versioned, e.g. a stored result. The
+     * changes contain all top-level TestResults with their children.
+     * 
+     * @param result
+     *            the completed TestConfigurationResult
+     * @param version
+     *            the version of the latest change of the result
+     * @param knownVersion
+     *            the version known by the caller
+     * @return the changes, empty if the caller knows the latest version
+     */
+    public static ResultDelta getCompleteChanges(TestConfigurationResult result, long version, long knownVersion) {
+        List<ResultChange> changes = new ArrayList<ResultChange>();
+
+        if (knownVersion < version) {
+            List<TestResultContainer> containers = result.getTestResultList();
+
+            for (int i = 0; i < containers.size(); i++) {
+                changes.add(new ResultChange(version, null, i, containers.get(i).getResult(), null));
+            }
+        }
+        return new ResultDelta(version, changes);
+    }
+
+    private boolean isAttached(Node node) {
+
+        while (node != null) {
+            if (node.parent instanceof TestConfigurationResult) {
+                return true;
+            }
+            node = nodes.get(node.parent);
+        }
+        return false;
+    }
+
+    private ResultChange createChange(long nodeVersion, Node node) {
+        TestResult parent = node.parent instanceof TestResult ? (TestResult) node.parent : null;
+        Long parentElementId = parent != null && parent.getTestConfigElementId() != null ? parent
+                .getTestConfigElementId().getValue() : null;
+
+        if (node.result instanceof TestScriptResult) {
+            TestScriptResult testScriptResult = (TestScriptResult) node.result;
+            int index = parent != null ? indexOfScript(parent.getTestScriptResultList(), testScriptResult) : -1;
+            return new ResultChange(nodeVersion, parentElementId, index, null, testScriptResult.cloneObject());
+        }
+        TestResult testResult = (TestResult) node.result;
+        int index = -1;
+
+        if (parent != null) {
+            index = indexOf(parent.getTestResultList(), testResult);
+        } else if (node.parent instanceof TestConfigurationResult) {
+            index = indexOf(((TestConfigurationResult) node.parent).getTestResultList(), testResult);
+        }
+        TestResult copy = testResult.cloneObject();
+
+        if (!node.withChildren) {
+            copy.getTestResultList().clear();
+            copy.getTestScriptResultList().clear();
+        }
+        return new ResultChange(nodeVersion, parentElementId, index, copy, null);
+    }
+
+    private static int indexOfScript(List<TestScriptResult> list, TestScriptResult result) {
+
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == result) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(List<TestResultContainer> list, TestResult result) {
+
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i).getResult() == result) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A versioned node of the result.
+     */
+    private static final class Node {
+
+        private final Object result;
+
+        private Object parent;
+
+        private long version;
+
+        private boolean withChildren;
+
+        private Node(Object result) {
+            this.result = result;
+        }
+    }
+
+}
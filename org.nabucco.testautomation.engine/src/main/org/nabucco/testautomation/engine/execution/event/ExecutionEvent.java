@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.event;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExecutionEvent
+ * <p>
+ * Immutable event of a job, a TestConfigElement, a TestScript or an Action starting or
+ * finishing.
+ * 
+ * @author agent
+ */
+public final class ExecutionEvent {
+
+    private final ExecutionEventType type;
+
+    private final long jobId;
+
+    private final Long elementId;
+
+    private final String name;
+
+    private final long timestamp;
+
+    private final long duration;
+
+    private final String status;
+
+    /**
+     * Constructs a new ExecutionEvent.
+     * 
+     * @param type
+     *            the type of the event
+     * @param jobId
+     *            the id of the job
+     * @param elementId
+     *            the id of the started or finished element, null for job events
+     * @param name
+     *            the name of the started or finished element
+     * @param timestamp
+     *            the time of the event
+     * @param duration
+     *            the duration in nanoseconds of a finished element, -1 for started elements
+     * @param status
+     *            the status of a finished element, null for started elements
+     */
+    public ExecutionEvent(ExecutionEventType type, long jobId, Long elementId, String name, long timestamp,
+            long duration, Object status) {
+        this.type = type;
+        this.jobId = jobId;
+        this.elementId = elementId;
+        this.name = name;
+        this.timestamp = timestamp;
+        this.duration = duration;
+        this.status = status != null ? status.toString() : null;
+    }
+
+    public ExecutionEventType getType() {
+        return type;
+    }
+
+    public long getJobId() {
+        return jobId;
+    }
+
+    public Long getElementId() {
+        return elementId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets the duration of a finished element.
+     * 
+     * @return the duration in milliseconds, -1 for started elements
+     */
+    public long getDuration() {
+        return duration >= 0 ? TimeUnit.NANOSECONDS.toMillis(duration) : -1;
+    }
+
+    /**
+     * Gets the duration of a finished element with sub-millisecond precision.
+     * 
+     * @return the duration in nanoseconds, -1 for started elements
+     */
+    public long getDurationNanos() {
+        return duration;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    @Override
+    public String toString() {
+        return "[JobId:" + jobId + "] " + type + " '" + name + "'"
+                + (status != null ? " " + status : "") + (duration >= 0 ? " (" + getDuration() + " ms)" : "");
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.event;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.nabucco.framework.base.facade.datatype.logger.NabuccoLogger;
+import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
+import org.nabucco.testautomation.engine.base.context.TestContext;
+import org.nabucco.testautomation.engine.execution.job.TestExecutionJob;
+import org.nabucco.testautomation.engine.execution.timing.ExecutionClock;
+
+/**
+ * ExecutionEventBus
+ * <p>
+ * Publishes {@link ExecutionEvent}s through a bounded ring buffer to the subscribed
+ * {@link ExecutionEventListener}s. Publishing never blocks the executing thread: slots are
+ * claimed without locking and events are dropped, when the buffer is full. A single dispatcher
+ * thread delivers the events to the subscribers. Without subscribers no event is created.
+ * 
+ * @author agent
+ */
+public final class ExecutionEventBus {
+
+    private static final NabuccoLogger logger = NabuccoLoggingFactory.getInstance().getLogger(
+            ExecutionEventBus.class);
+
+    /**
+     * The number of events buffered for the dispatcher thread.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final ExecutionEventBus instance = new ExecutionEventBus(BUFFER_SIZE);
+
+    private final List<ExecutionEventListener> listeners = new CopyOnWriteArrayList<ExecutionEventListener>();
+
+    private final AtomicReferenceArray<ExecutionEvent> buffer;
+
+    private final int capacity;
+
+    /** next sequence to be claimed by a publisher */
+    private final AtomicLong head = new AtomicLong();
+
+    /** next sequence to be delivered by the dispatcher */
+    private volatile long tail = 0;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile Thread dispatcher;
+
+    private volatile boolean idle = false;
+
+    private ExecutionEventBus(int capacity) {
+        this.capacity = capacity;
+        this.buffer = new AtomicReferenceArray<ExecutionEvent>(capacity);
+    }
+
+    /**
+     * Gets the instance without locking, it is read for every executed element.
+     * 
+     * @return the ExecutionEventBus
+     */
+    public static ExecutionEventBus getInstance() {
+        return instance;
+    }
+
+    /**
+     * Subscribes a listener to all events published from now on.
+     * 
+     * @param listener
+     *            the listener
+     */
+    public synchronized void subscribe(ExecutionEventListener listener) {
+        listeners.add(listener);
+
+        if (dispatcher == null) {
+            dispatcher = new Thread(new Dispatcher(), "ExecutionEventBus-Dispatcher");
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+        }
+    }
+
+    /**
+     * Unsubscribes a listener.
+     * 
+     * @param listener
+     *            the listener
+     */
+    public void unsubscribe(ExecutionEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Checks whether any listener is subscribed.
+     * 
+     * @return true, if events are delivered
+     */
+    public boolean isEnabled() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * Gets the number of events dropped because the buffer was full.
+     * 
+     * @return the number of dropped events
+     */
+    public long getDroppedEvents() {
+        return dropped.get();
+    }
+
+    /**
+     * Publishes an event of a job.
+     * 
+     * @param type
+     *            the type of the event
+     * @param jobId
+     *            the job id
+     * @param name
+     *            the name of the job
+     * @param duration
+     *            the duration in nanoseconds of a finished job or -1
+     * @param status
+     *            the status of a finished job or null
+     */
+    public void publish(ExecutionEventType type, long jobId, String name, long duration, Object status) {
+
+        if (isEnabled()) {
+            publish(new ExecutionEvent(type, jobId, null, name, ExecutionClock.currentTimeMillis(), duration, status));
+        }
+    }
+
+    /**
+     * Publishes an event of an element executed by the job of the given TestContext.
+     * 
+     * @param type
+     *            the type of the event
+     * @param context
+     *            the TestContext of the job
+     * @param elementId
+     *            the id of the element
+     * @param name
+     *            the name of the element
+     * @param duration
+     *            the duration in nanoseconds of a finished element or -1
+     * @param status
+     *            the status of a finished element or null
+     */
+    public void publish(ExecutionEventType type, TestContext context, Long elementId, String name,
+            long duration, Object status) {
+
+        if (isEnabled() && context.getExecutionController() instanceof TestExecutionJob) {
+            long jobId = ((TestExecutionJob) context.getExecutionController()).getId();
+            publish(new ExecutionEvent(type, jobId, elementId, name, ExecutionClock.currentTimeMillis(), duration, status));
+        }
+    }
+
+    /**
+     * Puts an event into the ring buffer or drops it, if the buffer is full.
+     * 
+     * @param event
+     *            the event
+     */
+    private void publish(ExecutionEvent event) {
+        long sequence;
+
+        do {
+            sequence = head.get();
+
+            if (sequence - tail >= capacity) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        buffer.set((int) (sequence % capacity), event);
+
+        if (idle) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    /**
+     * Delivers the buffered events in the order of their sequence.
+     */
+    private class Dispatcher implements Runnable {
+
+        @Override
+        public void run() {
+
+            while (true) {
+                int index = (int) (tail % capacity);
+                ExecutionEvent event = buffer.get(index);
+
+                if (event == null) {
+                    idle = true;
+
+                    // recheck after announcing the idle state, a publisher may have missed it
+                    if (buffer.get(index) == null) {
+                        LockSupport.parkNanos(this, IDLE_WAIT);
+                    }
+                    idle = false;
+                    continue;
+                }
+                buffer.set(index, null);
+                tail++;
+
+                for (ExecutionEventListener listener : listeners) {
+                    try {
+                        listener.executionEvent(event);
+                    } catch (RuntimeException ex) {
+                        logger.error(ex, "ExecutionEventListener failed on event " + event);
+                    }
+                }
+            }
+        }
+    }
+
+}
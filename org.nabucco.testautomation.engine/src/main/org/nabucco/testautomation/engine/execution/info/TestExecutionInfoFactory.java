@@ -27,19 +27,16 @@ import org.nabucco.testautomation.settings.facade.datatype.engine.TestExecutionI
  */
 public class TestExecutionInfoFactory {
 
-	private static TestExecutionInfoFactory instance;
+	private static final TestExecutionInfoFactory instance = new TestExecutionInfoFactory();
 	
 	private TestExecutionInfoFactory() {}
 	
 	/**
+	 * Gets the instance without locking, it is read on every status request.
 	 * 
 	 * @return
 	 */
-	public static synchronized TestExecutionInfoFactory getInstance() {
-		
-		if (instance == null) {
-			instance = new TestExecutionInfoFactory();
-		}
+	public static TestExecutionInfoFactory getInstance() {
 		return instance;
 	}
 	
@@ -61,4 +58,15 @@ public class TestExecutionInfoFactory {
 		return info;
 	}
 	
+	/**
+	 * 
+	 * @param jobId
+	 * @param snapshot
+	 * @return
+	 */
+	public TestExecutionInfo createTestExecutionInfo(long jobId, TestExecutionSnapshot snapshot) {
+		return createTestExecutionInfo(jobId, snapshot.getStatus(), snapshot.getStartTime(),
+				snapshot.getStopTime());
+	}
+	
 }
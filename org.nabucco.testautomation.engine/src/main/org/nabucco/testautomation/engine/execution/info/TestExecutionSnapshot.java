@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.info;
+
+import org.nabucco.testautomation.settings.facade.datatype.engine.ExecutionStatusType;
+
+/**
+ * TestExecutionSnapshot
+ * <p>
+ * Immutable status of a job. A job publishes a new snapshot on every status transition, so the
+ * status can be read without acquiring a lock.
+ * 
+ * @author agent
+ */
+public final class TestExecutionSnapshot {
+
+    private final ExecutionStatusType status;
+
+    private final Long startTime;
+
+    private final Long stopTime;
+
+    /**
+     * Constructs a new TestExecutionSnapshot.
+     * 
+     * @param status
+     *            the status of the job
+     * @param startTime
+     *            the start time of the job
+     * @param stopTime
+     *            the stop time of the job
+     */
+    public TestExecutionSnapshot(ExecutionStatusType status, Long startTime, Long stopTime) {
+        this.status = status;
+        this.startTime = startTime;
+        this.stopTime = stopTime;
+    }
+
+    /**
+     * Gets the status.
+     * 
+     * @return the status
+     */
+    public ExecutionStatusType getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the start time.
+     * 
+     * @return the start time
+     */
+    public Long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Gets the stop time.
+     * 
+     * @return the stop time
+     */
+    public Long getStopTime() {
+        return stopTime;
+    }
+
+    /**
+     * Creates a copy of this snapshot with the given status.
+     * 
+     * @param status
+     *            the new status
+     * @return the new snapshot
+     */
+    public TestExecutionSnapshot withStatus(ExecutionStatusType status) {
+        return new TestExecutionSnapshot(status, startTime, stopTime);
+    }
+
+    /**
+     * Creates a copy of this snapshot with the given status and start time.
+     * 
+     * @param status
+     *            the new status
+     * @param startTime
+     *            the start time
+     * @return the new snapshot
+     */
+    public TestExecutionSnapshot started(ExecutionStatusType status, Long startTime) {
+        return new TestExecutionSnapshot(status, startTime, stopTime);
+    }
+
+    /**
+     * Creates a copy of this snapshot with the given stop time.
+     * 
+     * @param stopTime
+     *            the stop time
+     * @return the new snapshot
+     */
+    public TestExecutionSnapshot stopped(Long stopTime) {
+        return new TestExecutionSnapshot(status, startTime, stopTime);
+    }
+
+}
@@ -55,4 +55,29 @@ public class JobIdFactory {
 	public long createNewId() {
 		return id.getAndIncrement();
 	}
+	
+	/**
+	 * Checks whether the given id was created, i.e. whether a job with the id was started since
+	 * the engine started or, for reserved ids, before a restart.
+	 * 
+	 * @param jobId the job id
+	 * @return true, if the id was created or reserved
+	 */
+	public boolean isCreated(long jobId) {
+		return jobId > 0 && jobId < id.get();
+	}
+	
+	/**
+	 * Ensures that no id up to the given id is created anymore, e.g. ids of jobs journaled
+	 * before a restart.
+	 * 
+	 * @param usedId the highest id in use
+	 */
+	public void reserve(long usedId) {
+		long current = id.get();
+		
+		while (current <= usedId && !id.compareAndSet(current, usedId + 1)) {
+			current = id.get();
+		}
+	}
 }
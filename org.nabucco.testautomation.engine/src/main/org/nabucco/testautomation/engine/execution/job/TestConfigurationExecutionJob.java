@@ -16,26 +16,48 @@
  */
 package org.nabucco.testautomation.engine.execution.job;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Date;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.nabucco.framework.base.facade.datatype.logger.NabuccoLogger;
 import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
-import org.nabucco.framework.base.facade.datatype.visitor.VisitorException;
+import org.nabucco.testautomation.config.facade.datatype.TestConfigElement;
+import org.nabucco.testautomation.config.facade.datatype.TestConfigElementContainer;
 import org.nabucco.testautomation.config.facade.datatype.TestConfiguration;
+import org.nabucco.testautomation.config.facade.datatype.TestScriptContainer;
 import org.nabucco.testautomation.engine.base.client.ClientInteraction;
 import org.nabucco.testautomation.engine.base.context.TestContext;
 import org.nabucco.testautomation.engine.base.exception.InterruptionException;
 import org.nabucco.testautomation.engine.base.util.TestResultHelper;
+import org.nabucco.testautomation.engine.exception.TestScriptException;
+import org.nabucco.testautomation.engine.execution.TestExecutionServiceFactory;
+import org.nabucco.testautomation.engine.execution.checkpoint.Checkpoint;
+import org.nabucco.testautomation.engine.execution.checkpoint.CheckpointJournal;
+import org.nabucco.testautomation.engine.execution.proxy.ProxyEngineUsageRegistry;
+import org.nabucco.testautomation.engine.execution.timing.ExecutionClock;
+import org.nabucco.testautomation.engine.execution.watchdog.ExecutionTimeouts;
 import org.nabucco.testautomation.engine.proxy.ProxyEngine;
 import org.nabucco.testautomation.engine.proxy.exception.ProxyConfigurationException;
 import org.nabucco.testautomation.engine.proxy.pool.ProxyEnginePool;
 import org.nabucco.testautomation.engine.proxy.pool.ProxyPoolFactory;
 import org.nabucco.testautomation.engine.sub.TestConfigElementEngineImpl;
 import org.nabucco.testautomation.engine.visitor.config.TestConfigurationVisitor;
-import org.nabucco.testautomation.engine.visitor.result.TestResultFinalizationVisitor;
+import org.nabucco.testautomation.engine.visitor.script.SubEngineTypeVisitor;
 import org.nabucco.testautomation.result.facade.datatype.TestConfigurationResult;
+import org.nabucco.testautomation.result.facade.datatype.TestResult;
+import org.nabucco.testautomation.result.facade.datatype.TestResultContainer;
 import org.nabucco.testautomation.result.facade.datatype.status.TestConfigurationStatusType;
+import org.nabucco.testautomation.script.facade.datatype.dictionary.TestScript;
+import org.nabucco.testautomation.script.facade.datatype.dictionary.base.TestScriptElement;
+import org.nabucco.testautomation.settings.facade.datatype.engine.SubEngineType;
 import org.nabucco.testautomation.settings.facade.datatype.engine.TestExecutionInfo;
 import org.nabucco.testautomation.settings.facade.datatype.engine.proxy.ProxyConfiguration;
 
@@ -49,6 +71,8 @@ public class TestConfigurationExecutionJob extends TestExecutionJob {
 
 	private static final String RESULT_SUFFIX = "-Result";
 
+	private static final String CHECKPOINT_INTERVAL = "CHECKPOINT_INTERVAL";
+
 	private static final long serialVersionUID = 1L;
 
     private final NabuccoLogger logger = NabuccoLoggingFactory
@@ -62,6 +86,20 @@ public class TestConfigurationExecutionJob extends TestExecutionJob {
 	
 	private ClientInteraction clientInteraction;
 
+	private final List<ProxyEngine> acquiredProxies = new ArrayList<ProxyEngine>();
+
+	private volatile Set<SubEngineType> requiredSubEngineTypes = EnumSet.allOf(SubEngineType.class);
+
+	private Checkpoint resumedCheckpoint;
+
+	private final Map<Long, TestResult> resumedResults = new HashMap<Long, TestResult>();
+
+	private final Set<Long> completedElements = Collections.synchronizedSet(new HashSet<Long>());
+
+	private long checkpointInterval;
+
+	private long lastCheckpoint;
+
 	/**
 	 * Constructs a new instance of a TestSheetExecutionJob.
 	 */
@@ -77,6 +115,18 @@ public class TestConfigurationExecutionJob extends TestExecutionJob {
 		return testConfiguration;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getName() {
+		
+		if (testConfiguration != null && testConfiguration.getName() != null) {
+			return testConfiguration.getName().getValue();
+		}
+		return super.getName();
+	}
+
 	/**
 	 * Sets the given TestConfiguration to the TestRunnerJob.
 	 * 
@@ -84,6 +134,15 @@ public class TestConfigurationExecutionJob extends TestExecutionJob {
 	 */
 	public void setTestConfiguration(TestConfiguration testConfiguration) {
 		this.testConfiguration = testConfiguration;
+		this.requiredSubEngineTypes = determineRequiredSubEngineTypes(testConfiguration);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Set<SubEngineType> getRequiredSubEngineTypes() {
+		return requiredSubEngineTypes;
 	}
 
 	/**
@@ -95,6 +154,74 @@ public class TestConfigurationExecutionJob extends TestExecutionJob {
 		this.context = context;
 	}
 
+	/**
+	 * Sets the checkpoint of a previous, interrupted execution. TestConfigElements completed
+	 * before the checkpoint are not executed again, their TestResults are taken from the
+	 * checkpoint.
+	 * 
+	 * @param checkpoint the checkpoint to resume from
+	 */
+	public void setResumedCheckpoint(Checkpoint checkpoint) {
+		this.resumedCheckpoint = checkpoint;
+	}
+
+	/**
+	 * Gets the TestResult of a TestConfigElement completed before the resumed checkpoint.
+	 * 
+	 * @param elementId the id of the TestConfigElement
+	 * @return the TestResult, or null if the TestConfigElement must be executed
+	 */
+	public TestResult getResumedResult(Long elementId) {
+		
+		if (elementId == null) {
+			return null;
+		}
+		TestResult result = resumedResults.get(elementId);
+		
+		if (result != null) {
+			completedElements.add(elementId);
+		}
+		return result;
+	}
+
+	/**
+	 * Records the completion of a TestConfigElement and writes a checkpoint, if the checkpoint
+	 * interval elapsed. Checkpoints are only written by the executing thread while no forked
+	 * branch is running, so the TestConfigurationResult is not modified while it is written.
+	 * 
+	 * @param testConfigElement the completed TestConfigElement
+	 */
+	public void elementCompleted(TestConfigElement testConfigElement) {
+		
+		if (testConfigElement.getId() == null) {
+			return;
+		}
+		completedElements.add(testConfigElement.getId());
+		
+		if (checkpointInterval <= 0 || !isExecutingAlone()) {
+			return;
+		}
+		long now = ExecutionClock.currentTimeMillis();
+		
+		if (now - lastCheckpoint < checkpointInterval) {
+			return;
+		}
+		lastCheckpoint = now;
+		getResultTimings().materialize();
+		
+		TestContext snapshot = context.dublicate();
+		snapshot.setExecutionController(null);
+		snapshot.setTestConfigurationResult(null);
+		
+		try {
+			CheckpointJournal.getInstance().writeCheckpoint(
+					new Checkpoint(getId(), now, snapshot, testConfigurationResult, completedElements));
+			logger.debug("Checkpoint written for job ", String.valueOf(getId()));
+		} catch (IOException ex) {
+			logger.error(ex, "Could not write checkpoint of job " + getId());
+		}
+	}
+
 	/**
 	 * Sets the {@link ClientInteraction} and resumes the job waiting
 	 * for it.
@@ -130,21 +257,20 @@ public class TestConfigurationExecutionJob extends TestExecutionJob {
 	}
 
 	/**
-	 * Gets the TestConfigurationResult.
+	 * Gets the TestConfigurationResult. Screenshots and files are referenced by their ids in the
+	 * TraceStore and not contained in the result.
 	 * 
-	 * @return the TestConfigurationResult
+	 * @return the TestConfigurationResult or null, if the job was not started
 	 */
 	public TestConfigurationResult getTestConfigurationResult() {
 		lock.lock();
 		try {
+			if (this.testConfigurationResult == null) {
+				return null;
+			}
 			if (this.testConfigurationResult.getStatus() == TestConfigurationStatusType.FINISHED
 					|| this.testConfigurationResult.getStatus() == TestConfigurationStatusType.CANCELLED) {
-				TestResultFinalizationVisitor visitor = new TestResultFinalizationVisitor();
-				try {
-					this.testConfigurationResult.accept(visitor);
-				} catch (VisitorException ex) {
-					logger.error(ex, "Could not finalize TestConfigurationResult");
-				}
+				getResultTimings().materialize();
 			}
 			return this.testConfigurationResult;
 		} finally {
@@ -157,21 +283,20 @@ public class TestConfigurationExecutionJob extends TestExecutionJob {
 	 */
 	@Override
     public TestExecutionInfo getTestExecutionInfo() {
-		lock.lock();
-		try {
-			TestExecutionInfo info = super.getTestExecutionInfo();
-	        
-	        if (context.getCurrentTestScript() != null) {
-	        	info.setCurrentTestScriptId(context.getCurrentTestScript().getId());
-	        }
-	        
-	        if (context.getCurrentTestScriptElement() != null) {
-	        	info.setCurrentTestScriptElementId(context.getCurrentTestScriptElement().getId());
-	        }
-	        return info;
-		} finally {
-			lock.unlock();
-		}
+		TestExecutionInfo info = super.getTestExecutionInfo();
+		
+		// read without locking, the current elements are only updated by the executing thread
+		TestScript currentTestScript = context.getCurrentTestScript();
+		TestScriptElement currentTestScriptElement = context.getCurrentTestScriptElement();
+        
+        if (currentTestScript != null) {
+        	info.setCurrentTestScriptId(currentTestScript.getId());
+        }
+        
+        if (currentTestScriptElement != null) {
+        	info.setCurrentTestScriptElementId(currentTestScriptElement.getId());
+        }
+        return info;
     }
 
 	/**
@@ -188,19 +313,58 @@ public class TestConfigurationExecutionJob extends TestExecutionJob {
 		testConfigurationResult.setTestConfigurationName(testConfiguration.getName());
 		logger.debug("TestConfigurationResult initialized and prepared. Name: ", resultName);
 		
+		// collect the results of the TestConfigElements completed before the checkpoint
+		if (resumedCheckpoint != null) {
+			collectResumedResults(resumedCheckpoint.getResult().getTestResultList(),
+					resumedCheckpoint.getCompletedElements());
+			logger.info("Resuming TestConfiguration ", testConfiguration.getName().getValue(), " with ",
+					String.valueOf(resumedResults.size()), " completed TestConfigElements");
+		}
+		
 		// initialize TestContext
 		context.setExecutionController(this);
 		context.setTestConfigurationResult(testConfigurationResult);
+		setTimeouts(ExecutionTimeouts.getTimeout(context, ExecutionTimeouts.JOB_TIMEOUT),
+				ExecutionTimeouts.getTimeout(context, ExecutionTimeouts.STALL_TIMEOUT));
 		logger.debug("TestContext initialized");
 		
+		// journal the TestConfiguration for a later resume
+		checkpointInterval = ExecutionTimeouts.getTimeout(context, CHECKPOINT_INTERVAL);
+		
+		if (checkpointInterval == 0) {
+			checkpointInterval = TestExecutionServiceFactory.CHECKPOINT_INTERVAL;
+		}
+		
+		if (checkpointInterval > 0) {
+			try {
+				CheckpointJournal journal = CheckpointJournal.getInstance();
+				journal.writeConfiguration(getId(), testConfiguration);
+				lastCheckpoint = ExecutionClock.currentTimeMillis();
+				
+				// the resumed checkpoint is taken over before the previous job is removed
+				if (resumedCheckpoint != null) {
+					journal.writeCheckpoint(new Checkpoint(getId(), lastCheckpoint, resumedCheckpoint.getContext(),
+							resumedCheckpoint.getResult(), resumedCheckpoint.getCompletedElements()));
+					journal.remove(resumedCheckpoint.getJobId());
+				}
+			} catch (IOException ex) {
+				logger.error(ex, "Could not journal TestConfiguration, checkpoints DISABLED");
+				checkpointInterval = 0;
+			}
+		}
+		
 		ProxyEnginePool proxyPool = ProxyPoolFactory.getInstance()
 				.getProxyEnginePool();
 		Collection<ProxyEngine> proxies = proxyPool.getProxyEngines();
 
-		// configure and start all proxies with configurations from TestContext
-		logger.debug("Configuring and starting all ProxyEngines");
+		// configure and start the proxies used by the TestConfiguration
+		logger.debug("Configuring and starting ProxyEngines ", requiredSubEngineTypes.toString());
 		
 		for (ProxyEngine proxyEngine : proxies) {
+			
+			if (!requiredSubEngineTypes.contains(proxyEngine.getSubEngineType())) {
+				continue;
+			}
 			ProxyConfiguration config = context
 					.getProxyConfiguration(proxyEngine.getSubEngineType());
 
@@ -210,8 +374,8 @@ public class TestConfigurationExecutionJob extends TestExecutionJob {
 				continue;
 			}
 			try {
-				proxyEngine.configureProxy(config);
-				proxyEngine.startProxy();
+				ProxyEngineUsageRegistry.getInstance().acquire(proxyEngine, config);
+				acquiredProxies.add(proxyEngine);
 			} catch (ProxyConfigurationException ex) {
 				logger.error(ex, "Could not configure and start "
 						+ proxyEngine.getSubEngineType());
@@ -220,59 +384,126 @@ public class TestConfigurationExecutionJob extends TestExecutionJob {
 		logger.debug("ProxyEngines configured and started");
 	}
 
+	private void collectResumedResults(List<TestResultContainer> containers, Set<Long> completed) {
+		
+		for (TestResultContainer container : containers) {
+			TestResult result = container.getResult();
+			
+			if (result == null) {
+				continue;
+			}
+			
+			if (result.getTestConfigElementId() != null
+					&& completed.contains(result.getTestConfigElementId().getValue())) {
+				resumedResults.put(result.getTestConfigElementId().getValue(), result);
+			} else {
+				collectResumedResults(result.getTestResultList(), completed);
+			}
+		}
+	}
+
+	/**
+	 * Scans the Actions of all TestScripts in the TestConfiguration for the SubEngines they invoke.
+	 * If the TestConfiguration cannot be scanned, all SubEngineTypes are required.
+	 * 
+	 * @param testConfiguration the TestConfiguration to scan
+	 * @return the required SubEngineTypes
+	 */
+	private Set<SubEngineType> determineRequiredSubEngineTypes(TestConfiguration testConfiguration) {
+		Set<SubEngineType> types = EnumSet.noneOf(SubEngineType.class);
+		
+		if (testConfiguration == null) {
+			return types;
+		}
+		SubEngineTypeVisitor visitor = new SubEngineTypeVisitor();
+		
+		try {
+			for (TestConfigElementContainer container : testConfiguration.getTestConfigElementList()) {
+				collectSubEngineTypes(container.getElement(), visitor, types);
+			}
+		} catch (TestScriptException ex) {
+			logger.warning("Could not determine SubEngines of TestConfiguration ", testConfiguration.getName()
+					.getValue(), ", all proxies required: ", ex.getMessage());
+			return EnumSet.allOf(SubEngineType.class);
+		}
+		return types;
+	}
+
+	private void collectSubEngineTypes(TestConfigElement element, SubEngineTypeVisitor visitor,
+			Set<SubEngineType> types) throws TestScriptException {
+
+		for (TestScriptContainer container : element.getTestScriptList()) {
+			
+			if (container.getTestScript() != null) {
+				visitor.visit(container.getTestScript(), types);
+			}
+		}
+		
+		for (TestConfigElementContainer child : element.getTestConfigElementList()) {
+			collectSubEngineTypes(child.getElement(), visitor, types);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	protected void execute() throws InterruptionException {
-		long start = 0;
-		long end = 0;
+		long startTicks = ExecutionClock.ticks();
 		
 		try {
 			// Start the execution of the TestConfiguration
 			logger.debug("Starting execution of TestConfiguration ", testConfiguration.getName().getValue());
 			TestConfigurationVisitor visitor = new TestConfigurationVisitor(new TestConfigElementEngineImpl());
 			testConfigurationResult.setStatus(TestConfigurationStatusType.RUNNING);
-			start = System.currentTimeMillis();
-			testConfigurationResult.setStartTime(new Date(start));
 			visitor.visit(testConfiguration, context, testConfigurationResult);
-			end = System.currentTimeMillis();
-			testConfigurationResult.setEndTime(new Date(end));
-			testConfigurationResult.setDuration(end - start);
+			finish(startTicks);
 			testConfigurationResult.setStatus(TestConfigurationStatusType.FINISHED);
 			logger.debug("Finished execution of TestConfiguration ", testConfiguration.getName().getValue());
 		} catch (InterruptionException ex) {
-			end = System.currentTimeMillis();
-			testConfigurationResult.setEndTime(new Date(end));
-			testConfigurationResult.setDuration(end - start);
+			finish(startTicks);
 			testConfigurationResult.setStatus(TestConfigurationStatusType.CANCELLED);
 			throw ex;
+		} finally {
+			// a finished, cancelled or failed TestConfiguration is not resumed anymore, only a crash
+			// or the shutdown of the TestEngine leaves its checkpoint
+			if (checkpointInterval > 0 && !isSuspended()) {
+				CheckpointJournal.getInstance().remove(getId());
+			}
 		}
 	}
 
+	/**
+	 * Records the end of the TestConfigurationResult and creates the Dates of all results, before
+	 * the result is released to the clients.
+	 * 
+	 * @param startTicks the ticks at the start of the execution
+	 */
+	private void finish(long startTicks) {
+		getResultTimings().record(testConfigurationResult, startTicks, ExecutionClock.ticks());
+		getResultTimings().materialize();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	protected void finalizeExecution() {
 		logger.debug("Finalizing execution of TestConfiguration ", testConfiguration.getName().getValue());
-		ProxyEnginePool proxyPool = ProxyPoolFactory.getInstance()
-				.getProxyEnginePool();
-		Collection<ProxyEngine> proxies = proxyPool.getProxyEngines();
 
-		// stop and unconfigure all proxies
-		logger.debug("Stopping and unconfiguring all ProxyEngines");
+		// release all proxies acquired by this job, the last user stops and unconfigures them
+		logger.debug("Releasing all ProxyEngines");
 		
-		for (ProxyEngine proxyEngine : proxies) {
+		for (ProxyEngine proxyEngine : acquiredProxies) {
 			try {
-				proxyEngine.stopProxy();
-				proxyEngine.unConfigureProxy();
+				ProxyEngineUsageRegistry.getInstance().release(proxyEngine);
 			} catch (ProxyConfigurationException ex) {
 				logger.error(ex, "Could not unconfigure and stop "
 						+ proxyEngine.getSubEngineType());
 			}
 		}
-		logger.debug("ProxyEngines stopped and unconfigured");
+		acquiredProxies.clear();
+		logger.debug("ProxyEngines released");
 	}
 
 }
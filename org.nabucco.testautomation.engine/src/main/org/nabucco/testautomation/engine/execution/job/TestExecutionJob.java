@@ -16,21 +16,42 @@
  */
 package org.nabucco.testautomation.engine.execution.job;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.nabucco.framework.base.facade.datatype.Identifier;
 import org.nabucco.framework.base.facade.datatype.logger.NabuccoLogger;
 import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
 import org.nabucco.testautomation.engine.base.engine.ExecutionController;
 import org.nabucco.testautomation.engine.base.exception.InterruptionException;
 import org.nabucco.testautomation.engine.execution.TestExecutionEvent;
 import org.nabucco.testautomation.engine.execution.TestExecutionListener;
+import org.nabucco.testautomation.engine.execution.delta.ResultVersions;
+import org.nabucco.testautomation.engine.execution.event.ExecutionEventBus;
+import org.nabucco.testautomation.engine.execution.event.ExecutionEventType;
 import org.nabucco.testautomation.engine.execution.info.TestExecutionInfoFactory;
+import org.nabucco.testautomation.engine.execution.info.TestExecutionSnapshot;
+import org.nabucco.testautomation.engine.execution.timing.ExecutionClock;
+import org.nabucco.testautomation.engine.execution.timing.ResultTimings;
+import org.nabucco.testautomation.engine.execution.watchdog.ExecutionMonitor;
+import org.nabucco.testautomation.engine.execution.watchdog.ExecutionTimeouts;
+import org.nabucco.testautomation.engine.semaphore.SynchronizationSemaphoreMap;
+import org.nabucco.testautomation.result.facade.datatype.trace.ActionTrace;
+import org.nabucco.testautomation.result.facade.datatype.trace.FileTrace;
+import org.nabucco.testautomation.result.facade.datatype.trace.ScreenshotTrace;
 import org.nabucco.testautomation.settings.facade.datatype.engine.ExecutionStatusType;
+import org.nabucco.testautomation.settings.facade.datatype.engine.SubEngineType;
 import org.nabucco.testautomation.settings.facade.datatype.engine.TestExecutionInfo;
 
 /**
@@ -38,7 +59,17 @@ import org.nabucco.testautomation.settings.facade.datatype.engine.TestExecutionI
  * 
  * @author Steffen Schmidt, PRODYNA AG
  */
-public abstract class TestExecutionJob implements Runnable, ExecutionController {
+public abstract class TestExecutionJob implements Runnable, ExecutionController, ExecutionMonitor {
+
+    /**
+     * The priority of jobs submitted without an explicit priority.
+     */
+    public static final int DEFAULT_PRIORITY = 0;
+
+    /**
+     * The submitter of jobs submitted without an explicit submitter.
+     */
+    public static final String UNKNOWN_SUBMITTER = "unknown";
 
     private final NabuccoLogger logger = NabuccoLoggingFactory.getInstance().getLogger(TestExecutionJob.class);
 
@@ -46,19 +77,66 @@ public abstract class TestExecutionJob implements Runnable, ExecutionController
 
     private final Condition pause = lock.newCondition();
 
-    private final List<TestExecutionListener> listener = new ArrayList<TestExecutionListener>();
+    private final Condition sleeping = lock.newCondition();
+
+    private final Condition operationsReturned = lock.newCondition();
+
+    private final List<TestExecutionListener> listener = new CopyOnWriteArrayList<TestExecutionListener>();
+
+    private volatile TestExecutionSnapshot snapshot = new TestExecutionSnapshot(ExecutionStatusType.INITIALIZED,
+            null, null);
+
+    private volatile boolean pauseRequested = false;
+
+    private volatile boolean interruptionRequested = false;
+
+    private volatile boolean suspended = false;
+
+    private volatile Long id;
+
+    private int priority = DEFAULT_PRIORITY;
+
+    private String submitter = UNKNOWN_SUBMITTER;
+
+    private Thread runner;
+
+    private final Set<Thread> workers = new CopyOnWriteArraySet<Thread>();
 
-    private ExecutionStatusType status = ExecutionStatusType.INITIALIZED;
+    private volatile Executor forkExecutor;
 
-    private boolean pauseRequested = false;
+    /** The number of operations executed for this job by other threads, guarded by the lock. */
+    private int operations = 0;
 
-    private boolean interruptionRequested = false;
+    private final ResultTimings resultTimings = new ResultTimings();
 
-    private Long id;
+    private final ResultVersions resultVersions = new ResultVersions();
 
-    private Long startTime;
+    /** The screenshots and files referenced by the traces of the result of this job. */
+    private final Set<Long> imageIds = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
 
-    private Long stopTime;
+    private final Set<Long> fileIds = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+    private volatile long lastProgress;
+
+    private final AtomicLong version = new AtomicLong();
+
+    private final AtomicInteger versionWaiters = new AtomicInteger();
+
+    private final Lock versionLock = new ReentrantLock();
+
+    private final Condition versionChanged = versionLock.newCondition();
+
+    private volatile long jobDeadline = 0;
+
+    private volatile long stallTimeout = 0;
+
+    private volatile long actionDeadline = 0;
+
+    private volatile String currentAction;
+
+    private volatile String timeoutReason;
+
+    private volatile String stackSnapshot;
 
     public final long getId() {
         return id;
@@ -69,7 +147,271 @@ public abstract class TestExecutionJob implements Runnable, ExecutionController
     }
 
     public final ExecutionStatusType getStatus() {
-        return status;
+        return snapshot.getStatus();
+    }
+
+    public final Long getStartTime() {
+        return snapshot.getStartTime();
+    }
+
+    public final Long getStopTime() {
+        return snapshot.getStopTime();
+    }
+
+    /**
+     * Gets the immutable status snapshot last published by this job.
+     * 
+     * @return the snapshot
+     */
+    public final TestExecutionSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Gets the version of this job, which is incremented on every status transition and on the
+     * progress of the execution.
+     * 
+     * @return the version
+     */
+    public final long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Waits until the version of this job differs from the given version.
+     * 
+     * @param knownVersion
+     *            the version known by the caller
+     * @param timeout
+     *            the maximum time to wait in milliseconds
+     * @return true, if the version changed, false if the timeout elapsed
+     */
+    public final boolean awaitChange(long knownVersion, long timeout) {
+        versionWaiters.incrementAndGet();
+        versionLock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+
+            while (version.get() == knownVersion) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = versionChanged.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return version.get() != knownVersion;
+        } finally {
+            versionLock.unlock();
+            versionWaiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Publishes a new status snapshot of this job. Must be called holding the lock, so the new
+     * snapshot is derived from the latest one.
+     * 
+     * @param next
+     *            the new snapshot
+     */
+    private void publish(TestExecutionSnapshot next) {
+        snapshot = next;
+        changed();
+    }
+
+    /**
+     * Publishes a new status of this job. The executing, cancelling and pausing threads publish
+     * concurrently, the status is therefore changed holding the lock. A completed status is not
+     * replaced anymore.
+     * 
+     * @param status
+     *            the new status
+     */
+    private void publishStatus(ExecutionStatusType status) {
+        lock.lock();
+        try {
+            if (!isCompleted(snapshot.getStatus())) {
+                publish(snapshot.withStatus(status));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Publishes the final status and the stop time of this job. The stop time is published only
+     * once, so the listeners notified afterwards read the complete TestExecutionInfo.
+     * 
+     * @param status
+     *            the final status, ignored if the job already completed
+     */
+    private void publishStopped(ExecutionStatusType status) {
+        lock.lock();
+        try {
+            TestExecutionSnapshot stopped = snapshot;
+
+            if (!isCompleted(stopped.getStatus())) {
+                stopped = stopped.withStatus(status);
+            }
+            if (stopped.getStopTime() == null) {
+                stopped = stopped.stopped(ExecutionClock.currentTimeMillis());
+            }
+            if (stopped != snapshot) {
+                publish(stopped);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean isCompleted(ExecutionStatusType status) {
+        return status == ExecutionStatusType.FINISHED
+                || status == ExecutionStatusType.INTERRUPTED
+                || status == ExecutionStatusType.REJECTED;
+    }
+
+    /**
+     * Increments the version of this job and wakes up the callers waiting for a change.
+     */
+    private void changed() {
+        version.incrementAndGet();
+
+        if (versionWaiters.get() > 0) {
+            versionLock.lock();
+            try {
+                versionChanged.signalAll();
+            } finally {
+                versionLock.unlock();
+            }
+        }
+    }
+
+    public final int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Gets the name of this job used in execution events.
+     * 
+     * @return the name
+     */
+    public String getName() {
+        return getClass().getSimpleName();
+    }
+
+    public final void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public final String getSubmitter() {
+        return submitter;
+    }
+
+    public final void setSubmitter(String submitter) {
+        this.submitter = submitter != null ? submitter : UNKNOWN_SUBMITTER;
+    }
+
+    /**
+     * Gets the executor of tasks forked by this job. Forked tasks run on the same kind of threads
+     * as the job itself.
+     * 
+     * @return the executor or null, if the job may not fork tasks
+     */
+    public final Executor getForkExecutor() {
+        return forkExecutor;
+    }
+
+    public final void setForkExecutor(Executor forkExecutor) {
+        this.forkExecutor = forkExecutor;
+    }
+
+    /**
+     * Gets the executor of operations, the job does not wait for, when it is cancelled, e.g.
+     * SubEngine calls. The job keeps its proxies and its job slot, until its abandoned
+     * operations returned.
+     * 
+     * @return the executor or null, if the job may not fork tasks
+     */
+    public final Executor getOperationExecutor() {
+        final Executor executor = forkExecutor;
+
+        if (executor == null) {
+            return null;
+        }
+        return new Executor() {
+
+            @Override
+            public void execute(final Runnable operation) {
+                operationStarted();
+                try {
+                    executor.execute(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            try {
+                                operation.run();
+                            } finally {
+                                operationReturned();
+                            }
+                        }
+                    });
+                } catch (RuntimeException ex) {
+                    operationReturned();
+                    throw ex;
+                }
+            }
+        };
+    }
+
+    private void operationStarted() {
+        lock.lock();
+        try {
+            operations++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void operationReturned() {
+        lock.lock();
+        try {
+            operations--;
+
+            if (operations == 0) {
+                operationsReturned.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the operations abandoned by the cancelled job returned. Further interruptions
+     * do not end the wait, the proxies used by the operations must not be released before.
+     */
+    private void awaitOperations() {
+        lock.lock();
+        try {
+            if (operations > 0) {
+                logger.info("Job " + id + " waits for " + operations + " abandoned operations");
+            }
+            while (operations > 0) {
+                operationsReturned.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the SubEngineTypes whose proxies are used by this job. Jobs using the same proxy are
+     * not executed concurrently.
+     * 
+     * @return the required SubEngineTypes
+     */
+    public Set<SubEngineType> getRequiredSubEngineTypes() {
+        return Collections.emptySet();
     }
 
     public final void addTestExecutionListener(TestExecutionListener listener) {
@@ -94,6 +436,7 @@ public abstract class TestExecutionJob implements Runnable, ExecutionController
         lock.lock();
         try {
             pauseRequested = true;
+            sleeping.signalAll();
         } finally {
             lock.unlock();
         }
@@ -114,11 +457,75 @@ public abstract class TestExecutionJob implements Runnable, ExecutionController
         try {
             interruptionRequested = true;
             pause.signalAll();
+            sleeping.signalAll();
+
+            // Only interrupt the threads executing this job, other jobs of the pool continue
+            if (runner != null) {
+                runner.interrupt();
+            }
+
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Interrupts this job, because the TestEngine shuts down. Unlike a cancelled job, a suspended
+     * job keeps its checkpoint, so it can be resumed after a restart. A job already cancelled is
+     * not suspended.
+     */
+    public final void suspend() {
+        lock.lock();
+        try {
+            if (!interruptionRequested) {
+                suspended = true;
+            }
+            interrupt();
         } finally {
             lock.unlock();
         }
     }
 
+    /**
+     * Checks whether this job was interrupted by the shutdown of the TestEngine.
+     * 
+     * @return true, if the job was suspended
+     */
+    public final boolean isSuspended() {
+        return suspended;
+    }
+
+    /**
+     * Attaches the current thread to this job, e.g. a thread executing a forked branch. Attached
+     * threads are interrupted together with the job.
+     * 
+     * @return true, if the thread was attached, false if it already executes this job
+     */
+    public final boolean attachThread() {
+        Thread thread = Thread.currentThread();
+        return thread != runner && workers.add(thread);
+    }
+
+    /**
+     * Detaches the current thread from this job.
+     */
+    public final void detachThread() {
+        workers.remove(Thread.currentThread());
+    }
+
+    /**
+     * Checks whether the current thread is the thread executing this job and no forked branch is
+     * running. Read without locking, only the executing thread itself sets the runner.
+     * 
+     * @return true, if called by the executing thread while no branch is running
+     */
+    protected final boolean isExecutingAlone() {
+        return runner == Thread.currentThread() && workers.isEmpty();
+    }
+
     @Override
     public final boolean isPaused() {
         return pauseRequested;
@@ -131,12 +538,12 @@ public abstract class TestExecutionJob implements Runnable, ExecutionController
     public final void tryPause() {
         lock.lock();
         try {
-            status = ExecutionStatusType.PAUSED;
+            publishStatus(ExecutionStatusType.PAUSED);
             pause.await();
         } catch (InterruptedException e) {
-            status = ExecutionStatusType.RUNNING;
-            logger.error("Unexpected interruption while Job " + id + " was sleeping");
+            logUnexpectedInterruption();
         } finally {
+            publishStatus(ExecutionStatusType.RUNNING);
             lock.unlock();
         }
     }
@@ -144,69 +551,338 @@ public abstract class TestExecutionJob implements Runnable, ExecutionController
     public final void tryInterruption() {
         lock.lock();
         try {
-            finalizeExecution();
-            throw new InterruptionException();
+            Thread.interrupted();
+
+            // the proxies of abandoned operations are released by run(), when they returned
+            if (operations == 0) {
+                finalizeExecution();
+            }
+            throw timeoutReason != null ? new InterruptionException(timeoutReason) : new InterruptionException();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the timeouts of this job. Must be called by the executing thread.
+     * 
+     * @param jobTimeout
+     *            the maximum duration of the job from now in milliseconds, 0 for no limit
+     * @param stallTimeout
+     *            the maximum duration without progress in milliseconds, 0 for the default of
+     *            the watchdog
+     */
+    protected final void setTimeouts(long jobTimeout, long stallTimeout) {
+        this.jobDeadline = jobTimeout > 0 ? ExecutionClock.currentTimeMillis() + jobTimeout : 0;
+        this.stallTimeout = stallTimeout;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void progress() {
+        lastProgress = ExecutionClock.currentTimeMillis();
+        changed();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void actionStarted(String actionName, long timeout) {
+        long now = ExecutionClock.currentTimeMillis();
+        currentAction = actionName;
+        actionDeadline = timeout > 0 ? now + timeout : 0;
+        lastProgress = now;
+        changed();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void actionFinished() {
+        actionDeadline = 0;
+        currentAction = null;
+        lastProgress = ExecutionClock.currentTimeMillis();
+    }
+
+    /**
+     * Checks the deadlines and the progress of this job. Jobs paused on request are not
+     * considered stalled, jobs waiting for a client interaction are.
+     * 
+     * @param now
+     *            the current time
+     * @param defaultStallTimeout
+     *            the maximum duration without progress, if the job does not define one
+     * @return the reason of the timeout or null, if the job did not time out
+     */
+    public final String checkTimeout(long now, long defaultStallTimeout) {
+        ExecutionStatusType status = getStatus();
+
+        if (timeoutReason != null || interruptionRequested
+                || (status != ExecutionStatusType.RUNNING && status != ExecutionStatusType.PAUSED)) {
+            return null;
+        }
+        long deadline = jobDeadline;
+
+        if (deadline > 0 && now > deadline) {
+            return "Job " + id + " exceeded its deadline (" + ExecutionTimeouts.JOB_TIMEOUT + ")";
+        }
+        deadline = actionDeadline;
+        String action = currentAction;
+
+        if (deadline > 0 && now > deadline && action != null) {
+            return "Action '" + action + "' exceeded its deadline (" + ExecutionTimeouts.ACTION_TIMEOUT + ")";
+        }
+        long stall = stallTimeout > 0 ? stallTimeout : defaultStallTimeout;
+
+        if (stall > 0 && !pauseRequested && now - lastProgress > stall) {
+            return "Job " + id + " made no progress for " + (now - lastProgress) + " ms"
+                    + (action != null ? " in Action '" + action + "'" : "");
+        }
+        return null;
+    }
+
+    /**
+     * Interrupts this job because of a timeout. The stacks of the executing thread and the threads
+     * attached to the job are captured before the interruption.
+     * 
+     * @param reason
+     *            the reason of the timeout
+     */
+    public final void timeout(String reason) {
+        lock.lock();
+        try {
+            if (timeoutReason != null) {
+                return;
+            }
+            timeoutReason = reason;
+
+            if (runner != null) {
+                StringBuilder stack = new StringBuilder();
+                appendStack(stack, runner);
+
+                // forked branches execute the actual Actions
+                for (Thread worker : workers) {
+                    stack.append("\n");
+                    appendStack(stack, worker);
+                }
+                stackSnapshot = stack.toString();
+            }
         } finally {
             lock.unlock();
         }
+        logger.warning(reason, ", interrupting job. Stacks of executing threads: ", stackSnapshot);
+        interrupt();
+    }
+
+    private static void appendStack(StringBuilder stack, Thread thread) {
+        stack.append(thread.getName()).append(" (").append(thread.getState()).append(")");
+
+        for (StackTraceElement element : thread.getStackTrace()) {
+            stack.append("\n\tat ").append(element);
+        }
+    }
+
+    /**
+     * Gets the reason of the timeout of this job.
+     * 
+     * @return the reason or null, if the job did not time out
+     */
+    public final String getTimeoutReason() {
+        return timeoutReason;
+    }
+
+    /**
+     * Gets the stack of the executing thread captured when the job timed out.
+     * 
+     * @return the stack snapshot or null, if the job did not time out
+     */
+    public final String getStackSnapshot() {
+        return stackSnapshot;
     }
 
     public final void rejected() {
         lock.lock();
         try {
-            status = ExecutionStatusType.REJECTED;
+            publishStatus(ExecutionStatusType.REJECTED);
             finalizeExecution();
         } finally {
             lock.unlock();
         }
     }
 
+    /**
+     * Called when the job is removed from the admission queue before it was started. The
+     * listeners are notified like for an interrupted job.
+     */
+    public final void cancelled() {
+        lock.lock();
+        try {
+            if (isCompleted(snapshot.getStatus())) {
+                return;
+            }
+            publish(snapshot.withStatus(ExecutionStatusType.INTERRUPTED).stopped(ExecutionClock.currentTimeMillis()));
+        } finally {
+            lock.unlock();
+        }
+        TestExecutionEvent e = new TestExecutionEvent(this.id);
+
+        for (TestExecutionListener tel : this.listener) {
+            tel.testExecutionFinished(e);
+        }
+    }
+
+    /**
+     * Sleeps for the given duration. The sleep returns immediately, when the job is interrupted.
+     * A pause requested while sleeping takes effect at once and is not counted as sleeping time.
+     */
     @Override
     public void sleep(Long duration) {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(duration);
         lock.lock();
         try {
-            pause.await(duration, TimeUnit.MILLISECONDS);
+            while (remaining > 0 && !interruptionRequested) {
+
+                if (pauseRequested) {
+                    tryPause();
+                } else {
+                    remaining = sleeping.awaitNanos(remaining);
+                }
+            }
         } catch (InterruptedException e) {
-            logger.error("Unexpected interruption while Job " + id + " was sleeping");
+            logUnexpectedInterruption();
         } finally {
             lock.unlock();
         }
     }
 
+    /**
+     * Gets the timings of the results of this job.
+     * 
+     * @return the ResultTimings
+     */
+    public final ResultTimings getResultTimings() {
+        return resultTimings;
+    }
+
+    /**
+     * Gets the versions of the results of this job.
+     * 
+     * @return the ResultVersions
+     */
+    public final ResultVersions getResultVersions() {
+        return resultVersions;
+    }
+
+    /**
+     * Records the screenshot or file of a trace added to the result of this job. The clients of
+     * the job read only the contents recorded here.
+     * 
+     * @param trace
+     *            the ActionTrace
+     */
+    public final void traceAdded(ActionTrace trace) {
+
+        if (trace instanceof ScreenshotTrace && ((ScreenshotTrace) trace).getImageId() != null) {
+            imageIds.add(((ScreenshotTrace) trace).getImageId().getValue());
+        } else if (trace instanceof FileTrace && ((FileTrace) trace).getFileId() != null) {
+            fileIds.add(((FileTrace) trace).getFileId().getValue());
+        }
+    }
+
+    /**
+     * Checks whether a screenshot is referenced by the result of this job.
+     * 
+     * @param imageId
+     *            the image id
+     * @return true, if a trace of the result references the screenshot
+     */
+    public final boolean ownsImage(Identifier imageId) {
+        return imageId != null && imageIds.contains(imageId.getValue());
+    }
+
+    /**
+     * Checks whether a file is referenced by the result of this job.
+     * 
+     * @param fileId
+     *            the file id
+     * @return true, if a trace of the result references the file
+     */
+    public final boolean ownsFile(Identifier fileId) {
+        return fileId != null && fileIds.contains(fileId.getValue());
+    }
+
     public TestExecutionInfo getTestExecutionInfo() {
+        return TestExecutionInfoFactory.getInstance().createTestExecutionInfo(id, snapshot);
+    }
+
+    public final void run() {
         lock.lock();
         try {
-            TestExecutionInfo info = TestExecutionInfoFactory.getInstance().createTestExecutionInfo(id, status,
-                    startTime, stopTime);
-            return info;
+            runner = Thread.currentThread();
+            publish(snapshot.started(ExecutionStatusType.RUNNING, ExecutionClock.currentTimeMillis()));
         } finally {
             lock.unlock();
         }
-    }
 
-    public final void run() {
+        ExecutionEventBus eventBus = ExecutionEventBus.getInstance();
+        long startTicks = ExecutionClock.ticks();
+
         try {
-            startTime = System.currentTimeMillis();
-            status = ExecutionStatusType.RUNNING;
+            eventBus.publish(ExecutionEventType.JOB_STARTED, id, getName(), -1, null);
+            progress();
             prepareExecution();
             execute();
             finalizeExecution();
             executionFinished();
         } catch (InterruptionException ex) {
             logger.error("Job " + id + " interrupted");
+            Thread.interrupted();
+
+            // the cancel is published at once, the proxies and the job slot are released later
+            publishStopped(ExecutionStatusType.INTERRUPTED);
+            awaitOperations();
             finalizeExecution();
             executionInterrupted();
         } catch (Exception ex) {
             logger.fatal(ex, "Unexpected error during execution of job " + id);
             executionInterrupted();
         } finally {
-            stopTime = System.currentTimeMillis();
+            publishStopped(snapshot.getStatus());
+            eventBus.publish(ExecutionEventType.JOB_FINISHED, id, getName(), ExecutionClock.ticks() - startTicks,
+                    snapshot.getStatus());
+            releaseRunner();
+        }
+    }
+
+    /**
+     * Releases the locks still held by the executing thread and detaches the job from it, so the
+     * pool thread can be reused by the next job.
+     */
+    private void releaseRunner() {
+        lock.lock();
+        try {
+            SynchronizationSemaphoreMap.getInstance().releaseLocks(runner);
+            runner = null;
+            Thread.interrupted();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void logUnexpectedInterruption() {
+
+        if (!interruptionRequested) {
+            logger.error("Unexpected interruption while Job " + id + " was sleeping");
         }
     }
 
     protected void executionFinished() {
         TestExecutionEvent e = new TestExecutionEvent(this.id);
-        status = ExecutionStatusType.FINISHED;
+        publishStopped(ExecutionStatusType.FINISHED);
 
         for (TestExecutionListener tel : this.listener) {
             tel.testExecutionFinished(e);
@@ -215,7 +891,7 @@ public abstract class TestExecutionJob implements Runnable, ExecutionController
 
     protected void executionInterrupted() {
         TestExecutionEvent e = new TestExecutionEvent(this.id);
-        status = ExecutionStatusType.INTERRUPTED;
+        publishStopped(ExecutionStatusType.INTERRUPTED);
 
         for (TestExecutionListener tel : this.listener) {
             tel.testExecutionFinished(e);
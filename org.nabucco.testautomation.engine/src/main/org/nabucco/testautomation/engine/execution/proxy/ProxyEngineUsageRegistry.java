@@ -0,0 +1,199 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.proxy;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.nabucco.framework.base.facade.datatype.logger.NabuccoLogger;
+import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
+import org.nabucco.testautomation.engine.proxy.ProxyEngine;
+import org.nabucco.testautomation.engine.proxy.exception.ProxyConfigurationException;
+import org.nabucco.testautomation.settings.facade.datatype.engine.SubEngineType;
+import org.nabucco.testautomation.settings.facade.datatype.engine.proxy.ProxyConfiguration;
+
+/**
+ * ProxyEngineUsageRegistry
+ * <p>
+ * Keeps track of the jobs using a {@link ProxyEngine} of the ProxyEnginePool. The first job
+ * acquiring a ProxyEngine configures and starts it, the last job releasing it stops and
+ * unconfigures it. Concurrent jobs therefore never stop a ProxyEngine another job still uses.
+ * <p>
+ * A started ProxyEngine is only shared by jobs with an equal ProxyConfiguration. A job with a
+ * different configuration waits until the ProxyEngine is released by all jobs using it.
+ * <p>
+ * The usage counts are kept under the registry monitor, while the ProxyEngines are configured,
+ * started and stopped outside of it. Jobs acquiring a ProxyEngine that is being started or
+ * stopped wait for it, jobs using other ProxyEngines are not blocked.
+ * 
+ * @author agent
+ */
+public final class ProxyEngineUsageRegistry {
+
+    private static final NabuccoLogger logger = NabuccoLoggingFactory.getInstance().getLogger(
+            ProxyEngineUsageRegistry.class);
+
+    private static ProxyEngineUsageRegistry instance;
+
+    private final Map<SubEngineType, ProxyUsage> usages = new HashMap<SubEngineType, ProxyUsage>();
+
+    private ProxyEngineUsageRegistry() {
+    }
+
+    /**
+     * Gets the instance of the ProxyEngineUsageRegistry.
+     * 
+     * @return the instance
+     */
+    public static synchronized ProxyEngineUsageRegistry getInstance() {
+
+        if (instance == null) {
+            instance = new ProxyEngineUsageRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Acquires the given ProxyEngine for a job. If the ProxyEngine is not in use yet, it is
+     * configured with the given configuration and started. If it is in use with a different
+     * configuration or currently started or stopped by another job, the job waits for it.
+     * 
+     * @param proxyEngine
+     *            the ProxyEngine to acquire
+     * @param config
+     *            the ProxyConfiguration of the acquiring job
+     * @throws ProxyConfigurationException
+     *             thrown, if the ProxyEngine could not be configured and started or the job was
+     *             interrupted while waiting for it
+     */
+    public void acquire(ProxyEngine proxyEngine, ProxyConfiguration config) throws ProxyConfigurationException {
+
+        SubEngineType type = proxyEngine.getSubEngineType();
+        ProxyUsage usage;
+
+        synchronized (this) {
+            while (true) {
+                usage = usages.get(type);
+
+                if (usage == null) {
+                    usage = new ProxyUsage(config);
+                    usages.put(type, usage);
+                    break;
+                }
+                if (usage.state == ProxyState.STARTED && config.equals(usage.config)) {
+                    logger.debug("ProxyEngine ", type.toString(),
+                            " already started with an equal configuration, sharing it");
+                    usage.count++;
+                    return;
+                }
+                logger.info("ProxyEngine ", type.toString(), " in use with state ", usage.state.toString(),
+                        ", waiting");
+
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new ProxyConfigurationException("Interrupted while waiting for ProxyEngine " + type);
+                }
+            }
+        }
+        boolean started = false;
+
+        try {
+            proxyEngine.configureProxy(config);
+            proxyEngine.startProxy();
+            started = true;
+        } finally {
+            synchronized (this) {
+                if (started) {
+                    usage.state = ProxyState.STARTED;
+                } else {
+                    usages.remove(type);
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Releases the given ProxyEngine for a job. If no other job uses the ProxyEngine, it is
+     * stopped and unconfigured.
+     * 
+     * @param proxyEngine
+     *            the ProxyEngine to release
+     * @throws ProxyConfigurationException
+     *             thrown, if the ProxyEngine could not be stopped and unconfigured
+     */
+    public void release(ProxyEngine proxyEngine) throws ProxyConfigurationException {
+
+        SubEngineType type = proxyEngine.getSubEngineType();
+        ProxyUsage usage;
+
+        synchronized (this) {
+            usage = usages.get(type);
+
+            if (usage != null && usage.count > 1) {
+                usage.count--;
+                return;
+            }
+            if (usage != null) {
+                usage.state = ProxyState.STOPPING;
+            }
+        }
+
+        try {
+            proxyEngine.stopProxy();
+            proxyEngine.unConfigureProxy();
+        } finally {
+            if (usage != null) {
+                synchronized (this) {
+                    usages.remove(type);
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * The lifecycle state of a ProxyEngine in use.
+     */
+    private enum ProxyState {
+
+        STARTING,
+
+        STARTED,
+
+        STOPPING;
+    }
+
+    /**
+     * The usage of a single ProxyEngine, guarded by the registry monitor.
+     */
+    private static final class ProxyUsage {
+
+        private final ProxyConfiguration config;
+
+        private ProxyState state = ProxyState.STARTING;
+
+        private int count = 1;
+
+        private ProxyUsage(ProxyConfiguration config) {
+            this.config = config;
+        }
+    }
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.queue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.nabucco.testautomation.engine.execution.job.TestExecutionJob;
+import org.nabucco.testautomation.settings.facade.datatype.engine.SubEngineType;
+
+/**
+ * TestExecutionJobQueue
+ * <p>
+ * Bounded admission queue for jobs waiting for a free job slot. Jobs with a higher priority are
+ * dispatched first. Among jobs of the same priority, the jobs of the submitters are dispatched in
+ * turns, so a single submitter cannot starve the others.
+ * <p>
+ * Every queued job gets a round: the round following the latest round of its submitter, but not
+ * before the round of the last dispatched job. Jobs of the same priority are dispatched by their
+ * round and then by the order of submission.
+ * <p>
+ * Jobs using the proxy of a busy SubEngineType are not dispatched. A job waiting for a proxy
+ * reserves it, so jobs queued behind it may only overtake it, if they use other proxies.
+ * 
+ * @author agent
+ */
+public final class TestExecutionJobQueue {
+
+    private static final Comparator<QueuedJob> DISPATCH_ORDER = new Comparator<QueuedJob>() {
+
+        @Override
+        public int compare(QueuedJob o1, QueuedJob o2) {
+
+            if (o1.job.getPriority() != o2.job.getPriority()) {
+                return o1.job.getPriority() > o2.job.getPriority() ? -1 : 1;
+            }
+            if (o1.round != o2.round) {
+                return o1.round < o2.round ? -1 : 1;
+            }
+            return o1.sequence < o2.sequence ? -1 : (o1.sequence == o2.sequence ? 0 : 1);
+        }
+    };
+
+    private final PriorityQueue<QueuedJob> queue = new PriorityQueue<QueuedJob>(11, DISPATCH_ORDER);
+
+    /** the latest round of the submitters with a round after the current round */
+    private final Map<String, Long> submitterRounds = new HashMap<String, Long>();
+
+    private int capacity;
+
+    private long round = 0;
+
+    private long sequence = 0;
+
+    /**
+     * Constructs a new TestExecutionJobQueue.
+     * 
+     * @param capacity
+     *            the maximum number of queued jobs
+     */
+    public TestExecutionJobQueue(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds a job to the queue.
+     * 
+     * @param job
+     *            the job to be queued
+     * @return true, if the job was queued, false if the queue is full
+     */
+    public synchronized boolean offer(TestExecutionJob job) {
+
+        if (queue.size() >= capacity) {
+            return false;
+        }
+        Long submitterRound = submitterRounds.get(job.getSubmitter());
+        long jobRound = Math.max(round, submitterRound != null ? submitterRound.longValue() : 0) + 1;
+        submitterRounds.put(job.getSubmitter(), Long.valueOf(jobRound));
+        queue.add(new QueuedJob(job, jobRound, sequence++));
+        return true;
+    }
+
+    /**
+     * Removes the next job to be dispatched from the queue, which does not use any of the busy
+     * proxies or a proxy reserved by a job queued before.
+     * 
+     * @param busyTypes
+     *            the SubEngineTypes used by the running jobs
+     * @return the next job or null, if no queued job can be dispatched
+     */
+    public synchronized TestExecutionJob poll(Set<SubEngineType> busyTypes) {
+        Set<SubEngineType> reserved = new HashSet<SubEngineType>(busyTypes);
+        List<QueuedJob> skipped = new ArrayList<QueuedJob>();
+        QueuedJob next = null;
+
+        try {
+            while (!queue.isEmpty()) {
+                QueuedJob queued = queue.poll();
+                Set<SubEngineType> required = queued.job.getRequiredSubEngineTypes();
+
+                if (Collections.disjoint(required, reserved)) {
+                    next = queued;
+                    break;
+                }
+                reserved.addAll(required);
+                skipped.add(queued);
+            }
+        } finally {
+            queue.addAll(skipped);
+        }
+
+        if (next == null) {
+            return null;
+        }
+        dispatched(next);
+        return next.job;
+    }
+
+    /**
+     * Checks whether a job could be dispatched before all queued jobs, i.e. it does not use a
+     * busy proxy or a proxy reserved by a queued job.
+     * 
+     * @param job
+     *            the job to check
+     * @param busyTypes
+     *            the SubEngineTypes used by the running jobs
+     * @return true, if the job does not conflict with busy or reserved proxies
+     */
+    public synchronized boolean canOvertake(TestExecutionJob job, Set<SubEngineType> busyTypes) {
+        Set<SubEngineType> required = job.getRequiredSubEngineTypes();
+
+        if (!Collections.disjoint(required, busyTypes)) {
+            return false;
+        }
+
+        for (QueuedJob queued : queue) {
+            if (!Collections.disjoint(required, queued.job.getRequiredSubEngineTypes())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the job with the given id from the queue.
+     * 
+     * @param jobId
+     *            the job id
+     * @return the removed job or null, if the job is not queued
+     */
+    public synchronized TestExecutionJob remove(long jobId) {
+        Iterator<QueuedJob> iterator = queue.iterator();
+
+        while (iterator.hasNext()) {
+            QueuedJob queued = iterator.next();
+
+            if (queued.job.getId() == jobId) {
+                iterator.remove();
+                pruneSubmitterRounds();
+                return queued.job;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the position of a job in the dispatch order of the queue.
+     * 
+     * @param jobId
+     *            the job id
+     * @return the position starting with 1, or 0 if the job is not queued
+     */
+    public synchronized int getPosition(long jobId) {
+        QueuedJob[] ordered = queue.toArray(new QueuedJob[queue.size()]);
+        Arrays.sort(ordered, DISPATCH_ORDER);
+
+        for (int i = 0; i < ordered.length; i++) {
+            if (ordered[i].job.getId() == jobId) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the number of queued jobs.
+     * 
+     * @return the queue size
+     */
+    public synchronized int size() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the maximum number of queued jobs.
+     * 
+     * @return the capacity
+     */
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets the maximum number of queued jobs. Jobs already queued are kept, if the capacity is
+     * reduced below the current queue size.
+     * 
+     * @param capacity
+     *            the new capacity
+     */
+    public synchronized void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Advances the current round to the round of a dispatched job.
+     */
+    private void dispatched(QueuedJob queued) {
+        round = Math.max(round, queued.round);
+        pruneSubmitterRounds();
+    }
+
+    /**
+     * Removes the rounds of the submitters not after the current round, the next job of such a
+     * submitter gets the round following the current round anyway.
+     */
+    private void pruneSubmitterRounds() {
+
+        if (queue.isEmpty()) {
+            submitterRounds.clear();
+            return;
+        }
+
+        for (Iterator<Long> it = submitterRounds.values().iterator(); it.hasNext();) {
+            if (it.next().longValue() <= round) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * A queued job with its round and its order of submission.
+     */
+    private static final class QueuedJob {
+
+        private final TestExecutionJob job;
+
+        private final long round;
+
+        private final long sequence;
+
+        private QueuedJob(TestExecutionJob job, long round, long sequence) {
+            this.job = job;
+            this.round = round;
+            this.sequence = sequence;
+        }
+    }
+
+}
@@ -0,0 +1,841 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.SoftReference;
+import java.nio.channels.Channels;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.nabucco.framework.base.facade.datatype.logger.NabuccoLogger;
+import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
+import org.nabucco.testautomation.engine.execution.TestExecutionServiceFactory;
+import org.nabucco.testautomation.result.facade.datatype.TestConfigurationResult;
+import org.nabucco.testautomation.settings.facade.datatype.engine.TestExecutionInfo;
+
+/**
+ * ResultStore
+ * <p>
+ * Local store of the results of finished jobs. A job is appended to the current segment file as
+ * a sequence of records: one record per screenshot and file, one record of the deflated
+ * TestConfigurationResult and finally the record of its TestExecutionInfo, which commits the
+ * job. A full segment is never written again. The index of the committed jobs is rebuilt from
+ * the segment files on startup, so the results survive a restart of the TestEngine.
+ * <p>
+ * The index keeps the TestExecutionInfo of each job, so its status is answered without reading
+ * the segment. Results are read on request and softly cached, screenshots and files are read by
+ * range from their records.
+ * <p>
+ * When the segment files exceed the size of the store, the oldest segments are deleted together
+ * with their jobs.
+ *
+ * @author agent
+ */
+public final class ResultStore {
+
+    private static final NabuccoLogger logger = NabuccoLoggingFactory.getInstance().getLogger(ResultStore.class);
+
+    private static final String SEGMENT_PREFIX = "results-";
+
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    private static final int MAGIC = 0x4E545254;
+
+    /** magic, type, job id, blob id, length and checksum of a record */
+    static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 8;
+
+    static final int IMAGE = 1;
+
+    static final int FILE = 2;
+
+    static final int RESULT = 3;
+
+    static final int INFO = 4;
+
+    /** The maximum length of a committing record, a longer one is corrupt. */
+    private static final int MAX_INFO_SIZE = 1024 * 1024;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static ResultStore instance;
+
+    private final File directory;
+
+    private final long maxSize;
+
+    private final TreeMap<Integer, File> segments = new TreeMap<Integer, File>();
+
+    private final Map<Long, StoredResult> index = new HashMap<Long, StoredResult>();
+
+    private final Map<Long, SoftReference<TestConfigurationResult>> loaded = new HashMap<Long, SoftReference<TestConfigurationResult>>();
+
+    /** Serializes the writers, readers only lock the index. */
+    private final Lock writeLock = new ReentrantLock();
+
+    private RandomAccessFile segment;
+
+    private int segmentNumber;
+
+    private long diskUsage;
+
+    /**
+     * Constructs a new ResultStore and loads the index from the segment files in the directory.
+     *
+     * @param directory
+     *            the directory of the segment files
+     * @param maxSize
+     *            the maximum number of bytes of the segment files, 0 disables the store
+     */
+    ResultStore(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+
+        if (isEnabled()) {
+            load();
+        }
+    }
+
+    public static synchronized ResultStore getInstance() {
+
+        if (instance == null) {
+            instance = new ResultStore(new File(TestExecutionServiceFactory.RESULT_STORE_PATH),
+                    TestExecutionServiceFactory.RESULT_STORE_SIZE);
+        }
+        return instance;
+    }
+
+    /**
+     * Checks whether results are stored.
+     *
+     * @return true, if the store has a size, false otherwise
+     */
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Appends the result of a finished job. The result and the screenshots and files are streamed
+     * to the segment, so they are never held in memory as a whole. A result stored for the same
+     * job before is replaced.
+     *
+     * @param jobId
+     *            the id of the job
+     * @param testExecutionInfo
+     *            the TestExecutionInfo of the finished job
+     * @param version
+     *            the version of the latest change of the result
+     * @param result
+     *            the TestConfigurationResult referencing screenshots and files by their ids
+     * @param images
+     *            the screenshots referenced by the result
+     * @param files
+     *            the files referenced by the result
+     * @return the stored job
+     * @throws IOException
+     *             thrown, if the result could not be written
+     */
+    public StoredResult write(long jobId, TestExecutionInfo testExecutionInfo, long version,
+            TestConfigurationResult result, BlobSource images, BlobSource files) throws IOException {
+
+        if (!isEnabled()) {
+            throw new IOException("ResultStore is disabled");
+        }
+        writeLock.lock();
+        try {
+            if (segment == null || segment.length() >= SEGMENT_SIZE) {
+                openSegment(segmentNumber + 1);
+            }
+            long start = segment.length();
+            boolean committed = false;
+
+            try {
+                Map<Long, Location> imageLocations = writeBlobs(IMAGE, jobId, images);
+                Map<Long, Location> fileLocations = writeBlobs(FILE, jobId, files);
+                Location resultLocation = writeResult(jobId, result);
+
+                // the records of the job are durable before the record committing them
+                segment.getChannel().force(false);
+                writeInfo(jobId, testExecutionInfo, version);
+                segment.getChannel().force(false);
+                committed = true;
+
+                StoredResult stored = new StoredResult(jobId, testExecutionInfo, version, resultLocation,
+                        imageLocations, fileLocations);
+
+                synchronized (this) {
+                    diskUsage += segment.length() - start;
+                    index.put(jobId, stored);
+                    loaded.remove(jobId);
+                    deleteOldSegments();
+                }
+                return stored;
+            } finally {
+                if (!committed) {
+                    truncate(start);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the records of an uncommitted job, so the entries appended later are not hidden
+     * behind them. A failure is logged, it must not replace the failure of the write.
+     */
+    private void truncate(long position) {
+
+        try {
+            segment.setLength(position);
+        } catch (IOException ex) {
+            logger.error(ex, "Could not truncate result segment " + segments.get(segmentNumber).getAbsolutePath());
+        }
+    }
+
+    private Map<Long, Location> writeBlobs(int type, long jobId, BlobSource blobs) throws IOException {
+        Map<Long, Location> locations = new HashMap<Long, Location>();
+
+        if (blobs == null) {
+            return locations;
+        }
+        for (Long id : blobs.getIds()) {
+            Location location = writeBlob(type, jobId, id, blobs);
+
+            if (location != null) {
+                locations.put(id, location);
+            }
+        }
+        return locations;
+    }
+
+    private Location writeBlob(int type, long jobId, long id, BlobSource blobs) throws IOException {
+        long position = segment.length();
+        RecordOutputStream out = openRecord(position);
+        long offset = 0;
+        byte[] chunk = blobs.read(id, offset, CHUNK_SIZE);
+
+        // a blob released in the meantime is not stored
+        if (chunk == null) {
+            segment.setLength(position);
+            return null;
+        }
+        while (chunk != null && chunk.length > 0) {
+            out.write(chunk);
+            offset += chunk.length;
+            chunk = chunk.length < CHUNK_SIZE ? null : blobs.read(id, offset, CHUNK_SIZE);
+        }
+        return closeRecord(out, type, jobId, id, position);
+    }
+
+    private Location writeResult(long jobId, TestConfigurationResult result) throws IOException {
+        long position = segment.length();
+        RecordOutputStream out = openRecord(position);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+        try {
+            DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater, CHUNK_SIZE);
+            ObjectOutputStream objects = new ObjectOutputStream(deflated);
+            objects.writeObject(result);
+            objects.flush();
+            deflated.finish();
+        } finally {
+            deflater.end();
+        }
+        return closeRecord(out, RESULT, jobId, 0, position);
+    }
+
+    private void writeInfo(long jobId, TestExecutionInfo testExecutionInfo, long version) throws IOException {
+        long position = segment.length();
+        RecordOutputStream out = openRecord(position);
+        ObjectOutputStream objects = new ObjectOutputStream(out);
+        objects.writeLong(version);
+        objects.writeObject(testExecutionInfo);
+        objects.flush();
+        closeRecord(out, INFO, jobId, 0, position);
+    }
+
+    /**
+     * Starts a record at the given position, its header is written when it is closed.
+     */
+    private RecordOutputStream openRecord(long position) throws IOException {
+        segment.seek(position + HEADER_SIZE);
+        return new RecordOutputStream(Channels.newOutputStream(segment.getChannel()));
+    }
+
+    private Location closeRecord(RecordOutputStream out, int type, long jobId, long id, long position)
+            throws IOException {
+        out.flush();
+        long checksum = out.crc.getValue();
+
+        segment.seek(position);
+        segment.writeInt(MAGIC);
+        segment.writeInt(type);
+        segment.writeLong(jobId);
+        segment.writeLong(id);
+        segment.writeLong(out.count);
+        segment.writeLong(checksum);
+        segment.seek(position + HEADER_SIZE + out.count);
+        return new Location(segmentNumber, position + HEADER_SIZE, out.count, checksum);
+    }
+
+    /**
+     * Gets a stored job. Its TestExecutionInfo is kept in the index, so no segment is read.
+     *
+     * @param jobId
+     *            the job id
+     * @return the stored job or null, if no result of the job is stored
+     */
+    public synchronized StoredResult get(long jobId) {
+        return index.get(jobId);
+    }
+
+    /**
+     * Reads the result of a stored job.
+     *
+     * @param stored
+     *            the stored job
+     * @return the result referencing screenshots and files by their ids
+     * @throws IOException
+     *             thrown, if the result could not be read or is corrupt
+     */
+    public TestConfigurationResult readResult(StoredResult stored) throws IOException {
+        long jobId = stored.getJobId();
+        File file;
+
+        synchronized (this) {
+            SoftReference<TestConfigurationResult> reference = loaded.get(jobId);
+            TestConfigurationResult result = reference != null ? reference.get() : null;
+
+            if (result != null && index.get(jobId) == stored) {
+                return result;
+            }
+            loaded.remove(jobId);
+            file = getFile(stored.getResultLocation());
+        }
+
+        Location location = stored.getResultLocation();
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        TestConfigurationResult result;
+
+        try {
+            in.seek(location.position);
+            CRC32 crc = new CRC32();
+            InputStream payload = new CheckedInputStream(new BufferedInputStream(new BoundedInputStream(
+                    Channels.newInputStream(in.getChannel()), location.length), CHUNK_SIZE), crc);
+            Inflater inflater = new Inflater();
+
+            try {
+                ObjectInputStream objects = new ObjectInputStream(new InflaterInputStream(payload, inflater));
+                result = (TestConfigurationResult) objects.readObject();
+
+                // the checksum covers the whole record
+                while (payload.skip(location.length) > 0) {
+                }
+            } catch (ClassNotFoundException ex) {
+                throw new IOException("Could not read stored result: " + ex.getMessage());
+            } finally {
+                inflater.end();
+            }
+
+            if (crc.getValue() != location.checksum) {
+                throw new IOException("Corrupt result of job " + jobId + " in " + file.getAbsolutePath());
+            }
+        } finally {
+            in.close();
+        }
+
+        synchronized (this) {
+            if (index.get(jobId) == stored) {
+                loaded.put(jobId, new SoftReference<TestConfigurationResult>(result));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads a range of a screenshot of a stored job.
+     *
+     * @param stored
+     *            the stored job
+     * @param imageId
+     *            the image id of the ScreenshotTrace
+     * @param offset
+     *            the position of the first byte to read
+     * @param length
+     *            the maximum number of bytes to read
+     * @return the bytes read, empty beyond the end of the screenshot, or null if the job contains
+     *         no such screenshot
+     * @throws IOException
+     *             thrown, if the screenshot could not be read
+     */
+    public byte[] readImage(StoredResult stored, long imageId, long offset, int length) throws IOException {
+        return readRange(stored.getImageLocation(imageId), offset, length);
+    }
+
+    /**
+     * Reads a range of a file of a stored job.
+     *
+     * @param stored
+     *            the stored job
+     * @param fileId
+     *            the file id of the FileTrace
+     * @param offset
+     *            the position of the first byte to read
+     * @param length
+     *            the maximum number of bytes to read
+     * @return the bytes read, empty beyond the end of the file, or null if the job contains no
+     *         such file
+     * @throws IOException
+     *             thrown, if the file could not be read
+     */
+    public byte[] readFile(StoredResult stored, long fileId, long offset, int length) throws IOException {
+        return readRange(stored.getFileLocation(fileId), offset, length);
+    }
+
+    private byte[] readRange(Location location, long offset, int length) throws IOException {
+
+        if (location == null) {
+            return null;
+        }
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Invalid range [" + offset + ", " + length + "]");
+        }
+        File file;
+
+        synchronized (this) {
+            file = getFile(location);
+        }
+        byte[] range = new byte[(int) Math.max(0, Math.min(length, location.length - offset))];
+
+        if (range.length == 0) {
+            return range;
+        }
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+
+        try {
+            // records are never rewritten, so the checksum is verified by the first read only
+            if (!location.verified) {
+                verify(in, location, file);
+            }
+            in.seek(location.position + offset);
+            in.readFully(range);
+        } finally {
+            in.close();
+        }
+        return range;
+    }
+
+    private void verify(RandomAccessFile in, Location location, File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[(int) Math.min(CHUNK_SIZE, location.length)];
+        long remaining = location.length;
+        in.seek(location.position);
+
+        while (remaining > 0) {
+            int count = (int) Math.min(chunk.length, remaining);
+            in.readFully(chunk, 0, count);
+            crc.update(chunk, 0, count);
+            remaining -= count;
+        }
+
+        if (crc.getValue() != location.checksum) {
+            throw new IOException("Corrupt record at " + location.position + " in " + file.getAbsolutePath());
+        }
+        location.verified = true;
+    }
+
+    private File getFile(Location location) throws IOException {
+        File file = segments.get(location.segment);
+
+        if (file == null) {
+            throw new IOException("Result segment " + location.segment + " deleted");
+        }
+        return file;
+    }
+
+    /**
+     * Checks whether the result of a job is stored.
+     *
+     * @param jobId
+     *            the job id
+     * @return true, if the result is stored, false otherwise
+     */
+    public synchronized boolean contains(long jobId) {
+        return index.containsKey(jobId);
+    }
+
+    /**
+     * Gets the highest id of the stored jobs.
+     *
+     * @return the highest job id or 0, if no result is stored
+     */
+    public synchronized long getMaxJobId() {
+        long maxJobId = 0;
+
+        for (Long jobId : index.keySet()) {
+            maxJobId = Math.max(maxJobId, jobId);
+        }
+        return maxJobId;
+    }
+
+    /**
+     * Gets the number of bytes of the segment files.
+     *
+     * @return the disk usage
+     */
+    public synchronized long getDiskUsage() {
+        return diskUsage;
+    }
+
+    /**
+     * Rebuilds the index from the segment files. A segment ending with records not committed by
+     * a valid record of their TestExecutionInfo, e.g. after a crash while writing, is truncated
+     * to its last committed job.
+     */
+    private void load() {
+        File[] files = directory.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        segments.put(Integer.valueOf(name.substring(SEGMENT_PREFIX.length(), name.length()
+                                - SEGMENT_SUFFIX.length())), file);
+                    } catch (NumberFormatException ex) {
+                        logger.warning("Unknown file in result store: " + name);
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<Integer, File> entry : segments.entrySet()) {
+            try {
+                diskUsage += scan(entry.getKey(), entry.getValue());
+            } catch (IOException ex) {
+                logger.error(ex, "Could not read result segment " + entry.getValue().getAbsolutePath());
+            }
+            segmentNumber = entry.getKey();
+        }
+        logger.info("ResultStore loaded with " + index.size() + " results in " + segments.size() + " segments");
+    }
+
+    private long scan(int number, File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "rw");
+
+        try {
+            long size = in.length();
+            long position = 0;
+            long committed = 0;
+            Map<Long, PendingJob> pending = new HashMap<Long, PendingJob>();
+
+            while (position + HEADER_SIZE <= size) {
+                in.seek(position);
+                int magic = in.readInt();
+                int type = in.readInt();
+                long jobId = in.readLong();
+                long id = in.readLong();
+                long length = in.readLong();
+                long checksum = in.readLong();
+
+                if (magic != MAGIC || type < IMAGE || type > INFO || length < 0
+                        || position + HEADER_SIZE + length > size) {
+                    break;
+                }
+                Location location = new Location(number, position + HEADER_SIZE, length, checksum);
+                position += HEADER_SIZE + length;
+                PendingJob job = pending.get(jobId);
+
+                if (job == null) {
+                    job = new PendingJob();
+                    pending.put(jobId, job);
+                }
+                if (type == IMAGE) {
+                    job.images.put(id, location);
+                } else if (type == FILE) {
+                    job.files.put(id, location);
+                } else if (type == RESULT) {
+                    job.result = location;
+                } else {
+                    StoredResult stored = readInfo(in, jobId, location, job);
+
+                    if (stored == null) {
+                        break;
+                    }
+                    index.put(jobId, stored);
+                    pending.remove(jobId);
+                    committed = position;
+                }
+            }
+
+            if (committed < size) {
+                logger.warning("Uncommitted records in result segment " + file.getAbsolutePath() + " truncated");
+                in.setLength(committed);
+            }
+            return committed;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads and verifies the record committing a job.
+     *
+     * @return the stored job or null, if the record is corrupt
+     */
+    private StoredResult readInfo(RandomAccessFile in, long jobId, Location location, PendingJob job) {
+
+        if (job.result == null || location.length > MAX_INFO_SIZE) {
+            return null;
+        }
+
+        try {
+            byte[] payload = new byte[(int) location.length];
+            in.seek(location.position);
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            if (crc.getValue() != location.checksum) {
+                return null;
+            }
+            ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(payload));
+            long version = objects.readLong();
+            TestExecutionInfo testExecutionInfo = (TestExecutionInfo) objects.readObject();
+            return new StoredResult(jobId, testExecutionInfo, version, job.result, job.images, job.files);
+        } catch (Exception ex) {
+            logger.warning("Corrupt record of job " + jobId + ": " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private void openSegment(int number) throws IOException {
+
+        if (segment != null) {
+            segment.close();
+            segment = null;
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create result store directory " + directory.getAbsolutePath());
+        }
+        File file = new File(directory, SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+        segment = new RandomAccessFile(file, "rw");
+
+        synchronized (this) {
+            segments.put(number, file);
+            segmentNumber = number;
+        }
+    }
+
+    /**
+     * Deletes the oldest segments and their jobs, while the store exceeds its size. The current
+     * segment is never deleted.
+     */
+    private void deleteOldSegments() {
+
+        while (diskUsage > maxSize && segments.size() > 1) {
+            Map.Entry<Integer, File> oldest = segments.pollFirstEntry();
+            diskUsage -= oldest.getValue().length();
+
+            for (Iterator<Map.Entry<Long, StoredResult>> it = index.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<Long, StoredResult> entry = it.next();
+
+                if (entry.getValue().getResultLocation().segment == oldest.getKey()) {
+                    loaded.remove(entry.getKey());
+                    it.remove();
+                }
+            }
+
+            if (!oldest.getValue().delete()) {
+                logger.warning("Could not delete result segment " + oldest.getValue().getAbsolutePath());
+            }
+            logger.info("Result segment " + oldest.getValue().getName() + " deleted");
+        }
+    }
+
+    /**
+     * The source of the screenshots or files of a result written to the store.
+     */
+    public interface BlobSource {
+
+        /**
+         * Gets the ids of the contents.
+         *
+         * @return the ids
+         */
+        Collection<Long> getIds();
+
+        /**
+         * Reads a range of a content.
+         *
+         * @param id
+         *            the id of the content
+         * @param offset
+         *            the position of the first byte to read
+         * @param length
+         *            the maximum number of bytes to read
+         * @return the bytes read, empty beyond the end of the content, or null if the content
+         *         does not exist
+         */
+        byte[] read(long id, long offset, int length);
+    }
+
+    /**
+     * The location of a record in a segment file.
+     */
+    static final class Location {
+
+        private final int segment;
+
+        private final long position;
+
+        private final long length;
+
+        private final long checksum;
+
+        private volatile boolean verified;
+
+        private Location(int segment, long position, long length, long checksum) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+            this.checksum = checksum;
+        }
+
+        long getLength() {
+            return length;
+        }
+    }
+
+    /**
+     * The records of a job read before the record committing it.
+     */
+    private static final class PendingJob {
+
+        private final Map<Long, Location> images = new HashMap<Long, Location>();
+
+        private final Map<Long, Location> files = new HashMap<Long, Location>();
+
+        private Location result;
+    }
+
+    /**
+     * Counts and checksums the payload of a record. The channel of the segment is never closed.
+     */
+    private static final class RecordOutputStream extends FilterOutputStream {
+
+        private final CRC32 crc = new CRC32();
+
+        private long count;
+
+        private RecordOutputStream(OutputStream out) {
+            super(new BufferedOutputStream(out, CHUNK_SIZE));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            crc.update(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            crc.update(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Reads the payload of a record without reading beyond it.
+     */
+    private static final class BoundedInputStream extends InputStream {
+
+        private final InputStream in;
+
+        private long remaining;
+
+        private BoundedInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.store;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.nabucco.testautomation.engine.execution.store.ResultStore.Location;
+import org.nabucco.testautomation.settings.facade.datatype.engine.TestExecutionInfo;
+
+/**
+ * StoredResult
+ * <p>
+ * A finished job in the {@link ResultStore}: its TestExecutionInfo and the locations of its
+ * TestConfigurationResult and of the screenshots and files referenced by the traces of the
+ * result. The result and its contents are read from the store on request.
+ * 
+ * @author agent
+ */
+public final class StoredResult {
+
+    private final long jobId;
+
+    private final TestExecutionInfo testExecutionInfo;
+
+    private final long version;
+
+    private final Location result;
+
+    private final Map<Long, Location> images;
+
+    private final Map<Long, Location> files;
+
+    /**
+     * Constructs a new StoredResult.
+     * 
+     * @param jobId
+     *            the id of the job
+     * @param testExecutionInfo
+     *            the TestExecutionInfo of the finished job
+     * @param version
+     *            the version of the latest change of the result
+     * @param result
+     *            the location of the TestConfigurationResult
+     * @param images
+     *            the locations of the screenshots by their image ids
+     * @param files
+     *            the locations of the files by their file ids
+     */
+    StoredResult(long jobId, TestExecutionInfo testExecutionInfo, long version, Location result,
+            Map<Long, Location> images, Map<Long, Location> files) {
+        this.jobId = jobId;
+        this.testExecutionInfo = testExecutionInfo;
+        this.version = version;
+        this.result = result;
+        this.images = new HashMap<Long, Location>(images);
+        this.files = new HashMap<Long, Location>(files);
+    }
+
+    public long getJobId() {
+        return jobId;
+    }
+
+    public TestExecutionInfo getTestExecutionInfo() {
+        return testExecutionInfo;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the ids of the screenshots of the result.
+     * 
+     * @return the image ids
+     */
+    public Set<Long> getImageIds() {
+        return Collections.unmodifiableSet(images.keySet());
+    }
+
+    /**
+     * Gets the ids of the files of the result.
+     * 
+     * @return the file ids
+     */
+    public Set<Long> getFileIds() {
+        return Collections.unmodifiableSet(files.keySet());
+    }
+
+    /**
+     * Gets the length of a screenshot of the result.
+     * 
+     * @param imageId
+     *            the image id of the ScreenshotTrace
+     * @return the length in bytes or -1, if the result contains no such screenshot
+     */
+    public long getImageLength(long imageId) {
+        Location location = images.get(imageId);
+        return location != null ? location.getLength() : -1;
+    }
+
+    /**
+     * Gets the length of a file of the result.
+     * 
+     * @param fileId
+     *            the file id of the FileTrace
+     * @return the length in bytes or -1, if the result contains no such file
+     */
+    public long getFileLength(long fileId) {
+        Location location = files.get(fileId);
+        return location != null ? location.getLength() : -1;
+    }
+
+    Location getResultLocation() {
+        return result;
+    }
+
+    Location getImageLocation(long imageId) {
+        return images.get(imageId);
+    }
+
+    Location getFileLocation(long fileId) {
+        return files.get(fileId);
+    }
+
+}
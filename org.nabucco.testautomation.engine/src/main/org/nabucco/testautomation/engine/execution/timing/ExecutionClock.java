@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.timing;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExecutionClock
+ * <p>
+ * Monotonic clock of the engine based on {@link System#nanoTime()}. Ticks are anchored to the
+ * wall-clock once, so durations are not affected by clock adjustments and wall-clock times
+ * remain comparable between all jobs of the engine.
+ * 
+ * @author agent
+ */
+public final class ExecutionClock {
+
+    private static final long ANCHOR_MILLIS = System.currentTimeMillis();
+
+    private static final long ANCHOR_TICKS = System.nanoTime();
+
+    private ExecutionClock() {
+    }
+
+    /**
+     * Gets the current ticks of the clock. Ticks are only meaningful relative to other ticks.
+     * 
+     * @return the current ticks in nanoseconds
+     */
+    public static long ticks() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Gets the current time in milliseconds. The time never goes backwards, unlike
+     * {@link System#currentTimeMillis()}.
+     * 
+     * @return the current time in milliseconds since the epoch
+     */
+    public static long currentTimeMillis() {
+        return toMillis(System.nanoTime());
+    }
+
+    /**
+     * Converts ticks to the wall-clock time.
+     * 
+     * @param ticks
+     *            the ticks
+     * @return the time in milliseconds since the epoch
+     */
+    public static long toMillis(long ticks) {
+        return ANCHOR_MILLIS + TimeUnit.NANOSECONDS.toMillis(ticks - ANCHOR_TICKS);
+    }
+
+    /**
+     * Converts ticks to a wall-clock Date.
+     * 
+     * @param ticks
+     *            the ticks
+     * @return the Date
+     */
+    public static Date toDate(long ticks) {
+        return new Date(toMillis(ticks));
+    }
+
+    /**
+     * Gets the milliseconds elapsed between two ticks.
+     * 
+     * @param startTicks
+     *            the ticks at the start
+     * @param endTicks
+     *            the ticks at the end
+     * @return the elapsed milliseconds
+     */
+    public static long elapsedMillis(long startTicks, long endTicks) {
+        return TimeUnit.NANOSECONDS.toMillis(endTicks - startTicks);
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.timing;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.nabucco.testautomation.engine.base.context.TestContext;
+import org.nabucco.testautomation.engine.execution.job.TestExecutionJob;
+import org.nabucco.testautomation.result.facade.datatype.TestConfigurationResult;
+import org.nabucco.testautomation.result.facade.datatype.TestResult;
+import org.nabucco.testautomation.result.facade.datatype.TestScriptResult;
+
+/**
+ * ResultTimings
+ * <p>
+ * Collects the start and end ticks of the results of a job. The duration is set on the result
+ * at once, the wall-clock Dates are only created when the results are finalized by
+ * {@link #materialize()}. Results recorded outside of a job get their Dates immediately.
+ * 
+ * @author agent
+ */
+public final class ResultTimings {
+
+    private static final ResultTimings IMMEDIATE = new ResultTimings(false);
+
+    private final boolean deferred;
+
+    private final Map<Object, Span> spans = new IdentityHashMap<Object, Span>();
+
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Constructs new ResultTimings deferring the Dates until {@link #materialize()}.
+     */
+    public ResultTimings() {
+        this(true);
+    }
+
+    private ResultTimings(boolean deferred) {
+        this.deferred = deferred;
+    }
+
+    /**
+     * Gets the ResultTimings of the job executing in the given TestContext.
+     * 
+     * @param context
+     *            the TestContext
+     * @return the ResultTimings of the job, or ResultTimings creating the Dates immediately
+     */
+    public static ResultTimings getInstance(TestContext context) {
+
+        if (context != null && context.getExecutionController() instanceof TestExecutionJob) {
+            return ((TestExecutionJob) context.getExecutionController()).getResultTimings();
+        }
+        return IMMEDIATE;
+    }
+
+    /**
+     * Records the start and the end of a result.
+     * 
+     * @param result
+     *            a TestConfigurationResult, TestResult or TestScriptResult
+     * @param startTicks
+     *            the ticks at the start
+     * @param endTicks
+     *            the ticks at the end
+     * @return the duration in milliseconds
+     */
+    public long record(Object result, long startTicks, long endTicks) {
+        return record(result, new Span(startTicks, endTicks, true));
+    }
+
+    /**
+     * Records the end of a result, the start of the result remains unchanged.
+     * 
+     * @param result
+     *            a TestConfigurationResult, TestResult or TestScriptResult
+     * @param startTicks
+     *            the ticks the duration is measured from
+     * @param endTicks
+     *            the ticks at the end
+     * @return the duration in milliseconds
+     */
+    public long recordEnd(Object result, long startTicks, long endTicks) {
+        return record(result, new Span(startTicks, endTicks, false));
+    }
+
+    private long record(Object result, Span span) {
+        long duration = ExecutionClock.elapsedMillis(span.start, span.end);
+        setDuration(result, duration);
+
+        if (!deferred) {
+            apply(result, span);
+            return duration;
+        }
+
+        lock.lock();
+        try {
+            Span previous = spans.put(result, span);
+
+            // keep a start recorded before
+            if (!span.withStart && previous != null && previous.withStart) {
+                spans.put(result, new Span(previous.start, span.end, true));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return duration;
+    }
+
+    /**
+     * Sets the start and end Dates of all recorded results.
+     */
+    public void materialize() {
+        lock.lock();
+        try {
+            for (Map.Entry<Object, Span> entry : spans.entrySet()) {
+                apply(entry.getKey(), entry.getValue());
+            }
+            spans.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void setDuration(Object result, long duration) {
+
+        if (result instanceof TestResult) {
+            ((TestResult) result).setDuration(duration);
+        } else if (result instanceof TestScriptResult) {
+            ((TestScriptResult) result).setDuration(duration);
+        } else if (result instanceof TestConfigurationResult) {
+            ((TestConfigurationResult) result).setDuration(duration);
+        }
+    }
+
+    private static void apply(Object result, Span span) {
+
+        if (result instanceof TestResult) {
+            TestResult testResult = (TestResult) result;
+            if (span.withStart) {
+                testResult.setStartTime(ExecutionClock.toDate(span.start));
+            }
+            testResult.setEndTime(ExecutionClock.toDate(span.end));
+        } else if (result instanceof TestScriptResult) {
+            TestScriptResult testScriptResult = (TestScriptResult) result;
+            if (span.withStart) {
+                testScriptResult.setStartTime(ExecutionClock.toDate(span.start));
+            }
+            testScriptResult.setEndTime(ExecutionClock.toDate(span.end));
+        } else if (result instanceof TestConfigurationResult) {
+            TestConfigurationResult testConfigurationResult = (TestConfigurationResult) result;
+            if (span.withStart) {
+                testConfigurationResult.setStartTime(ExecutionClock.toDate(span.start));
+            }
+            testConfigurationResult.setEndTime(ExecutionClock.toDate(span.end));
+        }
+    }
+
+    /**
+     * Start and end ticks of a result.
+     */
+    private static final class Span {
+
+        private final long start;
+
+        private final long end;
+
+        private final boolean withStart;
+
+        private Span(long start, long end, boolean withStart) {
+            this.start = start;
+            this.end = end;
+            this.withStart = withStart;
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.watchdog;
+
+/**
+ * ExecutionMonitor
+ * <p>
+ * Receives the progress of an execution, so the {@link TestExecutionWatchdog} can detect
+ * stalled executions and expired action deadlines.
+ * 
+ * @author agent
+ */
+public interface ExecutionMonitor {
+
+    /**
+     * Records progress of the execution.
+     */
+    void progress();
+
+    /**
+     * Records the start of an Action.
+     * 
+     * @param actionName
+     *            the name of the Action
+     * @param timeout
+     *            the maximum duration of the Action in milliseconds, 0 for no limit
+     */
+    void actionStarted(String actionName, long timeout);
+
+    /**
+     * Records the end of the current Action.
+     */
+    void actionFinished();
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.watchdog;
+
+import java.math.BigDecimal;
+
+import org.nabucco.framework.base.facade.datatype.Name;
+import org.nabucco.framework.base.facade.datatype.logger.NabuccoLogger;
+import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
+import org.nabucco.testautomation.engine.base.context.TestContext;
+import org.nabucco.testautomation.property.facade.datatype.base.Property;
+import org.nabucco.testautomation.property.facade.datatype.util.PropertyHelper;
+
+/**
+ * ExecutionTimeouts
+ * <p>
+ * Names of the TestContext properties defining the timeouts of an execution. All timeouts are
+ * given in milliseconds.
+ * 
+ * @author agent
+ */
+public final class ExecutionTimeouts {
+
+    private static final NabuccoLogger logger = NabuccoLoggingFactory.getInstance().getLogger(
+            ExecutionTimeouts.class);
+
+    /**
+     * The maximum duration of the whole job.
+     */
+    public static final String JOB_TIMEOUT = "JOB_TIMEOUT";
+
+    /**
+     * The maximum duration of a single Action.
+     */
+    public static final String ACTION_TIMEOUT = "ACTION_TIMEOUT";
+
+    /**
+     * The maximum duration without any progress of the job.
+     */
+    public static final String STALL_TIMEOUT = "STALL_TIMEOUT";
+
+    private ExecutionTimeouts() {
+    }
+
+    /**
+     * Gets a timeout from the TestContext.
+     * 
+     * @param context
+     *            the TestContext
+     * @param name
+     *            the name of the timeout property
+     * @return the timeout in milliseconds, or 0 if no valid timeout is defined
+     */
+    public static long getTimeout(TestContext context, String name) {
+
+        if (context == null) {
+            return 0;
+        }
+        Property property = context.getProperty(new Name(name));
+
+        if (property == null) {
+            return 0;
+        }
+        String value = PropertyHelper.toString(property);
+
+        try {
+            return Math.max(new BigDecimal(value.trim()).longValue(), 0);
+        } catch (RuntimeException ex) {
+            logger.warning("Invalid value of ", name, " in TestContext: ", value);
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.watchdog;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.nabucco.framework.base.facade.datatype.logger.NabuccoLogger;
+import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
+import org.nabucco.testautomation.engine.execution.job.TestExecutionJob;
+import org.nabucco.testautomation.engine.execution.timing.ExecutionClock;
+
+/**
+ * TestExecutionWatchdog
+ * <p>
+ * Periodically checks the running jobs for expired job or action deadlines and for executions
+ * without progress, and interrupts them.
+ * 
+ * @author agent
+ */
+public final class TestExecutionWatchdog implements Runnable {
+
+    private static final NabuccoLogger logger = NabuccoLoggingFactory.getInstance().getLogger(
+            TestExecutionWatchdog.class);
+
+    private final List<TestExecutionJob> running;
+
+    private final long interval;
+
+    private final long defaultStallTimeout;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs a new TestExecutionWatchdog.
+     * 
+     * @param running
+     *            the running jobs, the list must be safe for concurrent iteration
+     * @param interval
+     *            the interval of the checks in milliseconds
+     * @param defaultStallTimeout
+     *            the maximum duration without progress of jobs not defining a STALL_TIMEOUT, 0
+     *            for no limit
+     */
+    public TestExecutionWatchdog(List<TestExecutionJob> running, long interval, long defaultStallTimeout) {
+        this.running = running;
+        this.interval = interval;
+        this.defaultStallTimeout = defaultStallTimeout;
+    }
+
+    /**
+     * Starts the periodic checks.
+     */
+    public synchronized void start() {
+
+        if (scheduler != null || interval <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "TestExecutionWatchdog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(this, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic checks.
+     */
+    public synchronized void stop() {
+
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        long now = ExecutionClock.currentTimeMillis();
+
+        for (TestExecutionJob job : running) {
+            try {
+                String reason = job.checkTimeout(now, defaultStallTimeout);
+
+                if (reason != null) {
+                    job.timeout(reason);
+                }
+            } catch (RuntimeException ex) {
+                // never let the scheduled task die
+                logger.error(ex, "Could not check timeout of job " + job.getId());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.launcher;
+
+import org.nabucco.testautomation.engine.execution.TestExecutionService;
+
+/**
+ * TestEngineAdmin
+ * 
+ * @author agent
+ */
+public class TestEngineAdmin implements TestEngineAdminMBean {
+
+    private final TestExecutionService service;
+
+    /**
+     * Constructs a new TestEngineAdmin for the given {@link TestExecutionService}.
+     * 
+     * @param service
+     *            the managed service
+     */
+    public TestEngineAdmin(TestExecutionService service) {
+        this.service = service;
+    }
+
+    @Override
+    public int getJobSlots() {
+        return this.service.getJobSlots();
+    }
+
+    @Override
+    public void setJobSlots(int jobSlots) {
+        this.service.setJobSlots(jobSlots);
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return this.service.getQueueCapacity();
+    }
+
+    @Override
+    public void setQueueCapacity(int capacity) {
+        this.service.setQueueCapacity(capacity);
+    }
+
+    @Override
+    public boolean isDraining() {
+        return this.service.isDraining();
+    }
+
+}
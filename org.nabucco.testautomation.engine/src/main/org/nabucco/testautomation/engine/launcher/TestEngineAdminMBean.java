@@ -0,0 +1,66 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.launcher;
+
+/**
+ * TestEngineAdminMBean
+ * <p>
+ * Management interface of a running TestEngine, registered at the platform MBeanServer by the
+ * {@link TestEngineLauncher}.
+ * 
+ * @author agent
+ */
+public interface TestEngineAdminMBean {
+
+    /**
+     * Gets the number of job slots, i.e. the number of TestConfigurations executed concurrently.
+     * 
+     * @return the number of job slots
+     */
+    int getJobSlots();
+
+    /**
+     * Changes the number of job slots.
+     * 
+     * @param jobSlots
+     *            the new number of job slots, at least 1
+     */
+    void setJobSlots(int jobSlots);
+
+    /**
+     * Gets the maximum number of jobs waiting for a free job slot.
+     * 
+     * @return the queue capacity
+     */
+    int getQueueCapacity();
+
+    /**
+     * Changes the maximum number of jobs waiting for a free job slot.
+     * 
+     * @param capacity
+     *            the new queue capacity, at least 0
+     */
+    void setQueueCapacity(int capacity);
+
+    /**
+     * Checks whether the TestEngine stopped accepting new jobs.
+     * 
+     * @return true, if the TestEngine is draining
+     */
+    boolean isDraining();
+
+}
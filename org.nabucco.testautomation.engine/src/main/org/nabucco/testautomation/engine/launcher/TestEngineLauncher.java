@@ -20,13 +20,19 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
 import java.rmi.NotBoundException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.Deflater;
+
+import javax.management.ObjectName;
 
 import org.nabucco.framework.base.facade.datatype.logger.NabuccoLogger;
 import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
@@ -34,9 +40,11 @@ import org.nabucco.testautomation.engine.TestEngine;
 import org.nabucco.testautomation.engine.TestEngineFactory;
 import org.nabucco.testautomation.engine.base.net.TestEngineConnectionFactory;
 import org.nabucco.testautomation.engine.deploy.Deployer;
+import org.nabucco.testautomation.engine.execution.ExecutionMode;
 import org.nabucco.testautomation.engine.execution.TestExecutionService;
 import org.nabucco.testautomation.engine.execution.TestExecutionServiceFactory;
 import org.nabucco.testautomation.engine.launcher.exception.LaunchingException;
+import org.nabucco.testautomation.engine.net.TestEngineSocketFactory;
 import org.nabucco.testautomation.settings.facade.exception.engine.TestEngineException;
 
 /**
@@ -51,6 +59,32 @@ public class TestEngineLauncher {
 
     private static final String DEPLOY_PATH = "./deploy";
 
+    private static final String DRAIN = "drain";
+
+    private static final String SLOTS = "slots";
+
+    private static final String QUEUE = "queue";
+
+    private static final String EXPORT_PORT = "-exportPort=";
+
+    private static final String BUFFER_SIZE = "-bufferSize=";
+
+    private static final String COMPRESSION = "-compression=";
+
+    private static final String COMPRESSION_LEVEL = "-compressionLevel=";
+
+    private static final String MBEAN_NAME = "org.nabucco.testautomation.engine:type=TestEngine,name=";
+
+    /**
+     * The default time in minutes the running and queued jobs may take to finish while draining.
+     */
+    private static final long DRAIN_TIMEOUT = 8 * 60;
+
+    /**
+     * The time in milliseconds the jobs stopped after the drain timeout may take to terminate.
+     */
+    private static final long KILL_TIMEOUT = 60 * 1000;
+
     private static final Lock lock = new ReentrantLock();
 
     private static final Condition delay = lock.newCondition();
@@ -69,6 +103,10 @@ public class TestEngineLauncher {
 
     private TestExecutionService service;
 
+    private ObjectName adminName;
+
+    private boolean stopped = false;
+
     public TestEngineLauncher(int port, String bindingName, File deployPath) {
         this.port = port;
         this.bindingName = bindingName;
@@ -81,9 +119,13 @@ public class TestEngineLauncher {
         logger.info("Starting TestEngine ...");
         try {
             this.service = TestExecutionServiceFactory.getInstance().createTestExecutionService();
-            logger.info("TestExecutionService initialized with thread pool size: "
-                    + TestExecutionServiceFactory.THREAD_POOL_SIZE);
+            logger.info("TestExecutionService initialized with job slots: " + this.service.getJobSlots() + " ("
+                    + TestExecutionServiceFactory.EXECUTION_MODE + ")");
             this.testEngine = TestEngineFactory.getInstance().createTestEngine(this.service);
+            logger.info("TestEngine exported on port " + TestEngineFactory.EXPORT_PORT + " with socket buffer size: "
+                    + TestEngineFactory.SOCKET_BUFFER_SIZE + ", compression threshold: "
+                    + TestEngineFactory.COMPRESSION_THRESHOLD + ", compression level: "
+                    + TestEngineFactory.COMPRESSION_LEVEL);
         } catch (TestEngineException ex) {
             throw new LaunchingException("Could not create TestEngine-instance", ex);
         }
@@ -91,13 +133,32 @@ public class TestEngineLauncher {
 
         this.deployer = new Deployer(deployPath);
         this.deployer.deploy();
+        registerAdmin();
 
         logger.info("TestEngine started");
     }
 
-    public void stop() {
+    public synchronized void stop() {
+
+        if (this.stopped) {
+            return;
+        }
+        this.stopped = true;
         logger.info("Stopping TestEngine ...");
+
+        if (!this.service.isDraining()) {
+            this.service.drain();
+        }
+
+        // jobs stopped by the shutdown keep their checkpoints, they can be resumed after a restart
+        if (!this.service.awaitIdle(0)) {
+            logger.info("Suspending current Jobs ...");
+            this.service.suspendExecutions();
+            this.service.awaitIdle(KILL_TIMEOUT);
+        }
+        this.service.shutdown(KILL_TIMEOUT);
         this.deployer.undeploy();
+        unregisterAdmin();
 
         try {
             this.registry.unbind(bindingName);
@@ -109,6 +170,25 @@ public class TestEngineLauncher {
         logger.info("TestEngine stopped");
     }
 
+    /**
+     * Stops accepting new jobs and waits for the running and queued jobs to finish before the
+     * TestEngine is stopped. Jobs not finished within the timeout are stopped.
+     * 
+     * @param timeout
+     *            the maximum time in milliseconds to wait for the jobs
+     */
+    public void drain(long timeout) {
+        logger.info("Draining TestEngine ...");
+        this.service.drain();
+
+        if (this.service.awaitIdle(timeout)) {
+            logger.info("All jobs finished");
+        } else {
+            logger.warning("Jobs not finished within " + timeout + " ms");
+        }
+        stop();
+    }
+
     public void pause() {
         logger.info("Pausing current Jobs ...");
 
@@ -139,15 +219,73 @@ public class TestEngineLauncher {
         logger.info("Stopping current Jobs ...");
 
         try {
-            for (long jobId : this.service.getRunningJobs()) {
-                this.service.stopExecution(jobId);
-            }
+            this.service.stopExecutions(new ArrayList<Long>(this.service.getRunningJobs()));
             logger.info("All jobs stopped");
         } catch (Exception e) {
             logger.error(e);
         }
     }
 
+    /**
+     * Changes the number of job slots of the running TestEngine.
+     * 
+     * @param jobSlots
+     *            the new number of job slots
+     */
+    public void setJobSlots(int jobSlots) {
+
+        try {
+            this.service.setJobSlots(jobSlots);
+        } catch (IllegalArgumentException e) {
+            logger.warning(e.getMessage());
+        }
+    }
+
+    /**
+     * Changes the maximum number of queued jobs of the running TestEngine.
+     * 
+     * @param capacity
+     *            the new queue capacity
+     */
+    public void setQueueCapacity(int capacity) {
+
+        try {
+            this.service.setQueueCapacity(capacity);
+        } catch (IllegalArgumentException e) {
+            logger.warning(e.getMessage());
+        }
+    }
+
+    /*
+     * registers the TestEngineAdmin at the platform MBeanServer, so job slots and queue capacity
+     * can be changed via JMX
+     */
+    private void registerAdmin() {
+
+        try {
+            this.adminName = new ObjectName(MBEAN_NAME + ObjectName.quote(this.bindingName));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new TestEngineAdmin(this.service),
+                    this.adminName);
+            logger.info("TestEngineAdmin registered as '" + this.adminName + "'");
+        } catch (Exception ex) {
+            this.adminName = null;
+            logger.warning(ex, "Could not register TestEngineAdmin");
+        }
+    }
+
+    private void unregisterAdmin() {
+
+        if (this.adminName == null) {
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.adminName);
+        } catch (Exception ex) {
+            logger.warning(ex, "Could not unregister TestEngineAdmin");
+        }
+    }
+
     /*
      * exports the TestEngine interface, so it available via RMI under the defined name in
      * bindingName
@@ -166,9 +304,10 @@ public class TestEngineLauncher {
     }
 
     public static void main(String[] args) {
+        args = parseOptions(args);
 
         // check args
-        if (args.length != 2) {
+        if (args.length < 2 || args.length > 4) {
             printUsage();
         }
         String arg = args[0];
@@ -181,6 +320,33 @@ public class TestEngineLauncher {
             printUsage();
         }
         String bindingName = args[1];
+
+        if (args.length == 4) {
+            if (args[3].equalsIgnoreCase("virtual")) {
+                TestExecutionServiceFactory.EXECUTION_MODE = ExecutionMode.VIRTUAL_THREADS;
+            } else if (args[3].equalsIgnoreCase("platform")) {
+                TestExecutionServiceFactory.EXECUTION_MODE = ExecutionMode.PLATFORM_THREADS;
+            } else {
+                logger.fatal("Unknown kind of threads: " + args[3]);
+                printUsage();
+            }
+        }
+
+        if (args.length >= 3) {
+            try {
+                int jobSlots = Integer.parseInt(args[2]);
+
+                // virtual threads have job slots of their own
+                if (TestExecutionServiceFactory.EXECUTION_MODE == ExecutionMode.VIRTUAL_THREADS) {
+                    TestExecutionServiceFactory.VIRTUAL_JOB_SLOTS = jobSlots;
+                } else {
+                    TestExecutionServiceFactory.THREAD_POOL_SIZE = jobSlots;
+                }
+            } catch (NumberFormatException e) {
+                logger.fatal("Could not parse number of job slots: " + args[2]);
+                printUsage();
+            }
+        }
         File deployPath = new File(DEPLOY_PATH);
 
         if (!deployPath.exists()) {
@@ -218,6 +384,41 @@ public class TestEngineLauncher {
                     continue;
                 } else if (command.equals("stop")) {
                     break;
+                } else if (command.startsWith(DRAIN)) {
+                    long timeout = DRAIN_TIMEOUT;
+                    String minutes = command.substring(DRAIN.length()).trim();
+
+                    if (minutes.length() > 0) {
+                        try {
+                            timeout = Long.parseLong(minutes);
+                        } catch (NumberFormatException e) {
+                            logger.warning("Could not parse drain timeout: " + minutes);
+                            continue;
+                        }
+                    }
+                    launcher.drain(TimeUnit.MINUTES.toMillis(timeout));
+                    break;
+                } else if (command.startsWith(SLOTS) || command.startsWith(QUEUE)) {
+                    String[] tokens = command.trim().split("\\s+");
+
+                    if (tokens.length != 2) {
+                        logger.warning("Unknown command: " + command);
+                        continue;
+                    }
+
+                    try {
+                        int size = Integer.parseInt(tokens[1]);
+
+                        if (tokens[0].equals(SLOTS)) {
+                            launcher.setJobSlots(size);
+                        } else if (tokens[0].equals(QUEUE)) {
+                            launcher.setQueueCapacity(size);
+                        } else {
+                            logger.warning("Unknown command: " + command);
+                        }
+                    } catch (NumberFormatException e) {
+                        logger.warning("Could not parse size: " + tokens[1]);
+                    }
                 } else if (command.equals("pause")) {
                     launcher.pause();
                 } else if (command.equals("kill")) {
@@ -234,13 +435,67 @@ public class TestEngineLauncher {
         System.exit(0);
     }
 
+    /*
+     * applies the transport options to the TestEngineFactory and returns the remaining arguments
+     */
+    private static String[] parseOptions(String[] args) {
+        List<String> arguments = new ArrayList<String>();
+
+        for (String arg : args) {
+            if (arg.startsWith(EXPORT_PORT)) {
+                TestEngineFactory.EXPORT_PORT = parseOption(arg, EXPORT_PORT);
+            } else if (arg.startsWith(BUFFER_SIZE)) {
+                TestEngineFactory.SOCKET_BUFFER_SIZE = parseOption(arg, BUFFER_SIZE);
+            } else if (arg.startsWith(COMPRESSION)) {
+                TestEngineFactory.COMPRESSION_THRESHOLD = parseOption(arg, COMPRESSION);
+            } else if (arg.startsWith(COMPRESSION_LEVEL)) {
+                TestEngineFactory.COMPRESSION_LEVEL = parseOption(arg, COMPRESSION_LEVEL);
+            } else if (arg.startsWith("-")) {
+                logger.fatal("Unknown option: " + arg);
+                printUsage();
+            } else {
+                arguments.add(arg);
+            }
+        }
+        return arguments.toArray(new String[arguments.size()]);
+    }
+
+    private static int parseOption(String arg, String option) {
+
+        try {
+            return Integer.parseInt(arg.substring(option.length()));
+        } catch (NumberFormatException e) {
+            logger.fatal("Could not parse option: " + arg);
+            printUsage();
+            return 0;
+        }
+    }
+
     private static void printUsage() {
         System.out.println("Usage:");
-        System.out.println("TestEngineLauncher <port> <bindingName>");
+        System.out.println("TestEngineLauncher [<options>] <port> <bindingName> [<jobSlots> [<threads>]]");
         System.out.println();
         System.out.println("Arguments:");
         System.out.println("<port> = the RMI-Port");
         System.out.println("<bindingName> = the jndi-name of the bound TestEngine");
+        System.out.println("<jobSlots> = the number of TestConfigurations executed concurrently (default: 1, virtual: "
+                + TestExecutionServiceFactory.VIRTUAL_JOB_SLOTS + ")");
+        System.out.println("<threads> = 'platform' or 'virtual', the kind of threads executing the jobs (default: platform)");
+        System.out.println();
+        System.out.println("Options:");
+        System.out.println(EXPORT_PORT + "<port> = the port the TestEngine is exported on (default: anonymous)");
+        System.out.println(BUFFER_SIZE + "<bytes> = the size of the socket buffers, 0 for the system default (default: "
+                + TestEngineSocketFactory.DEFAULT_BUFFER_SIZE + ")");
+        System.out.println(COMPRESSION + "<bytes> = the size of the transferred frames deflated at least, 0 disables compression (default: 0)");
+        System.out.println(COMPRESSION_LEVEL + "<level> = the level of the compression, 1 to 9 (default: "
+                + Deflater.BEST_SPEED + ")");
+        System.out.println("Clients of a compressing TestEngine need the TestEngine interface classes of this version.");
+        System.out.println();
+        System.out.println("Commands:");
+        System.out.println("stop | pause | resume | kill");
+        System.out.println("drain [<minutes>] = finishes running and queued jobs, then stops (default: " + DRAIN_TIMEOUT + ")");
+        System.out.println("slots <n> = changes the number of job slots");
+        System.out.println("queue <n> = changes the maximum number of queued jobs");
         System.out.println();
         System.exit(0);
     }
@@ -16,8 +16,10 @@
  */
 package org.nabucco.testautomation.engine.semaphore;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
@@ -41,8 +43,11 @@ public class SynchronizationSemaphoreMap {
 
     private Map<String, Semaphore> semaphoreMap;
 
+    private Map<String, Thread> ownerMap;
+
     private SynchronizationSemaphoreMap() {
         this.semaphoreMap = Collections.synchronizedMap(new HashMap<String, Semaphore>());
+        this.ownerMap = Collections.synchronizedMap(new HashMap<String, Thread>());
     }
 
     /**
@@ -85,6 +90,7 @@ public class SynchronizationSemaphoreMap {
 
             // try to acquire lock for this id
             if (sem.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                this.ownerMap.put(id, Thread.currentThread());
                 logger.debug("Accuired Semaphore for id '", id, "' at " + System.currentTimeMillis());
             } else {
                 // false returned -> waiting time elapsed
@@ -106,6 +112,31 @@ public class SynchronizationSemaphoreMap {
      */
     public final void releaseLock(String id) {
         Semaphore sem = this.semaphoreMap.get(id);
+        this.ownerMap.remove(id);
         sem.release();
     }
+
+    /**
+     * Releases all locks acquired by the given thread, e.g. when the execution of a job running
+     * in this thread is cancelled.
+     * 
+     * @param owner
+     *            the thread which acquired the locks
+     */
+    public final void releaseLocks(Thread owner) {
+        List<String> ids = new ArrayList<String>();
+
+        synchronized (ownerMap) {
+            for (Map.Entry<String, Thread> entry : this.ownerMap.entrySet()) {
+                if (entry.getValue() == owner) {
+                    ids.add(entry.getKey());
+                }
+            }
+        }
+
+        for (String id : ids) {
+            logger.warning("Releasing Semaphore for id '", id, "' still held by ", owner.getName());
+            releaseLock(id);
+        }
+    }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.sub;
+
+import org.nabucco.testautomation.config.facade.datatype.TestConfigElement;
+import org.nabucco.testautomation.engine.base.context.TestContext;
+import org.nabucco.testautomation.engine.visitor.config.DependencyGraph;
+import org.nabucco.testautomation.result.facade.datatype.TestResult;
+import org.nabucco.testautomation.settings.facade.exception.engine.TestEngineException;
+
+/**
+ * DependencyAwareTestConfigElementEngine
+ * <p>
+ * A TestConfigElementEngine checking the dependencies of a TestConfigElement against the
+ * {@link DependencyGraph} of its siblings instead of the preceding TestResults.
+ * 
+ * @author agent
+ */
+public interface DependencyAwareTestConfigElementEngine extends TestConfigElementEngine {
+
+    /**
+     * Executes a TestConfigElement.
+     * 
+     * @param testConfigElement
+     *            the TestConfigElement to execute
+     * @param context
+     *            the TestContext
+     * @param parentResult
+     *            the TestResult of the parent
+     * @param dependencyGraph
+     *            the dependencies of the TestConfigElement and its siblings
+     * @return the TestResult of the TestConfigElement
+     * @throws TestEngineException
+     *             thrown, if the TestConfigElement cannot be executed
+     */
+    TestResult executeTestConfigElement(TestConfigElement testConfigElement, TestContext context,
+            TestResult parentResult, DependencyGraph dependencyGraph) throws TestEngineException;
+
+}
@@ -16,12 +16,9 @@
  */
 package org.nabucco.testautomation.engine.sub;
 
-import java.util.Date;
 import java.util.List;
-import java.util.UUID;
 
 import org.nabucco.framework.base.facade.datatype.Data;
-import org.nabucco.framework.base.facade.datatype.Identifier;
 import org.nabucco.framework.base.facade.datatype.image.ImageData;
 import org.nabucco.framework.base.facade.datatype.logger.NabuccoLogger;
 import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
@@ -30,8 +27,11 @@ import org.nabucco.testautomation.engine.base.client.ClientInteraction;
 import org.nabucco.testautomation.engine.base.client.ManualTestResultInput;
 import org.nabucco.testautomation.engine.base.context.TestContext;
 import org.nabucco.testautomation.engine.base.util.TestResultHelper;
-import org.nabucco.testautomation.engine.proxy.cache.DataCache;
-import org.nabucco.testautomation.engine.proxy.cache.ImageCache;
+import org.nabucco.testautomation.engine.execution.blob.TraceStore;
+import org.nabucco.testautomation.engine.execution.delta.ResultVersions;
+import org.nabucco.testautomation.engine.execution.job.TestExecutionJob;
+import org.nabucco.testautomation.engine.execution.timing.ExecutionClock;
+import org.nabucco.testautomation.engine.execution.timing.ResultTimings;
 import org.nabucco.testautomation.property.facade.datatype.base.HierarchyLevelType;
 import org.nabucco.testautomation.property.facade.datatype.base.Property;
 import org.nabucco.testautomation.result.facade.datatype.TestResult;
@@ -81,7 +81,11 @@ public class ManualTestConfigElementEngineImpl implements TestConfigElementEngin
         }
 
         // Create ManualResult
-        TestResult orgResult = parentTestResultList.remove(parentTestResultList.size() - 1).getResult();
+        ResultVersions versions = ResultVersions.getInstance(context);
+        TestResult orgResult = versions.remove(parentTestResultList, parentTestResultList.size() - 1).getResult();
+
+        // the removed result is sent with index -1, so clients drop it
+        versions.changed(orgResult);
         ManualTestResult manualResult = TestResultHelper.createManualTestResult(orgResult);
 
         // Apply runtime information to ManualResult
@@ -89,13 +93,15 @@ public class ManualTestConfigElementEngineImpl implements TestConfigElementEngin
         manualResult.setContextSnapshot(this.createContextSnapshot(context));
         attachActionTraces(manualResult, parentResult);
 
-        TestResultHelper.addTestResult(manualResult, parentResult);
+        versions.addTestResult(manualResult, parentResult);
+        versions.changed(manualResult, parentResult);
 
         // wait for user input
         logger.info("Waiting for ManualTestResult ...");
-        long start = System.currentTimeMillis();
+        ResultTimings timings = ResultTimings.getInstance(context);
+        long start = ExecutionClock.ticks();
         ClientInteraction userInput = context.getExecutionController().receiveClientInteraction();
-        long end = System.currentTimeMillis();
+        long end = ExecutionClock.ticks();
 
         if (userInput != null && userInput instanceof ManualTestResultInput) {
 
@@ -115,7 +121,7 @@ public class ManualTestConfigElementEngineImpl implements TestConfigElementEngin
                 receivedResult.setUserErrorMessage("'"
                         + testConfigElement.getIdentificationKey() + "' aborted by user");
                 context.getTestConfigurationResult().setStatus(TestConfigurationStatusType.CANCELLED);
-                finalizeResult(parentResult, manualResult, start, end, receivedResult);
+                finalizeResult(parentResult, manualResult, context, timings, versions, start, end, receivedResult);
                 logger.info("Input of ManualTestResult aborted");
                 context.getExecutionController().tryInterruption();
             } else {
@@ -128,7 +134,7 @@ public class ManualTestConfigElementEngineImpl implements TestConfigElementEngin
             // Update Properties
             updateCurrentProperties(receivedResult.getPropertyList(), context);
 
-            finalizeResult(parentResult, manualResult, start, end, receivedResult);
+            finalizeResult(parentResult, manualResult, context, timings, versions, start, end, receivedResult);
         } else {
             manualResult.setStatus(TestConfigElementStatusType.FAILED);
             manualResult.setUserErrorMessage("No UserInput received");
@@ -140,37 +146,69 @@ public class ManualTestConfigElementEngineImpl implements TestConfigElementEngin
     /**
      * @param parentResult
      * @param orgResult
+     * @param context
+     *            the context of the job owning the traces of the received result
+     * @param timings
+     * @param versions
      * @param start
+     *            the ticks at the start
      * @param end
+     *            the ticks at the end
      * @param receivedResult
      */
-    private void finalizeResult(TestResult parentResult, ManualTestResult orgResult, long start, long end,
-            ManualTestResult receivedResult) {
+    private void finalizeResult(TestResult parentResult, ManualTestResult orgResult, TestContext context,
+            ResultTimings timings, ResultVersions versions, long start, long end, ManualTestResult receivedResult) {
 
-        receivedResult.setStartTime(new Date(start));
-        receivedResult.setEndTime(new Date(end));
-        receivedResult.setDuration(end - start);
+        timings.record(receivedResult, start, end);
+        TestExecutionJob owner = null;
+
+        if (context.getExecutionController() instanceof TestExecutionJob) {
+            owner = (TestExecutionJob) context.getExecutionController();
+        }
 
-        // Put large data into Cache
+        // Put large data into the TraceStore
         for (ActionTrace trace : receivedResult.getActionTraceList()) {
 
             if (trace instanceof ScreenshotTrace) {
                 ScreenshotTrace screenshot = (ScreenshotTrace) trace;
-                Identifier imageId = new Identifier(UUID.randomUUID().getMostSignificantBits());
-                ImageCache.getInstance().put(imageId, screenshot.getScreenshot());
-                screenshot.setImageId(imageId);
+                screenshot.setImageId(TraceStore.getInstance().storeImage(screenshot.getScreenshot()));
                 screenshot.setScreenshot((ImageData) null);
             } else if (trace instanceof FileTrace) {
                 FileTrace file = (FileTrace) trace;
-                Identifier fileId = new Identifier(UUID.randomUUID().getMostSignificantBits());
-                DataCache.getInstance().put(fileId, file.getFileContent());
-                file.setFileId(fileId);
+                file.setFileId(TraceStore.getInstance().storeData(file.getFileContent()));
                 file.setFileContent((Data) null);
             }
+
+            if (owner != null) {
+                owner.traceAdded(trace);
+            }
+        }
+
+        // the attached traces of the received result take over the references of the replaced one
+        for (ScreenshotTrace screenshot : receivedResult.getScreenshots()) {
+            TraceStore.getInstance().retainImage(screenshot.getImageId());
         }
 
-        TestResultHelper.removeTestResult(orgResult, parentResult);
-        TestResultHelper.addTestResult(receivedResult, parentResult);
+        for (FileTrace file : receivedResult.getFiles()) {
+            TraceStore.getInstance().retainData(file.getFileId());
+        }
+
+        for (ScreenshotTrace screenshot : orgResult.getScreenshots()) {
+            TraceStore.getInstance().removeImage(screenshot.getImageId());
+        }
+
+        for (FileTrace file : orgResult.getFiles()) {
+            TraceStore.getInstance().removeData(file.getFileId());
+        }
+
+        versions.lock();
+        try {
+            versions.removeTestResult(orgResult, parentResult);
+            versions.addTestResult(receivedResult, parentResult);
+        } finally {
+            versions.unlock();
+        }
+        versions.changed(receivedResult, parentResult);
     }
 
     /**
@@ -327,12 +365,16 @@ public class ManualTestConfigElementEngineImpl implements TestConfigElementEngin
 
         if (trace instanceof ScreenshotTrace) {
             ScreenshotTrace screenshot = (ScreenshotTrace) trace.cloneObject();
-            ImageData image = ImageCache.getInstance().get(screenshot.getImageId());
+
+            // the copy references the screenshot as well and is released with the result
+            TraceStore.getInstance().retainImage(screenshot.getImageId());
+            ImageData image = TraceStore.getInstance().getImage(screenshot.getImageId());
             screenshot.setScreenshot(image);
             manualResult.getScreenshots().add(screenshot);
         } else if (trace instanceof FileTrace) {
             FileTrace file = (FileTrace) trace.cloneObject();
-            Data fileData = DataCache.getInstance().get(file.getFileId());
+            TraceStore.getInstance().retainData(file.getFileId());
+            Data fileData = TraceStore.getInstance().getData(file.getFileId());
             file.setFileContent(fileData);
             manualResult.getFiles().add(file);
         } else if (trace instanceof MessageTrace) {
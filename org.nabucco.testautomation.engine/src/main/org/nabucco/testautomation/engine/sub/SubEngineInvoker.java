@@ -21,10 +21,15 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import org.nabucco.framework.base.facade.datatype.logger.NabuccoLogger;
 import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
 import org.nabucco.testautomation.engine.base.context.TestContext;
+import org.nabucco.testautomation.engine.base.engine.ExecutionController;
 import org.nabucco.testautomation.engine.base.exception.InterruptionException;
 import org.nabucco.testautomation.engine.base.exception.NBCTestConfigurationException;
 import org.nabucco.testautomation.engine.proxy.ProxyEngine;
@@ -187,6 +192,54 @@ public class SubEngineInvoker {
         }
     }
 
+    /**
+     * Invokes the configured SubEngine-operation in a separate thread of the given executor. The
+     * calling thread waits for the response, but returns immediately, when it is interrupted
+     * because the execution was cancelled. The abandoned operation is interrupted as well.
+     * 
+     * @param executor
+     *            the executor running the SubEngine-operation
+     * @param executionController
+     *            the controller of the execution, may be null
+     * @throws NBCTestConfigurationException
+     *             thrown, if an error occurs during the preparation or execution of the
+     *             SubEngine-operation
+     */
+    public void invoke(Executor executor, ExecutionController executionController)
+            throws NBCTestConfigurationException {
+
+        FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+            @Override
+            public Void call() throws NBCTestConfigurationException {
+                invoke();
+                return null;
+            }
+        });
+        executor.execute(task);
+
+        try {
+            task.get();
+        } catch (InterruptedException ex) {
+            task.cancel(true);
+
+            if (executionController != null && executionController.isInterrupted()) {
+                executionController.tryInterruption();
+            }
+            throw new InterruptionException("SubEngine-operation was unexpectedly interrupted");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof NBCTestConfigurationException) {
+                throw (NBCTestConfigurationException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new NBCTestConfigurationException("Could not invoke SubEngine-operation", ex);
+        }
+    }
+
     private SubEngineType getSubEngineType(String subEngine) {
 
         if (subEngine == null) {
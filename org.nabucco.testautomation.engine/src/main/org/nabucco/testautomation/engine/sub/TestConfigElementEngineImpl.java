@@ -27,6 +27,8 @@ import org.nabucco.testautomation.config.facade.datatype.Dependency;
 import org.nabucco.testautomation.config.facade.datatype.TestConfigElement;
 import org.nabucco.testautomation.engine.base.context.TestContext;
 import org.nabucco.testautomation.engine.base.util.TestResultHelper;
+import org.nabucco.testautomation.engine.execution.delta.ResultVersions;
+import org.nabucco.testautomation.engine.visitor.config.DependencyGraph;
 import org.nabucco.testautomation.property.facade.datatype.TextProperty;
 import org.nabucco.testautomation.result.facade.datatype.ExecutionType;
 import org.nabucco.testautomation.result.facade.datatype.TestResult;
@@ -42,7 +44,7 @@ import org.nabucco.testautomation.settings.facade.exception.engine.TestEngineExc
  * 
  * @author Steffen Schmidt, PRODYNA AG
  */
-public class TestConfigElementEngineImpl implements TestConfigElementEngine {
+public class TestConfigElementEngineImpl implements DependencyAwareTestConfigElementEngine {
 
     private static final long serialVersionUID = 1L;
 
@@ -67,6 +69,15 @@ public class TestConfigElementEngineImpl implements TestConfigElementEngine {
     @Override
     public TestResult executeTestConfigElement(TestConfigElement testConfigElement, TestContext context,
             TestResult parentResult) throws TestEngineException {
+        return this.executeTestConfigElement(testConfigElement, context, parentResult, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TestResult executeTestConfigElement(TestConfigElement testConfigElement, TestContext context,
+            TestResult parentResult, DependencyGraph dependencyGraph) throws TestEngineException {
 
         SchemaElement schema = testConfigElement.getSchemaElement();
 
@@ -108,7 +119,9 @@ public class TestConfigElementEngineImpl implements TestConfigElementEngine {
         // Check dependencies
         if (parentResult != null && schema.getHasDependencies() != null && schema.getHasDependencies().getValue()) {
 
-            if (schema.getDefaultDependency() == null || schema.getDefaultDependency().getValue().booleanValue()) {
+            if (dependencyGraph != null && dependencyGraph.contains(testConfigElement)) {
+                graphDependencyCheck(testConfigElement, dependencyGraph, result);
+            } else if (schema.getDefaultDependency() == null || schema.getDefaultDependency().getValue().booleanValue()) {
                 defaultDependencyCheck(testConfigElement, parentResult.getTestResultList(), result);
             } else {
                 customDependencyCheck(testConfigElement, parentResult.getTestResultList(), result);
@@ -118,7 +131,7 @@ public class TestConfigElementEngineImpl implements TestConfigElementEngine {
                 skip(testConfigElement, result);
                 // reset skip-attribute
                 testConfigElement.setSkip(Boolean.FALSE);
-                TestResultHelper.addTestResult(result, parentResult);
+                ResultVersions.getInstance(context).addTestResult(result, parentResult);
                 return result;
             }
         }
@@ -141,7 +154,7 @@ public class TestConfigElementEngineImpl implements TestConfigElementEngine {
         }
 
         // Add new result to parent result
-        TestResultHelper.addTestResult(result, parentResult);
+        ResultVersions.getInstance(context).addTestResult(result, parentResult);
 
         // Manual execution
         if (isManual(testConfigElement)) {
@@ -159,6 +172,34 @@ public class TestConfigElementEngineImpl implements TestConfigElementEngine {
         return result;
     }
 
+    /**
+     * Checks the dependencies resolved in the DependencyGraph before the execution. If a
+     * dependency did not pass, the given TestConfigElement will be marked to be skipped.
+     * 
+     * @param testConfigElement
+     *            the TestConfigElement to check
+     * @param dependencyGraph
+     *            the dependencies of the TestConfigElement and its siblings
+     * @param result
+     *            the TestResult of the TestConfigElement
+     */
+    private void graphDependencyCheck(TestConfigElement testConfigElement, DependencyGraph dependencyGraph,
+            TestResult result) {
+
+        TestConfigElement dependency = dependencyGraph.getFailedDependency(testConfigElement);
+
+        if (dependency != null) {
+            TestConfigElementStatusType status = dependencyGraph.getStatus(dependency);
+            testConfigElement.setSkip(Boolean.TRUE);
+            result.setStatus(TestConfigElementStatusType.SKIPPED);
+            String message = "Dependency-check failed: '"
+                    + testConfigElement.getIdentificationKey() + "' SKIPPED because '"
+                    + dependency.getIdentificationKey() + "' " + status;
+            result.setMessage(message);
+            logger.info(message);
+        }
+    }
+
     /**
      * Checks, if all TestConfigElements succeeded a given TestConfigElement depends on. If at least
      * one of these TestConfigElements failed, the given TestConfigElement will be marked to be
@@ -17,8 +17,8 @@
 package org.nabucco.testautomation.engine.sub;
 
 import java.util.Collections;
-import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -31,6 +31,7 @@ import org.nabucco.testautomation.config.facade.datatype.TestConfigElement;
 import org.nabucco.testautomation.config.facade.datatype.TestScriptContainer;
 import org.nabucco.testautomation.config.facade.datatype.comparator.TestScriptSorter;
 import org.nabucco.testautomation.engine.base.context.TestContext;
+import org.nabucco.testautomation.engine.base.engine.ExecutionController;
 import org.nabucco.testautomation.engine.base.exception.InterruptionException;
 import org.nabucco.testautomation.engine.base.exception.NBCTestConfigurationException;
 import org.nabucco.testautomation.engine.base.exception.PropertyException;
@@ -40,6 +41,14 @@ import org.nabucco.testautomation.engine.exception.AssertionException;
 import org.nabucco.testautomation.engine.exception.SynchronizationException;
 import org.nabucco.testautomation.engine.exception.TestExecutionAssertionException;
 import org.nabucco.testautomation.engine.exception.TestScriptException;
+import org.nabucco.testautomation.engine.execution.delta.ResultVersions;
+import org.nabucco.testautomation.engine.execution.event.ExecutionEventBus;
+import org.nabucco.testautomation.engine.execution.event.ExecutionEventType;
+import org.nabucco.testautomation.engine.execution.job.TestExecutionJob;
+import org.nabucco.testautomation.engine.execution.timing.ExecutionClock;
+import org.nabucco.testautomation.engine.execution.timing.ResultTimings;
+import org.nabucco.testautomation.engine.execution.watchdog.ExecutionMonitor;
+import org.nabucco.testautomation.engine.execution.watchdog.ExecutionTimeouts;
 import org.nabucco.testautomation.engine.visitor.result.TestResultStatusVisitor;
 import org.nabucco.testautomation.engine.visitor.script.TestScriptVisitor;
 import org.nabucco.testautomation.property.facade.datatype.PropertyList;
@@ -89,7 +98,10 @@ public class TestScriptEngineImpl implements TestScriptEngine {
         testScriptResult.setTestScriptName(testScript.getName());
         testScriptResult.setTestScriptKey(testScript.getIdentificationKey());
         testScriptResult.setElementId(testScript.getId());
-        testResult.getTestScriptResultList().add(testScriptResult);
+
+        ResultVersions versions = ResultVersions.getInstance(context);
+        versions.add(testResult.getTestScriptResultList(), testScriptResult);
+        versions.changed(testScriptResult, testResult);
 
         // Add PropertyList of TestScript to Context
         PropertyList testScriptProperties = testScript.getPropertyList();
@@ -98,39 +110,34 @@ public class TestScriptEngineImpl implements TestScriptEngine {
             context.put(testScriptProperties.cloneObject());
         }
 
-        long startTime = 0;
-        long endTime = 0;
+        ResultTimings timings = ResultTimings.getInstance(context);
+        ExecutionEventBus eventBus = ExecutionEventBus.getInstance();
+        String name = testScript.getName() != null ? testScript.getName().getValue() : null;
+        long startTicks = ExecutionClock.ticks();
 
         try {
             TestScriptVisitor visitor = new TestScriptVisitor(context, this);
-            startTime = System.currentTimeMillis();
-            testScriptResult.setStartTime(new Date(startTime));
+            eventBus.publish(ExecutionEventType.TEST_SCRIPT_STARTED, context, testScript.getId(), name, -1, null);
             visitor.visit(testScript, testScriptResult);
-            endTime = System.currentTimeMillis();
             testScriptResult.setElementStatus(TestScriptElementStatusType.EXECUTED);
-            testScriptResult.setEndTime(new Date(endTime));
-            testScriptResult.setDuration(endTime - startTime);
         } catch (TestScriptException ex) {
-            endTime = System.currentTimeMillis();
-            testScriptResult.setEndTime(new Date(endTime));
-            testScriptResult.setDuration(endTime - startTime);
             testScriptResult.setErrorMessage(ex.getMessage());
             testScriptResult.setStatus(TestScriptStatusType.FAILED);
             throw ex;
         } catch (InterruptionException ex) {
-            endTime = System.currentTimeMillis();
-            testScriptResult.setEndTime(new Date(endTime));
-            testScriptResult.setDuration(endTime - startTime);
-            testScriptResult.setErrorMessage("Execution of TestScript aborted");
+            testScriptResult.setErrorMessage(abortMessage("Execution of TestScript aborted", ex));
             testScriptResult.setStatus(TestScriptStatusType.ABORTED);
             throw ex;
         } catch (RuntimeException ex) {
-            endTime = System.currentTimeMillis();
-            testScriptResult.setEndTime(new Date(endTime));
-            testScriptResult.setDuration(endTime - startTime);
             testScriptResult.setErrorMessage("Fatal error: " + ex.toString());
             testScriptResult.setStatus(TestScriptStatusType.FAILED);
             throw ex;
+        } finally {
+            long endTicks = ExecutionClock.ticks();
+            timings.record(testScriptResult, startTicks, endTicks);
+            versions.changed(testScriptResult);
+            eventBus.publish(ExecutionEventType.TEST_SCRIPT_FINISHED, context, testScript.getId(), name,
+                    endTicks - startTicks, testScriptResult.getStatus());
         }
     }
 
@@ -183,7 +190,8 @@ public class TestScriptEngineImpl implements TestScriptEngine {
                 break scriptLoop;
             } catch (InterruptionException ex) {
                 // TestScript interrupted
-                String error = "Execution of TestScript '" + testScript.getIdentificationKey().getValue() + "' aborted";
+                String error = abortMessage("Execution of TestScript '"
+                        + testScript.getIdentificationKey().getValue() + "' aborted", ex);
                 testResult.setErrorMessage(error);
                 testResult.setStatus(TestConfigElementStatusType.FAILED);
                 logger.error(error);
@@ -216,17 +224,29 @@ public class TestScriptEngineImpl implements TestScriptEngine {
             actionProperties = actionProperties.cloneObject();
         }
 
-        // Invoke SubEngine
+        // Invoke SubEngine, the watchdog interrupts Actions exceeding their timeout
+        ExecutionMonitor monitor = null;
+        ExecutionEventBus eventBus = ExecutionEventBus.getInstance();
+        String name = action.getName().getValue();
+        long startTicks = ExecutionClock.ticks();
+        eventBus.publish(ExecutionEventType.ACTION_STARTED, context, action.getId(), name, -1, null);
+
+        if (context.getExecutionController() instanceof ExecutionMonitor) {
+            monitor = (ExecutionMonitor) context.getExecutionController();
+            monitor.actionStarted(name,
+                    ExecutionTimeouts.getTimeout(context, ExecutionTimeouts.ACTION_TIMEOUT));
+        }
+
         try {
             ContextHelper.resolvePropertyRefs(actionProperties, context);
             SubEngineInvoker subEngineInvoker = new SubEngineInvoker(action.getMetadata(), context, actionProperties,
                     action.getActionCode());
-            subEngineInvoker.invoke();
+            invoke(subEngineInvoker, context.getExecutionController());
             response = subEngineInvoker.getResponse();
             response.setElementId(action.getId());
 
             // Delay of Action
-            delayAction(action);
+            delayAction(action, context.getExecutionController());
 
         } catch (InterruptionException ex) {
             throw ex;
@@ -245,21 +265,82 @@ public class TestScriptEngineImpl implements TestScriptEngine {
             response.setActionStatus(ActionStatusType.FAILED);
             response.setErrorMessage("Unexpected error while invoking SubEngine: " + ex.toString());
             logger.fatal(ex);
+        } finally {
+            if (monitor != null) {
+                monitor.actionFinished();
+            }
+            eventBus.publish(ExecutionEventType.ACTION_FINISHED, context, action.getId(), name,
+                    ExecutionClock.ticks() - startTicks,
+                    response != null ? response.getActionStatus() : ActionStatusType.FAILED);
         }
         return response;
     }
 
     /**
-     * Blocks the execution if a delay is configured in the given {@link Action}.
+     * Appends the reason of an interruption, e.g. an exceeded timeout, to the given message.
+     * 
+     * @param message
+     *            the message
+     * @param ex
+     *            the interruption
+     * @return the message including the reason
+     */
+    static String abortMessage(String message, InterruptionException ex) {
+
+        if (ex.getMessage() == null) {
+            return message;
+        }
+        return message + ": " + ex.getMessage();
+    }
+
+    /**
+     * Invokes the SubEngine. The invocation of a job is done by a forked thread, so a cancelled
+     * job does not wait for the response. The job keeps its proxies and its job slot until the
+     * abandoned invocation returned.
+     * 
+     * @param subEngineInvoker
+     *            the prepared invoker
+     * @param executionController
+     *            the controller of the execution
+     * @throws NBCTestConfigurationException
+     *             thrown, if the SubEngine-operation could not be invoked
+     */
+    private void invoke(SubEngineInvoker subEngineInvoker, ExecutionController executionController)
+            throws NBCTestConfigurationException {
+
+        Executor executor = null;
+
+        if (executionController instanceof TestExecutionJob) {
+            executor = ((TestExecutionJob) executionController).getOperationExecutor();
+        }
+
+        if (executor != null) {
+            subEngineInvoker.invoke(executor, executionController);
+        } else {
+            subEngineInvoker.invoke();
+        }
+    }
+
+    /**
+     * Blocks the execution if a delay is configured in the given {@link Action}. The delay of a
+     * job ends immediately, when the job is cancelled, and is suspended while it is paused.
      * 
      * @param action
      *            the Action to be check for a delay
+     * @param executionController
+     *            the controller of the execution
      */
-    private void delayAction(Action action) {
+    private void delayAction(Action action, ExecutionController executionController) {
 
         Duration actionDelay = action.getDelay();
 
-        if (actionDelay != null && actionDelay.getValue() != null) {
+        if (actionDelay != null && actionDelay.getValue() != null && executionController != null) {
+            executionController.sleep(actionDelay.getValue());
+
+            if (executionController.isInterrupted()) {
+                executionController.tryInterruption();
+            }
+        } else if (actionDelay != null && actionDelay.getValue() != null) {
             try {
                 lock.lock();
                 this.delay.await(actionDelay.getValue(), TimeUnit.MILLISECONDS);
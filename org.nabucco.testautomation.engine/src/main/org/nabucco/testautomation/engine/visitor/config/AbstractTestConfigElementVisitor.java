@@ -17,15 +17,22 @@
 package org.nabucco.testautomation.engine.visitor.config;
 
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.nabucco.testautomation.config.facade.datatype.TestConfigElement;
 import org.nabucco.testautomation.config.facade.datatype.TestConfigElementContainer;
 import org.nabucco.testautomation.config.facade.datatype.comparator.TestConfigElementSorter;
 import org.nabucco.testautomation.engine.base.context.TestContext;
 import org.nabucco.testautomation.engine.base.engine.ExecutionController;
+import org.nabucco.testautomation.engine.execution.delta.ResultVersions;
+import org.nabucco.testautomation.engine.sub.DependencyAwareTestConfigElementEngine;
 import org.nabucco.testautomation.engine.sub.TestConfigElementEngine;
 import org.nabucco.testautomation.result.facade.datatype.TestResult;
+import org.nabucco.testautomation.result.facade.datatype.TestResultContainer;
+import org.nabucco.testautomation.result.facade.datatype.status.TestConfigElementStatusType;
+import org.nabucco.testautomation.settings.facade.exception.engine.TestEngineException;
 
 /**
  * AbstractTestConfigElementVisitor
@@ -38,6 +45,10 @@ public abstract class AbstractTestConfigElementVisitor<A> implements TestConfigV
 
     private TestConfigElementEngine testConfigElementEngine;
 
+    /** The DependencyGraphs of the siblings currently executed, by sibling */
+    private final Map<TestConfigElement, DependencyGraph> dependencyGraphs = Collections
+            .synchronizedMap(new IdentityHashMap<TestConfigElement, DependencyGraph>());
+
     /**
      * Constructs a AbstractTestConfigElementVisitor using the given TestContext and
      * TestConfigElementEngine.
@@ -52,7 +63,9 @@ public abstract class AbstractTestConfigElementVisitor<A> implements TestConfigV
     }
 
     /**
-     * Visits the given {@link TestConfigElement}.
+     * Visits the children of the given {@link TestConfigElement}. The children are scheduled by
+     * the {@link DependencyGraph} built from their dependencies: a child is executed as soon as its
+     * dependencies finished, children depending on a failed child are skipped.
      * 
      * @param testConfigElement the TestConfigElement to visit
      * @param context the current {@TestContext}
@@ -62,9 +75,125 @@ public abstract class AbstractTestConfigElementVisitor<A> implements TestConfigV
 
         List<TestConfigElementContainer> testConfigElementList = testConfigElement.getTestConfigElementList();
         Collections.sort(testConfigElementList, sorter);
+        DependencyGraph graph = new DependencyGraph(testConfigElementList, true);
+
+        if (ParallelSiblingExecution.isApplicable(testConfigElementList, context)) {
+            register(graph);
+            try {
+                executeParallel(graph, context, argument);
+            } finally {
+                unregister(graph);
+            }
+            return;
+        }
+
+        if (!graph.hasDependencies()) {
+            for (TestConfigElementContainer child : testConfigElementList) {
+                visit(child.getElement(), context, argument);
+            }
+            return;
+        }
+
+        register(graph);
+        try {
+            TestConfigElement child;
+
+            while ((child = graph.takeReady()) != null) {
+                visit(child, context, argument);
+                graph.finished(child, DependencyGraph.findStatus(child, argument.getTestResultList()));
+            }
+        } finally {
+            unregister(graph);
+        }
+    }
+
+    /**
+     * Executes a TestConfigElement using the DependencyGraph of its siblings, if the engine
+     * supports it.
+     * 
+     * @param testConfigElement
+     *            the TestConfigElement to execute
+     * @param context
+     *            the current TestContext
+     * @param parentResult
+     *            the TestResult of the parent
+     * @return the TestResult of the TestConfigElement
+     * @throws TestEngineException
+     *             thrown, if the TestConfigElement cannot be executed
+     */
+    protected TestResult executeTestConfigElement(TestConfigElement testConfigElement, TestContext context,
+            TestResult parentResult) throws TestEngineException {
+        DependencyGraph graph = dependencyGraphs.get(testConfigElement);
+
+        if (graph != null && testConfigElementEngine instanceof DependencyAwareTestConfigElementEngine) {
+            return ((DependencyAwareTestConfigElementEngine) testConfigElementEngine).executeTestConfigElement(
+                    testConfigElement, context, parentResult, graph);
+        }
+        return testConfigElementEngine.executeTestConfigElement(testConfigElement, context, parentResult);
+    }
+
+    private void executeParallel(DependencyGraph graph, final TestContext context, TestResult argument) {
+        final ResultVersions versions = ResultVersions.getInstance(context);
+
+        new ParallelSiblingExecution<TestResult>() {
+
+            @Override
+            protected TestResult createBranchResult() {
+                return new TestResult();
+            }
+
+            @Override
+            protected void visitBranch(TestConfigElement element, TestContext context, TestResult branchResult) {
+                AbstractTestConfigElementVisitor.this.visit(element, context, branchResult);
+            }
+
+            @Override
+            protected TestConfigElementStatusType getStatus(TestConfigElement element, TestResult branchResult) {
+                return DependencyGraph.findStatus(element, branchResult.getTestResultList());
+            }
+
+            @Override
+            protected void merge(TestResult branchResult, TestResult parentResult) {
+
+                for (TestResultContainer container : branchResult.getTestResultList()) {
+                    versions.addTestResult(container.getResult(), parentResult);
+                    versions.moved(container.getResult(), parentResult);
+                }
+
+                if (branchResult.getBrandType() != null) {
+                    parentResult.setBrandType(branchResult.getBrandType());
+                }
+                boolean changed = false;
+
+                // the worst status of the branches wins, a failed branch fails its parent
+                TestConfigElementStatusType status = branchResult.getStatus();
+
+                if (status != null && (status == TestConfigElementStatusType.FAILED || parentResult.getStatus() == null)) {
+                    parentResult.setStatus(status);
+                    changed = true;
+                }
+
+                if (branchResult.getErrorMessage() != null) {
+                    parentResult.setErrorMessage(branchResult.getErrorMessage());
+                    changed = true;
+                }
+
+                if (changed) {
+                    versions.changed(parentResult);
+                }
+            }
+        }.execute(graph, context, argument);
+    }
+
+    private void register(DependencyGraph graph) {
+        for (TestConfigElement element : graph.getElements()) {
+            dependencyGraphs.put(element, graph);
+        }
+    }
 
-        for (TestConfigElementContainer child : testConfigElementList) {
-            visit(child.getElement(), context, argument);
+    private void unregister(DependencyGraph graph) {
+        for (TestConfigElement element : graph.getElements()) {
+            dependencyGraphs.remove(element);
         }
     }
 
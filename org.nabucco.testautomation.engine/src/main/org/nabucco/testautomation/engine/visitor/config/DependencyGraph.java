@@ -0,0 +1,356 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.visitor.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.nabucco.testautomation.config.facade.datatype.Dependency;
+import org.nabucco.testautomation.config.facade.datatype.TestConfigElement;
+import org.nabucco.testautomation.config.facade.datatype.TestConfigElementContainer;
+import org.nabucco.testautomation.result.facade.datatype.TestResult;
+import org.nabucco.testautomation.result.facade.datatype.TestResultContainer;
+import org.nabucco.testautomation.result.facade.datatype.status.TestConfigElementStatusType;
+import org.nabucco.testautomation.schema.facade.datatype.SchemaElement;
+
+/**
+ * DependencyGraph
+ * <p>
+ * The dependencies between sibling TestConfigElements, built before the siblings are executed.
+ * A sibling with dependencies depends either on the TestConfigElements of its dependency list
+ * or, by default, on the preceding sibling that is not skipped. A sibling is ready as soon as
+ * all of its dependencies finished, and the first dependency that did not pass causes it to be
+ * skipped. As in a sequential execution, only preceding siblings are awaited: a dependency on
+ * the sibling itself or a following sibling never passes and the sibling is skipped in its
+ * order. The same applies to dependencies on unknown elements.
+ * 
+ * @author agent
+ */
+public final class DependencyGraph {
+
+    private final List<TestConfigElement> elements;
+
+    private final Map<Long, Integer> index = new HashMap<Long, Integer>();
+
+    private final Map<TestConfigElement, Integer> positions = new IdentityHashMap<TestConfigElement, Integer>();
+
+    private final TreeSet<Integer> ready = new TreeSet<Integer>();
+
+    private final List<List<TestConfigElement>> dependencies;
+
+    private final List<List<Integer>> dependents;
+
+    private final int[] pending;
+
+    private final boolean[] started;
+
+    private final TestConfigElementStatusType[] status;
+
+    private int startedCount = 0;
+
+    private int finishedCount = 0;
+
+    private boolean hasDependencies = false;
+
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Builds the graph of the given siblings.
+     * 
+     * @param siblings
+     *            the sorted siblings
+     * @param resolveDependencies
+     *            true, if the dependencies of the siblings are checked at all
+     */
+    public DependencyGraph(List<TestConfigElementContainer> siblings, boolean resolveDependencies) {
+        int size = siblings.size();
+        this.elements = new ArrayList<TestConfigElement>(size);
+        this.dependencies = new ArrayList<List<TestConfigElement>>(size);
+        this.dependents = new ArrayList<List<Integer>>(size);
+        this.pending = new int[size];
+        this.started = new boolean[size];
+        this.status = new TestConfigElementStatusType[size];
+
+        for (int i = 0; i < size; i++) {
+            TestConfigElement element = siblings.get(i).getElement();
+            elements.add(element);
+            dependencies.add(new ArrayList<TestConfigElement>());
+            dependents.add(new ArrayList<Integer>());
+            positions.put(element, Integer.valueOf(i));
+
+            if (element.getId() != null) {
+                index.put(element.getId(), Integer.valueOf(i));
+            }
+        }
+
+        int predecessor = -1;
+
+        for (int i = 0; i < size; i++) {
+            TestConfigElement element = elements.get(i);
+
+            if (!resolveDependencies) {
+                break;
+            }
+
+            if (isSkipped(element)) {
+                // not executed, hence not the default predecessor of the following sibling
+                continue;
+            }
+            SchemaElement schema = element.getSchemaElement();
+
+            if (schema != null && schema.getHasDependencies() != null && schema.getHasDependencies().getValue()) {
+                hasDependencies = true;
+
+                if (schema.getDefaultDependency() == null || schema.getDefaultDependency().getValue().booleanValue()) {
+                    if (predecessor >= 0) {
+                        addDependency(i, elements.get(predecessor));
+                    }
+                } else {
+                    for (Dependency dependency : element.getDependencyList()) {
+                        addDependency(i, dependency.getElement());
+                    }
+                }
+            }
+            predecessor = i;
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (pending[i] == 0) {
+                ready.add(Integer.valueOf(i));
+            }
+        }
+    }
+
+    /**
+     * Gets the siblings in their order.
+     * 
+     * @return the siblings
+     */
+    public List<TestConfigElement> getElements() {
+        return Collections.unmodifiableList(elements);
+    }
+
+    /**
+     * Checks whether any sibling has dependencies.
+     * 
+     * @return true, if the order of execution is restricted
+     */
+    public boolean hasDependencies() {
+        lock.lock();
+        try {
+            return hasDependencies;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the first sibling ready for execution.
+     * 
+     * @return the sibling or null, if no sibling is ready
+     */
+    public TestConfigElement takeReady() {
+        lock.lock();
+        try {
+            List<TestConfigElement> ready = take(true);
+            return ready.isEmpty() ? null : ready.get(0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes all siblings ready for execution.
+     * 
+     * @return the siblings in their order, may be empty
+     */
+    public List<TestConfigElement> takeAllReady() {
+        lock.lock();
+        try {
+            return take(false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the status of a finished sibling. Siblings depending on it become ready.
+     * 
+     * @param element
+     *            the finished sibling
+     * @param elementStatus
+     *            the status of the sibling
+     */
+    public void finished(TestConfigElement element, TestConfigElementStatusType elementStatus) {
+        lock.lock();
+        try {
+            Integer position = positions.get(element);
+
+            if (position == null || status[position.intValue()] != null) {
+                return;
+            }
+            int i = position.intValue();
+            status[i] = elementStatus != null ? elementStatus : TestConfigElementStatusType.SKIPPED;
+            finishedCount++;
+
+            for (Integer dependent : dependents.get(i)) {
+                if (--pending[dependent.intValue()] == 0 && !started[dependent.intValue()]) {
+                    ready.add(dependent);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the first dependency of a sibling that did not pass. A dependency on the sibling itself
+     * or a following sibling did not pass, even if it finished meanwhile in another branch.
+     * 
+     * @param element
+     *            the sibling
+     * @return the failed dependency or null, if all dependencies passed
+     */
+    public TestConfigElement getFailedDependency(TestConfigElement element) {
+        lock.lock();
+        try {
+            Integer position = positions.get(element);
+
+            if (position == null) {
+                return null;
+            }
+
+            for (TestConfigElement dependency : dependencies.get(position.intValue())) {
+                Integer d = dependency.getId() != null ? index.get(dependency.getId()) : null;
+
+                if (d == null || d.intValue() >= position.intValue()
+                        || status[d.intValue()] != TestConfigElementStatusType.PASSED) {
+                    return dependency;
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the status of a finished sibling.
+     * 
+     * @param element
+     *            the sibling
+     * @return the status or null, if the element is unknown or did not finish
+     */
+    public TestConfigElementStatusType getStatus(TestConfigElement element) {
+        lock.lock();
+        try {
+            Integer i = element.getId() != null ? index.get(element.getId()) : null;
+            return i != null ? status[i.intValue()] : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether the given element is one of the siblings of this graph.
+     * 
+     * @param element
+     *            the element
+     * @return true, if the element is a sibling
+     */
+    public boolean contains(TestConfigElement element) {
+        lock.lock();
+        try {
+            return positions.containsKey(element);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the status of the TestResult of a TestConfigElement in a list of TestResults. Siblings
+     * skipped on request add no TestResult and are considered skipped.
+     * 
+     * @param element
+     *            the TestConfigElement
+     * @param results
+     *            the TestResults of the siblings
+     * @return the status
+     */
+    public static TestConfigElementStatusType findStatus(TestConfigElement element, List<TestResultContainer> results) {
+
+        for (int i = results.size() - 1; i >= 0; i--) {
+            TestResult result = results.get(i).getResult();
+
+            if (result.getTestConfigElementId() != null && element.getId() != null
+                    && element.getId().equals(result.getTestConfigElementId().getValue())) {
+                return result.getStatus();
+            }
+        }
+        return TestConfigElementStatusType.SKIPPED;
+    }
+
+    private void addDependency(int i, TestConfigElement dependency) {
+        dependencies.get(i).add(dependency);
+        Integer d = dependency.getId() != null ? index.get(dependency.getId()) : null;
+
+        // following siblings are not awaited, the sibling is skipped instead of reordered
+        if (d != null && d.intValue() < i) {
+            dependents.get(d.intValue()).add(Integer.valueOf(i));
+            pending[i]++;
+        }
+    }
+
+    private List<TestConfigElement> take(boolean first) {
+        List<TestConfigElement> taken = new ArrayList<TestConfigElement>();
+
+        while (!ready.isEmpty() && (!first || taken.isEmpty())) {
+            start(ready.pollFirst().intValue(), taken);
+        }
+
+        // unsatisfiable dependencies: release the first waiting sibling, it will be skipped
+        if (taken.isEmpty() && startedCount == finishedCount && startedCount < elements.size()) {
+            for (int i = 0; i < elements.size(); i++) {
+                if (!started[i]) {
+                    start(i, taken);
+                    break;
+                }
+            }
+        }
+        return taken;
+    }
+
+    private void start(int i, List<TestConfigElement> taken) {
+        started[i] = true;
+        startedCount++;
+        taken.add(elements.get(i));
+    }
+
+    private static boolean isSkipped(TestConfigElement element) {
+        SchemaElement schema = element.getSchemaElement();
+        return schema != null && schema.getSkipable() != null && schema.getSkipable().getValue()
+                && element.getSkip() != null && element.getSkip().getValue();
+    }
+
+}
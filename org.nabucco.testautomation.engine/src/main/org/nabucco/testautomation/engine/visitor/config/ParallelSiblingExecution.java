@@ -0,0 +1,290 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.visitor.config;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+import org.nabucco.framework.base.facade.datatype.Name;
+import org.nabucco.framework.base.facade.datatype.logger.NabuccoLogger;
+import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
+import org.nabucco.testautomation.config.facade.datatype.TestConfigElement;
+import org.nabucco.testautomation.config.facade.datatype.TestConfigElementContainer;
+import org.nabucco.testautomation.engine.base.context.TestContext;
+import org.nabucco.testautomation.engine.execution.job.TestExecutionJob;
+import org.nabucco.testautomation.engine.semaphore.SynchronizationSemaphoreMap;
+import org.nabucco.testautomation.property.facade.datatype.base.Property;
+import org.nabucco.testautomation.property.facade.datatype.util.PropertyHelper;
+import org.nabucco.testautomation.result.facade.datatype.ExecutionType;
+import org.nabucco.testautomation.result.facade.datatype.status.TestConfigElementStatusType;
+
+/**
+ * ParallelSiblingExecution
+ * <p>
+ * Executes sibling TestConfigElements concurrently, if the TestContext property
+ * {@link #PARALLEL_EXECUTION} is <code>true</code>. Every branch is executed with its own
+ * duplicate of the TestContext and collects its TestResults in a result of its own. A sibling is
+ * started as soon as its dependencies in the {@link DependencyGraph} finished. The branch results
+ * are merged into the parent result in the order of the siblings.
+ * <p>
+ * Siblings are executed sequentially, if a subtree contains a manual TestConfigElement. SubEngines
+ * used by several branches must support concurrent calls.
+ * 
+ * @param <R>
+ *            the type of the parent result
+ * 
+ * @author agent
+ */
+public abstract class ParallelSiblingExecution<R> {
+
+    private static final NabuccoLogger logger = NabuccoLoggingFactory.getInstance().getLogger(
+            ParallelSiblingExecution.class);
+
+    /**
+     * The name of the TestContext property enabling the parallel execution of siblings.
+     */
+    public static final String PARALLEL_EXECUTION = "PARALLEL_EXECUTION";
+
+    /**
+     * Checks whether the given siblings can be executed concurrently.
+     * 
+     * @param siblings
+     *            the sibling TestConfigElements
+     * @param context
+     *            the current TestContext
+     * @return true, if the parallel execution is enabled and no sibling waits for a client
+     */
+    static boolean isApplicable(List<TestConfigElementContainer> siblings, TestContext context) {
+
+        if (siblings.size() < 2 || getForkExecutor(context) == null) {
+            return false;
+        }
+        Property property = context.getProperty(new Name(PARALLEL_EXECUTION));
+
+        if (property == null || !Boolean.parseBoolean(PropertyHelper.toString(property).trim())) {
+            return false;
+        }
+
+        for (TestConfigElementContainer sibling : siblings) {
+            if (containsManualElement(sibling.getElement())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Executes the siblings concurrently and merges their results in the order of the siblings.
+     * After a failure no further sibling is started, the running branches are awaited and then
+     * the first failure is rethrown.
+     * 
+     * @param graph
+     *            the dependencies of the siblings
+     * @param context
+     *            the current TestContext
+     * @param parentResult
+     *            the result the branch results are merged into
+     */
+    public final void execute(DependencyGraph graph, TestContext context, R parentResult) {
+        CompletionService<Branch> completion = new ExecutorCompletionService<Branch>(getForkExecutor(context));
+        Map<TestConfigElement, Branch> branches = new IdentityHashMap<TestConfigElement, Branch>();
+        RuntimeException failure = null;
+        int running = 0;
+
+        while (true) {
+            if (failure == null) {
+                for (TestConfigElement element : graph.takeAllReady()) {
+                    Branch branch = new Branch(element, context.dublicate(), createBranchResult());
+                    branches.put(element, branch);
+                    completion.submit(branch);
+                    running++;
+                }
+            }
+
+            if (running == 0) {
+                break;
+            }
+            Future<Branch> done = awaitNext(completion);
+            running--;
+
+            try {
+                Branch branch = done.get();
+                graph.finished(branch.element, getStatus(branch.element, branch.branchResult));
+            } catch (InterruptedException ex) {
+                // the future is done, get() does not block
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                if (failure == null) {
+                    failure = ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause()
+                            : new IllegalStateException("Parallel execution failed", ex.getCause());
+                }
+            }
+        }
+
+        // partial results of failed branches are merged as well
+        for (TestConfigElement element : graph.getElements()) {
+            Branch branch = branches.get(element);
+
+            if (branch != null) {
+                merge(branch.branchResult, parentResult);
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Creates the result collecting the TestResults of a branch.
+     * 
+     * @return the branch result
+     */
+    protected abstract R createBranchResult();
+
+    /**
+     * Visits a single sibling.
+     * 
+     * @param element
+     *            the sibling
+     * @param context
+     *            the TestContext of the branch
+     * @param branchResult
+     *            the result of the branch
+     */
+    protected abstract void visitBranch(TestConfigElement element, TestContext context, R branchResult);
+
+    /**
+     * Gets the status of a sibling from the result of its branch.
+     * 
+     * @param element
+     *            the sibling
+     * @param branchResult
+     *            the result of the branch
+     * @return the status
+     */
+    protected abstract TestConfigElementStatusType getStatus(TestConfigElement element, R branchResult);
+
+    /**
+     * Merges the result of a branch into the parent result.
+     * 
+     * @param branchResult
+     *            the result of the branch
+     * @param parentResult
+     *            the parent result
+     */
+    protected abstract void merge(R branchResult, R parentResult);
+
+    /**
+     * Waits for the next finished branch. An interruption of the waiting thread does not abandon
+     * the branches, they observe the interruption of the job themselves.
+     */
+    private Future<Branch> awaitNext(CompletionService<Branch> completion) {
+        boolean interrupted = false;
+
+        try {
+            while (true) {
+                try {
+                    return completion.take();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static Executor getForkExecutor(TestContext context) {
+
+        if (context.getExecutionController() instanceof TestExecutionJob) {
+            return ((TestExecutionJob) context.getExecutionController()).getForkExecutor();
+        }
+        return null;
+    }
+
+    private static boolean containsManualElement(TestConfigElement element) {
+
+        if (element.getExecutionType() == ExecutionType.MANUAL) {
+            return true;
+        }
+
+        for (TestConfigElementContainer child : element.getTestConfigElementList()) {
+            if (containsManualElement(child.getElement())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Executes a single sibling in a forked thread, or in the forking thread itself, if no forked
+     * thread is available.
+     */
+    private class Branch implements Callable<Branch> {
+
+        private final TestConfigElement element;
+
+        private final TestContext context;
+
+        private final R branchResult;
+
+        private Branch(TestConfigElement element, TestContext context, R branchResult) {
+            this.element = element;
+            this.context = context;
+            this.branchResult = branchResult;
+        }
+
+        @Override
+        public Branch call() {
+            TestExecutionJob job = null;
+            boolean forked = true;
+
+            // the branch is interrupted together with its job
+            if (context.getExecutionController() instanceof TestExecutionJob) {
+                job = (TestExecutionJob) context.getExecutionController();
+                forked = job.attachThread();
+            }
+
+            try {
+                visitBranch(element, context, branchResult);
+            } finally {
+                // a forking thread executing the branch itself keeps its locks and interruption
+                if (forked) {
+                    // locks of an aborted branch are not released by its TestScripts
+                    SynchronizationSemaphoreMap.getInstance().releaseLocks(Thread.currentThread());
+
+                    if (job != null) {
+                        job.detachThread();
+                        Thread.interrupted();
+                    }
+                }
+            }
+            return this;
+        }
+    }
+
+}
@@ -16,8 +16,6 @@
  */
 package org.nabucco.testautomation.engine.visitor.config;
 
-import java.util.Date;
-
 import org.nabucco.framework.base.facade.datatype.logger.NabuccoLogger;
 import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
 import org.nabucco.framework.base.facade.datatype.visitor.VisitorException;
@@ -25,7 +23,12 @@ import org.nabucco.testautomation.config.facade.datatype.TestConfigElement;
 import org.nabucco.testautomation.config.facade.datatype.TestConfiguration;
 import org.nabucco.testautomation.engine.base.context.TestContext;
 import org.nabucco.testautomation.engine.base.exception.InterruptionException;
-import org.nabucco.testautomation.engine.base.util.TestResultHelper;
+import org.nabucco.testautomation.engine.execution.delta.ResultVersions;
+import org.nabucco.testautomation.engine.execution.event.ExecutionEventBus;
+import org.nabucco.testautomation.engine.execution.event.ExecutionEventType;
+import org.nabucco.testautomation.engine.execution.job.TestConfigurationExecutionJob;
+import org.nabucco.testautomation.engine.execution.timing.ExecutionClock;
+import org.nabucco.testautomation.engine.execution.timing.ResultTimings;
 import org.nabucco.testautomation.engine.sub.TestConfigElementEngine;
 import org.nabucco.testautomation.engine.visitor.result.TestResultStatusVisitor;
 import org.nabucco.testautomation.result.facade.datatype.TestConfigurationResult;
@@ -70,44 +73,61 @@ public class TestConfigElementVisitor extends AbstractTestConfigElementVisitor<T
     public void visit(TestConfigElement testConfigElement, TestContext context, TestResult argument) {
 
         logger.debug("Visting TestConfigElement '", testConfigElement.getName().getValue(), "'");
+        TestResult resumedResult = getResumedResult(testConfigElement, context);
+
+        if (resumedResult != null) {
+            ResultVersions versions = ResultVersions.getInstance(context);
+            versions.addTestResult(resumedResult, argument);
+            versions.added(resumedResult, argument);
+            return;
+        }
         context = this.checkCloneContext(testConfigElement, context);
         context.setCurrentTestConfigElement(testConfigElement);
-        long startTime = System.currentTimeMillis();
+        ResultTimings timings = ResultTimings.getInstance(context);
+        ResultVersions versions = ResultVersions.getInstance(context);
+        long startTicks = ExecutionClock.ticks();
+        elementStarted(testConfigElement, context);
+        TestResult result = null;
 
         try {
             // Set Brand in TestResult
             argument.setBrandType(testConfigElement.getBrandType());
 
             // Execute TestConfigElement
-            TestResult result = getTestConfigElementEngine().executeTestConfigElement(testConfigElement, context,
-                    argument);
+            result = executeTestConfigElement(testConfigElement, context, argument);
+            versions.changed(result, argument);
 
             // Do not execute children if skipped
             if (result.getStatus() != TestConfigElementStatusType.SKIPPED) {
                 super.visit(testConfigElement, context, result);
             }
 
-            long endTime = System.currentTimeMillis();
-            result.setStartTime(new Date(startTime));
-            result.setEndTime(new Date(endTime));
-            result.setDuration(endTime - startTime);
+            timings.record(result, startTicks, ExecutionClock.ticks());
 
             // Determine Status of TestResult
             TestResultStatusVisitor visitor = new TestResultStatusVisitor();
             visitor.visit(result);
+            elementCompleted(testConfigElement, context);
         } catch (InterruptionException ex) {
-            finish(argument, startTime);
+            finish(argument, timings, startTicks);
             argument.setStatus(TestConfigElementStatusType.FAILED);
-            argument.setErrorMessage("Execution of '" + testConfigElement.getName() + "' aborted");
+            argument.setErrorMessage("Execution of '" + testConfigElement.getName() + "' aborted"
+                    + (ex.getMessage() != null ? ": " + ex.getMessage() : ""));
+            versions.changed(argument);
             throw ex;
         } catch (TestEngineException ex) {
-            finish(argument, startTime);
+            finish(argument, timings, startTicks);
             argument.setErrorMessage(ex.getMessage());
+            versions.changed(argument);
             logger.error(ex.getMessage());
         } catch (VisitorException ex) {
-            finish(argument, startTime);
+            finish(argument, timings, startTicks);
             argument.setErrorMessage(ex.getMessage());
+            versions.changed(argument);
             logger.error(ex.getMessage());
+        } finally {
+            versions.changed(result);
+            elementFinished(testConfigElement, context, startTicks, result);
         }
     }
 
@@ -121,39 +141,113 @@ public class TestConfigElementVisitor extends AbstractTestConfigElementVisitor<T
             TestConfigurationResult testConfigurationResult) {
 
         logger.debug("Visting TestConfigElement '", testConfigElement.getName(), "'");
+        TestResult resumedResult = getResumedResult(testConfigElement, context);
+
+        if (resumedResult != null) {
+            if (resumedResult.getStatus() != TestConfigElementStatusType.SKIPPED) {
+                ResultVersions versions = ResultVersions.getInstance(context);
+                versions.addTestResult(resumedResult, testConfigurationResult);
+                versions.added(resumedResult, testConfigurationResult);
+            }
+            return;
+        }
         context = this.checkCloneContext(testConfigElement, context);
         context.setCurrentTestConfigElement(testConfigElement);
-        long startTime = System.currentTimeMillis();
+        ResultTimings timings = ResultTimings.getInstance(context);
+        ResultVersions versions = ResultVersions.getInstance(context);
+        long startTicks = ExecutionClock.ticks();
+        elementStarted(testConfigElement, context);
+        TestResult result = null;
 
         try {
             // Execute TestConfigElement
-            TestResult result = getTestConfigElementEngine().executeTestConfigElement(testConfigElement, context, null);
+            result = getTestConfigElementEngine().executeTestConfigElement(testConfigElement, context, null);
 
             // Do not execute children if skipped
             if (result.getStatus() != TestConfigElementStatusType.SKIPPED) {
-                TestResultHelper.addTestResult(result, testConfigurationResult);
+                versions.addTestResult(result, testConfigurationResult);
+                versions.changed(result, testConfigurationResult);
                 super.visit(testConfigElement, context, result);
             }
 
-            long endTime = System.currentTimeMillis();
-            result.setStartTime(new Date(startTime));
-            result.setEndTime(new Date(endTime));
-            result.setDuration(endTime - startTime);
+            timings.record(result, startTicks, ExecutionClock.ticks());
 
             // Determine Status of TestResult
             resultVisitor.visit(result);
+            elementCompleted(testConfigElement, context);
         } catch (InterruptionException ex) {
-            finish(testConfigurationResult, startTime);
+            finish(testConfigurationResult, timings, startTicks);
             throw ex;
         } catch (TestEngineException ex) {
-            finish(testConfigurationResult, startTime);
+            finish(testConfigurationResult, timings, startTicks);
             logger.error(ex.getMessage());
         } catch (VisitorException ex) {
-            finish(testConfigurationResult, startTime);
+            finish(testConfigurationResult, timings, startTicks);
             logger.error(ex.getMessage());
+        } finally {
+            versions.changed(result);
+            elementFinished(testConfigElement, context, startTicks, result);
         }
     }
     
+    /**
+     * Gets the TestResult of a TestConfigElement completed before the checkpoint the job was
+     * resumed from.
+     * 
+     * @param testConfigElement
+     * @param context
+     * @return the TestResult or null, if the TestConfigElement must be executed
+     */
+    private TestResult getResumedResult(TestConfigElement testConfigElement, TestContext context) {
+
+        if (context.getExecutionController() instanceof TestConfigurationExecutionJob) {
+            return ((TestConfigurationExecutionJob) context.getExecutionController())
+                    .getResumedResult(testConfigElement.getId());
+        }
+        return null;
+    }
+
+    /**
+     * Records the completion of a TestConfigElement for the checkpoints of the job.
+     * 
+     * @param testConfigElement
+     * @param context
+     */
+    private void elementCompleted(TestConfigElement testConfigElement, TestContext context) {
+
+        if (context.getExecutionController() instanceof TestConfigurationExecutionJob) {
+            ((TestConfigurationExecutionJob) context.getExecutionController()).elementCompleted(testConfigElement);
+        }
+    }
+
+    /**
+     * Publishes the start of a TestConfigElement.
+     * 
+     * @param testConfigElement
+     * @param context
+     */
+    private void elementStarted(TestConfigElement testConfigElement, TestContext context) {
+        ExecutionEventBus.getInstance().publish(ExecutionEventType.TEST_CONFIG_ELEMENT_STARTED, context,
+                testConfigElement.getId(), testConfigElement.getName().getValue(), -1, null);
+    }
+
+    /**
+     * Publishes the end of a TestConfigElement.
+     * 
+     * @param testConfigElement
+     * @param context
+     * @param startTicks
+     * @param result
+     *            the TestResult of the element or null, if the element failed before
+     */
+    private void elementFinished(TestConfigElement testConfigElement, TestContext context, long startTicks,
+            TestResult result) {
+        ExecutionEventBus.getInstance().publish(ExecutionEventType.TEST_CONFIG_ELEMENT_FINISHED, context,
+                testConfigElement.getId(), testConfigElement.getName().getValue(),
+                ExecutionClock.ticks() - startTicks,
+                result != null ? result.getStatus() : TestConfigElementStatusType.FAILED);
+    }
+
     /**
      * 
      * @param testConfigElement
@@ -176,32 +270,28 @@ public class TestConfigElementVisitor extends AbstractTestConfigElementVisitor<T
     /**
      * 
      * @param argument
-     * @param startTime
+     * @param timings
+     * @param startTicks
      */
-    private void finish(TestResult argument, long startTime) {
-
-        long endTime = System.currentTimeMillis();
+    private void finish(TestResult argument, ResultTimings timings, long startTicks) {
 
         if (!argument.getTestResultList().isEmpty()) {
             TestResult result = argument.getTestResultList().last().getResult();
-            result.setEndTime(new Date(endTime));
-            result.setDuration(endTime - startTime);
+            timings.recordEnd(result, startTicks, ExecutionClock.ticks());
         }
     }
 
     /**
      * 
      * @param argument
-     * @param startTime
+     * @param timings
+     * @param startTicks
      */
-    private void finish(TestConfigurationResult argument, long startTime) {
-
-        long endTime = System.currentTimeMillis();
+    private void finish(TestConfigurationResult argument, ResultTimings timings, long startTicks) {
 
         if (!argument.getTestResultList().isEmpty()) {
             TestResult result = argument.getTestResultList().last().getResult();
-            result.setEndTime(new Date(endTime));
-            result.setDuration(endTime - startTime);
+            timings.recordEnd(result, startTicks, ExecutionClock.ticks());
         }
     }
 
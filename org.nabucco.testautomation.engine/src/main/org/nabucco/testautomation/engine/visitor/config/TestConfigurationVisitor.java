@@ -24,9 +24,13 @@ import org.nabucco.testautomation.config.facade.datatype.TestConfigElementContai
 import org.nabucco.testautomation.config.facade.datatype.TestConfiguration;
 import org.nabucco.testautomation.config.facade.datatype.comparator.TestConfigElementSorter;
 import org.nabucco.testautomation.engine.base.context.TestContext;
+import org.nabucco.testautomation.engine.base.util.TestResultHelper;
+import org.nabucco.testautomation.engine.execution.delta.ResultVersions;
 import org.nabucco.testautomation.engine.sub.TestConfigElementEngine;
 import org.nabucco.testautomation.property.facade.datatype.TextProperty;
 import org.nabucco.testautomation.result.facade.datatype.TestConfigurationResult;
+import org.nabucco.testautomation.result.facade.datatype.TestResultContainer;
+import org.nabucco.testautomation.result.facade.datatype.status.TestConfigElementStatusType;
 
 /**
  * TestConfigurationVisitor
@@ -80,6 +84,40 @@ public class TestConfigurationVisitor extends
     	List<TestConfigElementContainer> testConfigElementList = testConfiguration.getTestConfigElementList();
     	Collections.sort(testConfigElementList, new TestConfigElementSorter());
     	
+    	// TestConfigElements of the TestConfiguration have no dependencies
+    	if (ParallelSiblingExecution.isApplicable(testConfigElementList, context)) {
+    		new ParallelSiblingExecution<TestConfigurationResult>() {
+
+    			@Override
+    			protected TestConfigurationResult createBranchResult() {
+    				return TestResultHelper.createTestConfigurationResult();
+    			}
+
+    			@Override
+    			protected void visitBranch(TestConfigElement element, TestContext context,
+    					TestConfigurationResult branchResult) {
+    				TestConfigurationVisitor.this.visit(element, context, branchResult);
+    			}
+
+    			@Override
+    			protected TestConfigElementStatusType getStatus(TestConfigElement element,
+    					TestConfigurationResult branchResult) {
+    				return DependencyGraph.findStatus(element, branchResult.getTestResultList());
+    			}
+
+    			@Override
+    			protected void merge(TestConfigurationResult branchResult, TestConfigurationResult parentResult) {
+    				
+    				ResultVersions versions = ResultVersions.getInstance(context);
+    				
+    				for (TestResultContainer container : branchResult.getTestResultList()) {
+    					versions.addTestResult(container.getResult(), parentResult);
+    				}
+    			}
+    		}.execute(new DependencyGraph(testConfigElementList, false), context, testConfigurationResult);
+    		return;
+    	}
+    	
     	for (TestConfigElementContainer testConfigElement : testConfigElementList) {
     		visit(testConfigElement.getElement(), context, testConfigurationResult);
     	}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.visitor.result;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.nabucco.framework.base.facade.datatype.Identifier;
+import org.nabucco.testautomation.engine.execution.blob.TraceStore;
+import org.nabucco.testautomation.engine.execution.store.ResultStore.BlobSource;
+import org.nabucco.testautomation.result.facade.datatype.trace.FileTrace;
+import org.nabucco.testautomation.result.facade.datatype.trace.ScreenshotTrace;
+import org.nabucco.testautomation.result.facade.datatype.visitor.TestResultVisitor;
+
+/**
+ * TestResultCollectionVisitor
+ * <p>
+ * Collects the ids of the screenshots and files referenced by a result, e.g. to store them
+ * together with the result. The contents are read from the TraceStore by range, so they are not
+ * loaded onto the heap as a whole. The result itself is not changed.
+ * 
+ * @author agent
+ */
+public class TestResultCollectionVisitor extends TestResultVisitor {
+
+	private final Set<Long> imageIds = new LinkedHashSet<Long>();
+
+	private final Set<Long> fileIds = new LinkedHashSet<Long>();
+
+	@Override
+	protected void visit(ScreenshotTrace datatype) {
+
+		if (datatype != null && datatype.getImageId() != null) {
+			imageIds.add(datatype.getImageId().getValue());
+		}
+		super.visit(datatype);
+	}
+
+	@Override
+	protected void visit(FileTrace datatype) {
+
+		if (datatype != null && datatype.getFileId() != null) {
+			fileIds.add(datatype.getFileId().getValue());
+		}
+		super.visit(datatype);
+	}
+
+	/**
+	 * Gets the collected screenshots.
+	 *
+	 * @return the screenshots read from the TraceStore
+	 */
+	public BlobSource getImages() {
+		return new BlobSource() {
+
+			@Override
+			public Collection<Long> getIds() {
+				return imageIds;
+			}
+
+			@Override
+			public byte[] read(long id, long offset, int length) {
+				return TraceStore.getInstance().readImage(new Identifier(id), offset, length);
+			}
+		};
+	}
+
+	/**
+	 * Gets the collected files.
+	 *
+	 * @return the files read from the TraceStore
+	 */
+	public BlobSource getFiles() {
+		return new BlobSource() {
+
+			@Override
+			public Collection<Long> getIds() {
+				return fileIds;
+			}
+
+			@Override
+			public byte[] read(long id, long offset, int length) {
+				return TraceStore.getInstance().readData(new Identifier(id), offset, length);
+			}
+		};
+	}
+
+}
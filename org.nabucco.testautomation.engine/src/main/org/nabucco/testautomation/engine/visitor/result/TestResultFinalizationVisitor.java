@@ -16,27 +16,66 @@
  */
 package org.nabucco.testautomation.engine.visitor.result;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.nabucco.framework.base.facade.datatype.Data;
 import org.nabucco.framework.base.facade.datatype.Identifier;
 import org.nabucco.framework.base.facade.datatype.image.ImageData;
-import org.nabucco.testautomation.engine.proxy.cache.DataCache;
-import org.nabucco.testautomation.engine.proxy.cache.ImageCache;
+import org.nabucco.testautomation.engine.execution.blob.TraceStore;
 import org.nabucco.testautomation.result.facade.datatype.trace.FileTrace;
 import org.nabucco.testautomation.result.facade.datatype.trace.ScreenshotTrace;
 import org.nabucco.testautomation.result.facade.datatype.visitor.TestResultVisitor;
 
 /**
  * TestResultFinalizationVisitor
+ * <p>
+ * Copies the screenshots and files from the TraceStore into the traces of a result. Traces
+ * referencing the same content get the same instance, so the content is serialized only once.
+ * The contents remain in the TraceStore until they are released by the
+ * {@link TestResultReleaseVisitor}, so the visitor is applied to a copy of the result.
  * 
  * @author Steffen Schmidt, PRODYNA AG
  */
 public class TestResultFinalizationVisitor extends TestResultVisitor {
 
+	private final Map<Long, ImageData> images = new HashMap<Long, ImageData>();
+	
+	private final Map<Long, Data> files = new HashMap<Long, Data>();
+
+	/**
+	 * Constructs a new TestResultFinalizationVisitor taking the contents from the TraceStore.
+	 */
+	public TestResultFinalizationVisitor() {
+	}
+	
+	/**
+	 * Constructs a new TestResultFinalizationVisitor taking the given contents, e.g. of a stored
+	 * result, before the TraceStore.
+	 * 
+	 * @param images the screenshots by their image ids
+	 * @param files the files by their file ids
+	 */
+	public TestResultFinalizationVisitor(Map<Long, byte[]> images, Map<Long, byte[]> files) {
+		
+		for (Map.Entry<Long, byte[]> image : images.entrySet()) {
+			this.images.put(image.getKey(), new ImageData(image.getValue()));
+		}
+		for (Map.Entry<Long, byte[]> file : files.entrySet()) {
+			this.files.put(file.getKey(), new Data(file.getValue()));
+		}
+	}
+
 	@Override
 	protected void visit(ScreenshotTrace datatype) {
 		
 		if (datatype != null && datatype.getImageId() != null) {
-			ImageData image = ImageCache.getInstance().remove(datatype.getImageId());
+			ImageData image = images.get(datatype.getImageId().getValue());
+			
+			if (image == null) {
+				image = TraceStore.getInstance().getImage(datatype.getImageId());
+				images.put(datatype.getImageId().getValue(), image);
+			}
 			datatype.setScreenshot(image);
 			datatype.setImageId((Identifier) null);
 		}		
@@ -47,7 +86,12 @@ public class TestResultFinalizationVisitor extends TestResultVisitor {
 	protected void visit(FileTrace datatype) {
 		
 		if (datatype != null && datatype.getFileId() != null) {
-			Data data = DataCache.getInstance().remove(datatype.getFileId());
+			Data data = files.get(datatype.getFileId().getValue());
+			
+			if (data == null) {
+				data = TraceStore.getInstance().getData(datatype.getFileId());
+				files.put(datatype.getFileId().getValue(), data);
+			}
 			datatype.setFileContent(data);
 			datatype.setFileId((Identifier) null);
 		}		
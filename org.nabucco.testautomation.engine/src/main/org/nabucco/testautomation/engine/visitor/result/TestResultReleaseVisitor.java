@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.visitor.result;
+
+import org.nabucco.testautomation.engine.execution.blob.TraceStore;
+import org.nabucco.testautomation.result.facade.datatype.trace.FileTrace;
+import org.nabucco.testautomation.result.facade.datatype.trace.ScreenshotTrace;
+import org.nabucco.testautomation.result.facade.datatype.visitor.TestResultVisitor;
+
+/**
+ * TestResultReleaseVisitor
+ * <p>
+ * Releases the screenshots and files referenced by a TestConfigurationResult from the
+ * TraceStore, when the result is evicted.
+ * 
+ * @author agent
+ */
+public class TestResultReleaseVisitor extends TestResultVisitor {
+
+	@Override
+	protected void visit(ScreenshotTrace datatype) {
+		
+		if (datatype != null && datatype.getImageId() != null) {
+			TraceStore.getInstance().removeImage(datatype.getImageId());
+		}		
+		super.visit(datatype);
+	}
+	
+	@Override
+	protected void visit(FileTrace datatype) {
+		
+		if (datatype != null && datatype.getFileId() != null) {
+			TraceStore.getInstance().removeData(datatype.getFileId());
+		}		
+		super.visit(datatype);
+	}
+
+}
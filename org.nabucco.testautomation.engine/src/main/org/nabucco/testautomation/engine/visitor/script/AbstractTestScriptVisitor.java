@@ -21,6 +21,7 @@ import java.util.List;
 import org.nabucco.testautomation.engine.base.context.TestContext;
 import org.nabucco.testautomation.engine.base.engine.ExecutionController;
 import org.nabucco.testautomation.engine.exception.TestScriptException;
+import org.nabucco.testautomation.engine.execution.watchdog.ExecutionMonitor;
 import org.nabucco.testautomation.engine.sub.TestScriptEngine;
 import org.nabucco.testautomation.script.facade.datatype.dictionary.Action;
 import org.nabucco.testautomation.script.facade.datatype.dictionary.Assertion;
@@ -276,6 +277,9 @@ public abstract class AbstractTestScriptVisitor<A> implements TestDictionaryVisi
 		ExecutionController executionController = context.getExecutionController();
 
 		if (executionController != null) {
+			if (executionController instanceof ExecutionMonitor) {
+				((ExecutionMonitor) executionController).progress();
+			}
 			if (executionController.isPaused()) {
 				executionController.tryPause();
 			}
@@ -20,6 +20,9 @@ import org.nabucco.framework.base.facade.datatype.logger.NabuccoLogger;
 import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
 import org.nabucco.testautomation.engine.base.context.TestContext;
 import org.nabucco.testautomation.engine.exception.TestScriptException;
+import org.nabucco.testautomation.engine.execution.blob.TraceStore;
+import org.nabucco.testautomation.engine.execution.delta.ResultVersions;
+import org.nabucco.testautomation.engine.execution.job.TestExecutionJob;
 import org.nabucco.testautomation.engine.sub.TestScriptEngine;
 import org.nabucco.testautomation.property.facade.datatype.PropertyList;
 import org.nabucco.testautomation.result.facade.datatype.ActionResponse;
@@ -70,19 +73,25 @@ public class ActionVisitor extends AbstractTestScriptVisitor<TestScriptResult> {
             return;
         } else {
             response.setElementStatus(TestScriptElementStatusType.EXECUTED);
-            argument.getElementResultList().add(response);
+            ResultVersions.getInstance(getContext()).add(argument.getElementResultList(), response);
         }
 
         ActionTrace actionTrace = response.getActionTrace();
 
         if (actionTrace != null) {
+            TraceStore.getInstance().adopt(actionTrace);
+
+            if (getContext().getExecutionController() instanceof TestExecutionJob) {
+                ((TestExecutionJob) getContext().getExecutionController()).traceAdded(actionTrace);
+            }
 
             if (actionTrace.getName() == null || actionTrace.getName().getValue() == null) {
                 actionTrace.setName(action.getName());
             }
             actionTrace.setActionId(action.getIdentificationKey());
-            argument.getActionTraceList().add(actionTrace);
+            ResultVersions.getInstance(getContext()).add(argument.getActionTraceList(), actionTrace);
         }
+        ResultVersions.getInstance(getContext()).changed(argument);
 
         if (response.getActionStatus() == ActionStatusType.FAILED) {
             argument.setStatus(TestScriptStatusType.FAILED);
@@ -18,6 +18,7 @@ package org.nabucco.testautomation.engine.visitor.script;
 
 import org.nabucco.testautomation.engine.base.context.TestContext;
 import org.nabucco.testautomation.engine.base.util.TestResultHelper;
+import org.nabucco.testautomation.engine.execution.delta.ResultVersions;
 import org.nabucco.testautomation.engine.exception.TestScriptException;
 import org.nabucco.testautomation.engine.sub.TestScriptEngine;
 import org.nabucco.testautomation.property.facade.datatype.PropertyList;
@@ -67,7 +68,7 @@ public class EmbeddedTestScriptVisitor extends TestScriptVisitor {
 		try {
 			super.visit(script, argument);
 			subResult.setElementStatus(TestScriptElementStatusType.EXECUTED);
-			argument.getElementResultList().add(subResult);
+			ResultVersions.getInstance(getContext()).add(argument.getElementResultList(), subResult);
 		} catch (Exception ex) {
 			throw new TestScriptException("EmbeddedTestScript '"
 					+ script.getIdentificationKey() + "' failed. Cause: "
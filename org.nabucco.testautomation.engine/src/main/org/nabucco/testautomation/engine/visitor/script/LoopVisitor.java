@@ -23,6 +23,7 @@ import org.nabucco.framework.base.facade.datatype.logger.NabuccoLoggingFactory;
 import org.nabucco.testautomation.engine.base.context.TestContext;
 import org.nabucco.testautomation.engine.exception.BreakLoopException;
 import org.nabucco.testautomation.engine.exception.TestScriptException;
+import org.nabucco.testautomation.engine.execution.timing.ExecutionClock;
 import org.nabucco.testautomation.engine.sub.TestScriptEngine;
 import org.nabucco.testautomation.property.facade.datatype.NumericProperty;
 import org.nabucco.testautomation.result.facade.datatype.TestScriptResult;
@@ -89,7 +90,7 @@ public class LoopVisitor extends AbstractTestScriptVisitor<TestScriptResult> {
         Long end = null;
 
         if (maxDuration != null && maxDuration.longValue() > 0) {
-            end = System.currentTimeMillis() + maxDuration;
+            end = ExecutionClock.currentTimeMillis() + maxDuration;
         }
 
         // Index of loop
@@ -116,8 +117,8 @@ public class LoopVisitor extends AbstractTestScriptVisitor<TestScriptResult> {
                 break;
             }
 
-            if (end != null && waitTime != null && System.currentTimeMillis() + waitTime > end) {
-                waitTime = end - System.currentTimeMillis();
+            if (end != null && waitTime != null && ExecutionClock.currentTimeMillis() + waitTime > end) {
+                waitTime = end - ExecutionClock.currentTimeMillis();
             }
             wait(waitTime);
         }
@@ -130,7 +131,7 @@ public class LoopVisitor extends AbstractTestScriptVisitor<TestScriptResult> {
         if (loop.getName() != null) {
             logger.info("Starting While-Loop: '", loop.getName().getValue(), "'");
         }
-        Long end = System.currentTimeMillis() + maxDuration;
+        Long end = ExecutionClock.currentTimeMillis() + maxDuration;
         int counter = 0;
 
         // Index of loop
@@ -172,7 +173,7 @@ public class LoopVisitor extends AbstractTestScriptVisitor<TestScriptResult> {
         if (end == null || end.longValue() == 0) {
             return false;
         }
-        return end - System.currentTimeMillis() <= 0;
+        return end - ExecutionClock.currentTimeMillis() <= 0;
     }
 
     /**
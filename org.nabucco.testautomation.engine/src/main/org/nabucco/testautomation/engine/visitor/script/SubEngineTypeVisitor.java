@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.visitor.script;
+
+import java.util.Set;
+
+import org.nabucco.testautomation.engine.exception.TestScriptException;
+import org.nabucco.testautomation.script.facade.datatype.dictionary.Action;
+import org.nabucco.testautomation.script.facade.datatype.dictionary.EmbeddedTestScript;
+import org.nabucco.testautomation.script.facade.datatype.metadata.Metadata;
+import org.nabucco.testautomation.settings.facade.datatype.engine.SubEngineType;
+
+/**
+ * SubEngineTypeVisitor
+ * <p>
+ * Collects the {@link SubEngineType}s invoked by the Actions of a TestScript without executing
+ * it. The SubEngine of an Action is configured in its {@link Metadata}.
+ * 
+ * @author agent
+ */
+public class SubEngineTypeVisitor extends AbstractTestScriptVisitor<Set<SubEngineType>> {
+
+    /**
+     * Constructs a new SubEngineTypeVisitor.
+     */
+    public SubEngineTypeVisitor() {
+        super(null, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void visit(Action action, Set<SubEngineType> argument) throws TestScriptException {
+        Metadata metadata = action.getMetadata();
+
+        if (metadata == null || metadata.getSubEngine() == null || metadata.getSubEngine().getCode() == null
+                || metadata.getSubEngine().getCode().getValue() == null) {
+            // not executable, the Action does not use any proxy
+            return;
+        }
+        String code = metadata.getSubEngine().getCode().getValue();
+
+        try {
+            argument.add(SubEngineType.valueOf(code.toUpperCase()));
+        } catch (IllegalArgumentException ex) {
+            throw new TestScriptException("Unknown SubEngine '" + code + "' in Metadata of Action '"
+                    + action.getName().getValue() + "'");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void visit(EmbeddedTestScript script, Set<SubEngineType> argument) throws TestScriptException {
+
+        if (script.getTestScript() != null) {
+            super.visit(script, argument);
+        }
+    }
+
+    /**
+     * The TestScript is not executed, hence there is no ExecutionController to check.
+     */
+    @Override
+    protected void checkExecutionController() {
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.nabucco.testautomation.engine.base.client.ClientInteraction;
+import org.nabucco.testautomation.engine.base.exception.InterruptionException;
+import org.nabucco.testautomation.engine.exception.ExecutionServiceException;
+import org.nabucco.testautomation.engine.exception.JobNotFoundException;
+import org.nabucco.testautomation.engine.execution.cache.ResultRetentionPolicy;
+import org.nabucco.testautomation.engine.execution.job.TestExecutionJob;
+import org.nabucco.testautomation.settings.facade.datatype.engine.ExecutionStatusType;
+
+/**
+ * TestExecutionServiceImplTest
+ * <p>
+ * Stopping and suspending the jobs of the {@link TestExecutionServiceImpl}.
+ *
+ * @author agent
+ */
+public class TestExecutionServiceImplTest {
+
+    private static final long TIMEOUT = 10000;
+
+    private TestExecutionServiceImpl service;
+
+    @After
+    public void tearDown() {
+
+        if (service != null) {
+            service.shutdown(TIMEOUT);
+        }
+    }
+
+    @Test
+    public void partlyFinishedBatchIsCancelled() throws Exception {
+        service = createService(20);
+        List<Long> jobIds = service.startExecutions(Arrays.<TestExecutionJob> asList(new FinishingJob(),
+                new BlockingJob()));
+
+        awaitStatus(jobIds.get(0), ExecutionStatusType.FINISHED);
+        awaitStatus(jobIds.get(1), ExecutionStatusType.RUNNING);
+        service.stopExecutions(jobIds);
+
+        assertTrue("jobs completed", service.awaitIdle(TIMEOUT));
+        assertEquals(ExecutionStatusType.FINISHED, service.getJobStatus(jobIds.get(0)));
+        assertEquals(ExecutionStatusType.INTERRUPTED, service.getJobStatus(jobIds.get(1)));
+    }
+
+    @Test
+    public void evictedJobIsSkipped() throws Exception {
+        service = createService(0);
+        long finished = service.startExecution(new FinishingJob());
+        assertTrue("job completed", service.awaitIdle(TIMEOUT));
+
+        // the next job evicts the finished job from the cache
+        long blocking = service.startExecution(new BlockingJob());
+        awaitStatus(blocking, ExecutionStatusType.RUNNING);
+
+        service.pauseExecution(finished);
+        service.resumeExecution(finished);
+        service.stopExecution(finished);
+        service.stopExecutions(new ArrayList<Long>(Arrays.asList(finished, blocking)));
+
+        assertTrue("jobs completed", service.awaitIdle(TIMEOUT));
+        assertEquals(ExecutionStatusType.INTERRUPTED, service.getJobStatus(blocking));
+    }
+
+    @Test
+    public void suspendedJobsAreNotCancelled() throws Exception {
+        service = createService(20);
+        BlockingJob cancelled = new BlockingJob();
+        BlockingJob suspended = new BlockingJob();
+        long cancelledId = service.startExecution(cancelled);
+        long suspendedId = service.startExecution(suspended);
+        awaitStatus(cancelledId, ExecutionStatusType.RUNNING);
+        awaitStatus(suspendedId, ExecutionStatusType.RUNNING);
+
+        service.stopExecution(cancelledId);
+        service.suspendExecutions();
+
+        assertTrue("jobs completed", service.awaitIdle(TIMEOUT));
+        assertEquals(ExecutionStatusType.INTERRUPTED, service.getJobStatus(suspendedId));
+        assertTrue(suspended.isSuspended());
+        assertFalse(cancelled.isSuspended());
+    }
+
+    @Test(expected = JobNotFoundException.class)
+    public void unknownJobIsNotFound() throws Exception {
+        service = createService(20);
+        service.stopExecution(Long.MAX_VALUE);
+    }
+
+    private static TestExecutionServiceImpl createService(int retainedJobs) {
+        return new TestExecutionServiceImpl(2, 2, 2, 10, ExecutionMode.PLATFORM_THREADS,
+                new ResultRetentionPolicy(retainedJobs, 0, 0));
+    }
+
+    private void awaitStatus(long jobId, ExecutionStatusType status) throws ExecutionServiceException,
+            InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+
+        while (service.getJobStatus(jobId) != status) {
+            assertTrue("job " + jobId + " reached " + status, System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Job finishing immediately.
+     */
+    private static class FinishingJob extends TestExecutionJob {
+
+        @Override
+        protected void prepareExecution() {
+        }
+
+        @Override
+        protected void execute() throws InterruptionException {
+        }
+
+        @Override
+        protected void finalizeExecution() {
+        }
+
+        @Override
+        public ClientInteraction receiveClientInteraction() {
+            return null;
+        }
+    }
+
+    /**
+     * Job running until it is interrupted.
+     */
+    private static class BlockingJob extends FinishingJob {
+
+        @Override
+        protected void execute() throws InterruptionException {
+
+            while (!isInterrupted()) {
+                sleep(TIMEOUT);
+            }
+            tryInterruption();
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.blob;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * BlobStoreTest
+ * <p>
+ * Reference counting and spilling of the {@link BlobStore}.
+ *
+ * @author agent
+ */
+public class BlobStoreTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("blobs", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void identicalContentIsStoredOnce() {
+        BlobStore store = new BlobStore(directory, 1024);
+        long id = store.store(digest("content"), bytes("content"));
+
+        assertEquals(id, store.store(digest("content"), bytes("content")));
+        assertEquals(7, store.getMemoryUsage());
+
+        store.remove(id);
+        assertTrue("one reference left", store.contains(id));
+
+        store.remove(id);
+        assertFalse(store.contains(id));
+        assertEquals(0, store.getMemoryUsage());
+    }
+
+    @Test
+    public void retainAddsAReference() {
+        BlobStore store = new BlobStore(directory, 1024);
+        long id = store.store(digest("content"), bytes("content"));
+
+        assertTrue(store.retain(id));
+        assertTrue(store.retain(id));
+        store.remove(id);
+        store.remove(id);
+        assertTrue(store.contains(id));
+
+        store.remove(id);
+        assertFalse(store.contains(id));
+        assertFalse(store.retain(id));
+    }
+
+    @Test
+    public void collidingDigestPrefixGetsNextId() {
+        BlobStore store = new BlobStore(directory, 1024);
+        byte[] first = digest("first");
+        byte[] second = Arrays.copyOf(first, first.length);
+        second[second.length - 1] ^= 1;
+
+        long firstId = store.store(first, bytes("first"));
+        long secondId = store.store(second, bytes("other"));
+
+        assertEquals(firstId + 1, secondId);
+        assertArrayEquals(bytes("first"), store.get(firstId));
+        assertArrayEquals(bytes("other"), store.get(secondId));
+
+        // the first content is not shared with the second one
+        store.remove(firstId);
+        assertFalse(store.contains(firstId));
+        assertTrue(store.contains(secondId));
+    }
+
+    @Test
+    public void spilledContentIsReadByRange() {
+        BlobStore store = new BlobStore(directory, 100);
+        byte[] content = new byte[1000];
+
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        long id = store.store(digest("spilled"), content);
+        store.put(id + 1, new byte[50]);
+
+        assertEquals(50, store.getMemoryUsage());
+        assertEquals(1000, store.getDiskUsage());
+        assertArrayEquals(content, store.get(id));
+        assertArrayEquals(Arrays.copyOfRange(content, 990, 1000), store.read(id, 990, 100));
+        assertEquals(0, store.read(id, 2000, 10).length);
+        assertNull(store.read(id + 2, 0, 10));
+
+        store.remove(id);
+        assertEquals(0, store.getDiskUsage());
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes();
+    }
+
+    private static byte[] digest(String content) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(bytes(content));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.delta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nabucco.testautomation.engine.base.util.TestResultHelper;
+import org.nabucco.testautomation.engine.delta.ResultChange;
+import org.nabucco.testautomation.engine.delta.ResultDelta;
+import org.nabucco.testautomation.result.facade.datatype.TestConfigurationResult;
+import org.nabucco.testautomation.result.facade.datatype.TestResult;
+import org.nabucco.testautomation.result.facade.datatype.TestScriptResult;
+
+/**
+ * ResultVersionsTest
+ * <p>
+ * Deltas of the {@link ResultVersions} of a result.
+ *
+ * @author agent
+ */
+public class ResultVersionsTest {
+
+    private ResultVersions versions;
+
+    private TestConfigurationResult root;
+
+    @Before
+    public void setUp() {
+        versions = new ResultVersions();
+        root = new TestConfigurationResult();
+    }
+
+    @Test
+    public void changesSinceAVersion() {
+        TestResult first = add(root, 1L);
+        TestResult second = add(root, 2L);
+        long known = versions.getVersion();
+        versions.changed(first, root);
+
+        ResultDelta delta = versions.getChanges(known);
+
+        assertEquals(known + 1, delta.getVersion());
+        assertEquals(1, delta.getChanges().size());
+        assertEquals(0, delta.getChanges().get(0).getIndex());
+        assertEquals(3, versions.getChanges(0).getVersion());
+        assertEquals(2, versions.getChanges(0).getChanges().size());
+        assertEquals(0, versions.getChanges(versions.getVersion()).getChanges().size());
+        assertEquals(1, indexOf(versions.getChanges(0).getChanges(), second));
+    }
+
+    @Test
+    public void changesAreCopiesWithoutChildren() {
+        TestResult parent = add(root, 1L);
+        TestResult child = new TestResult();
+        child.setTestConfigElementId(2L);
+        versions.addTestResult(child, parent);
+        versions.changed(child, parent);
+
+        List<ResultChange> changes = versions.getChanges(0).getChanges();
+        ResultChange parentChange = changes.get(0);
+        ResultChange childChange = changes.get(1);
+
+        assertNotSame(parent, parentChange.getTestResult());
+        assertEquals(0, parentChange.getTestResult().getTestResultList().size());
+        assertNull(parentChange.getParentElementId());
+        assertEquals(Long.valueOf(1L), childChange.getParentElementId());
+        assertEquals(0, childChange.getIndex());
+    }
+
+    @Test
+    public void detachedNodesAreLeftOutUntilMoved() {
+        TestResult branch = new TestResult();
+        TestResult child = new TestResult();
+        versions.addTestResult(child, branch);
+        versions.changed(child, branch);
+
+        assertEquals(0, versions.getChanges(0).getChanges().size());
+
+        TestResult parent = add(root, 1L);
+        long known = versions.getVersion();
+        versions.addTestResult(child, parent);
+        versions.moved(child, parent);
+
+        List<ResultChange> changes = versions.getChanges(known).getChanges();
+        assertEquals(1, changes.size());
+        assertEquals(Long.valueOf(1L), changes.get(0).getParentElementId());
+    }
+
+    @Test
+    public void removedResultIsSentWithoutIndex() {
+        TestResult parent = add(root, 1L);
+        TestResult child = new TestResult();
+        versions.addTestResult(child, parent);
+        versions.changed(child, parent);
+        long known = versions.getVersion();
+
+        versions.removeTestResult(child, parent);
+        versions.changed(child);
+
+        List<ResultChange> changes = versions.getChanges(known).getChanges();
+        assertEquals(1, changes.size());
+        assertEquals(-1, changes.get(0).getIndex());
+    }
+
+    @Test
+    public void addedResultContainsItsChildren() {
+        TestResult resumed = new TestResult();
+        TestResult child = new TestResult();
+        TestResultHelper.addTestResult(child, resumed);
+        versions.add(resumed.getTestScriptResultList(), TestResultHelper.createTestScriptResult());
+        versions.addTestResult(resumed, root);
+        versions.added(resumed, root);
+
+        ResultChange change = versions.getChanges(0).getChanges().get(0);
+
+        assertEquals(1, change.getTestResult().getTestResultList().size());
+        assertEquals(1, change.getTestResult().getTestScriptResultList().size());
+    }
+
+    @Test
+    public void scriptResultsAreVersioned() {
+        TestResult parent = add(root, 1L);
+        TestScriptResult script = TestResultHelper.createTestScriptResult();
+        versions.add(parent.getTestScriptResultList(), script);
+        versions.changed(script, parent);
+
+        ResultChange change = versions.getChanges(1).getChanges().get(0);
+
+        assertNull(change.getTestResult());
+        assertNotSame(script, change.getTestScriptResult());
+        assertEquals(0, change.getIndex());
+        assertTrue(versions.remove(parent.getTestScriptResultList(), 0) == script);
+    }
+
+    private TestResult add(TestConfigurationResult parent, long elementId) {
+        TestResult result = new TestResult();
+        result.setTestConfigElementId(elementId);
+        versions.addTestResult(result, parent);
+        versions.changed(result, parent);
+        return result;
+    }
+
+    private static int indexOf(List<ResultChange> changes, TestResult result) {
+
+        for (ResultChange change : changes) {
+            if (change.getTestResult().getTestConfigElementId().getValue()
+                    .equals(result.getTestConfigElementId().getValue())) {
+                return change.getIndex();
+            }
+        }
+        return -1;
+    }
+
+}
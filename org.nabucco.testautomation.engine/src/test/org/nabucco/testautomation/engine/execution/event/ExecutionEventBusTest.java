@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * ExecutionEventBusTest
+ * <p>
+ * Asynchronous delivery of the {@link ExecutionEventBus}.
+ *
+ * @author agent
+ */
+public class ExecutionEventBusTest {
+
+    private final ExecutionEventBus bus = ExecutionEventBus.getInstance();
+
+    private final List<ExecutionEventListener> listeners = new CopyOnWriteArrayList<ExecutionEventListener>();
+
+    @After
+    public void tearDown() {
+
+        for (ExecutionEventListener listener : listeners) {
+            bus.unsubscribe(listener);
+        }
+    }
+
+    @Test
+    public void eventsAreDeliveredInOrder() throws InterruptedException {
+        RecordingListener listener = subscribe(new RecordingListener(100));
+
+        for (int i = 0; i < 100; i++) {
+            bus.publish(ExecutionEventType.JOB_STARTED, i, "job", -1, null);
+        }
+
+        assertTrue("events delivered", listener.await());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, listener.events.get(i).getJobId());
+        }
+    }
+
+    @Test
+    public void failingListenerDoesNotStopDelivery() throws InterruptedException {
+        subscribe(new ExecutionEventListener() {
+
+            @Override
+            public void executionEvent(ExecutionEvent event) {
+                throw new IllegalStateException("listener failed");
+            }
+        });
+        RecordingListener listener = subscribe(new RecordingListener(2));
+
+        bus.publish(ExecutionEventType.JOB_STARTED, 1, "job", -1, null);
+        bus.publish(ExecutionEventType.JOB_FINISHED, 1, "job", TimeUnit.MILLISECONDS.toNanos(5), "FINISHED");
+
+        assertTrue("events delivered", listener.await());
+        assertEquals(ExecutionEventType.JOB_FINISHED, listener.events.get(1).getType());
+        assertEquals(5, listener.events.get(1).getDuration());
+        assertEquals("FINISHED", listener.events.get(1).getStatus());
+    }
+
+    @Test
+    public void unsubscribedListenerGetsNoEvents() throws InterruptedException {
+        RecordingListener removed = subscribe(new RecordingListener(1));
+        RecordingListener listener = subscribe(new RecordingListener(1));
+        bus.unsubscribe(removed);
+
+        bus.publish(ExecutionEventType.JOB_STARTED, 1, "job", -1, null);
+
+        assertTrue("events delivered", listener.await());
+        assertEquals(0, removed.events.size());
+    }
+
+    private <T extends ExecutionEventListener> T subscribe(T listener) {
+        listeners.add(listener);
+        bus.subscribe(listener);
+        return listener;
+    }
+
+    /**
+     * Records the delivered events.
+     */
+    private static class RecordingListener implements ExecutionEventListener {
+
+        private final List<ExecutionEvent> events = new CopyOnWriteArrayList<ExecutionEvent>();
+
+        private final CountDownLatch latch;
+
+        RecordingListener(int expected) {
+            latch = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void executionEvent(ExecutionEvent event) {
+            events.add(event);
+            latch.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return latch.await(5, TimeUnit.SECONDS);
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.job;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nabucco.testautomation.engine.base.client.ClientInteraction;
+import org.nabucco.testautomation.engine.base.exception.InterruptionException;
+import org.nabucco.testautomation.engine.execution.TestExecutionEvent;
+import org.nabucco.testautomation.engine.execution.TestExecutionListener;
+import org.nabucco.testautomation.settings.facade.datatype.engine.ExecutionStatusType;
+
+/**
+ * TestExecutionJobTest
+ * <p>
+ * Cancelling a {@link TestExecutionJob} while an operation is in flight.
+ *
+ * @author agent
+ */
+public class TestExecutionJobTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private ExecutorService forkExecutor;
+
+    private OperationJob job;
+
+    private Thread runner;
+
+    private volatile boolean notified;
+
+    @Before
+    public void setUp() {
+        forkExecutor = Executors.newCachedThreadPool();
+        job = new OperationJob();
+        job.setId(1L);
+        job.setForkExecutor(forkExecutor);
+        job.addTestExecutionListener(new TestExecutionListener() {
+
+            @Override
+            public void testExecutionFinished(TestExecutionEvent e) {
+                notified = true;
+            }
+        });
+        runner = new Thread(job);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        job.release.countDown();
+        runner.join(TIMEOUT);
+        forkExecutor.shutdownNow();
+    }
+
+    @Test
+    public void operationIsAwaited() throws InterruptedException {
+        runner.start();
+        assertTrue("operation started", job.started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        job.release.countDown();
+        runner.join(TIMEOUT);
+
+        assertEquals(ExecutionStatusType.FINISHED, job.getStatus());
+        assertTrue(job.finalizedAfterReturn);
+        assertTrue(notified);
+    }
+
+    @Test
+    public void cancelDoesNotWaitForOperation() throws InterruptedException {
+        runner.start();
+        assertTrue("operation started", job.started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        job.interrupt();
+        awaitStatus(ExecutionStatusType.INTERRUPTED);
+
+        // the proxies and the job slot are kept by the abandoned operation
+        assertTrue(runner.isAlive());
+        assertFalse(job.finalized);
+        assertFalse(notified);
+
+        job.release.countDown();
+        runner.join(TIMEOUT);
+
+        assertFalse(runner.isAlive());
+        assertTrue(job.finalizedAfterReturn);
+        assertTrue(notified);
+        assertEquals(ExecutionStatusType.INTERRUPTED, job.getStatus());
+    }
+
+    private void awaitStatus(ExecutionStatusType status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+
+        while (job.getStatus() != status) {
+            assertTrue("job reached " + status, System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Job waiting for an operation executed by its operation executor, like a SubEngine call.
+     */
+    private static class OperationJob extends TestExecutionJob {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private volatile boolean returned;
+
+        private volatile boolean finalized;
+
+        private volatile boolean finalizedAfterReturn;
+
+        @Override
+        protected void prepareExecution() {
+        }
+
+        @Override
+        protected void execute() throws InterruptionException {
+            FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+
+                @Override
+                public Void call() {
+                    started.countDown();
+
+                    // like a remote call, the operation does not react to interruption
+                    while (release.getCount() > 0) {
+                        try {
+                            release.await();
+                        } catch (InterruptedException ex) {
+                            continue;
+                        }
+                    }
+                    returned = true;
+                    return null;
+                }
+            });
+            getOperationExecutor().execute(task);
+
+            try {
+                task.get();
+            } catch (InterruptedException ex) {
+                task.cancel(true);
+                tryInterruption();
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        @Override
+        protected void finalizeExecution() {
+            finalized = true;
+            finalizedAfterReturn = returned;
+        }
+
+        @Override
+        public ClientInteraction receiveClientInteraction() {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.execution.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nabucco.testautomation.engine.execution.store.ResultStore.BlobSource;
+import org.nabucco.testautomation.result.facade.datatype.TestConfigurationResult;
+import org.nabucco.testautomation.settings.facade.datatype.engine.ExecutionStatusType;
+import org.nabucco.testautomation.settings.facade.datatype.engine.TestExecutionInfo;
+
+/**
+ * ResultStoreTest
+ * <p>
+ * Writes, reloads and truncates the segments of a {@link ResultStore}.
+ *
+ * @author agent
+ */
+public class ResultStoreTest {
+
+    private static final long STORE_SIZE = 1024L * 1024 * 1024;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("results", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void writtenJobIsReloaded() throws IOException {
+        byte[] image = content(200 * 1024, 1);
+        byte[] file = content(10, 2);
+        new ResultStore(directory, STORE_SIZE).write(1L, info(), 5L, result("first"), blobs(7L, image),
+                blobs(8L, file));
+
+        ResultStore store = new ResultStore(directory, STORE_SIZE);
+        StoredResult stored = store.get(1L);
+
+        assertNotNull(stored);
+        assertEquals(ExecutionStatusType.FINISHED, stored.getTestExecutionInfo().getTestStatus());
+        assertEquals(5L, stored.getVersion());
+        assertEquals("first", store.readResult(stored).getName().getValue());
+        assertEquals(image.length, stored.getImageLength(7L));
+        assertArrayEquals(image, store.readImage(stored, 7L, 0, image.length));
+        assertArrayEquals(file, store.readFile(stored, 8L, 0, 100));
+        assertEquals(1L, store.getMaxJobId());
+    }
+
+    @Test
+    public void blobsAreReadByRange() throws IOException {
+        byte[] image = content(100 * 1024, 3);
+        ResultStore store = new ResultStore(directory, STORE_SIZE);
+        StoredResult stored = store.write(1L, info(), 1L, result("range"), blobs(7L, image), null);
+
+        assertArrayEquals(Arrays.copyOfRange(image, 70000, 70100), store.readImage(stored, 7L, 70000, 100));
+        assertArrayEquals(Arrays.copyOfRange(image, image.length - 10, image.length),
+                store.readImage(stored, 7L, image.length - 10, 100));
+        assertEquals(0, store.readImage(stored, 7L, image.length + 1, 100).length);
+        assertNull(store.readImage(stored, 8L, 0, 100));
+        assertNull(store.readFile(stored, 7L, 0, 100));
+    }
+
+    @Test
+    public void missingBlobIsSkipped() throws IOException {
+        ResultStore store = new ResultStore(directory, STORE_SIZE);
+        BlobSource images = blobs(7L, content(10, 4));
+        Map<Long, byte[]> none = new HashMap<Long, byte[]>();
+        none.put(9L, null);
+        StoredResult stored = store.write(1L, info(), 1L, result("missing"), images, new MapSource(none));
+
+        assertEquals(-1, stored.getFileLength(9L));
+        assertEquals(1, new ResultStore(directory, STORE_SIZE).get(1L).getImageIds().size());
+    }
+
+    @Test
+    public void rewrittenJobReplacesItsResult() throws IOException {
+        ResultStore store = new ResultStore(directory, STORE_SIZE);
+        store.write(1L, info(), 1L, result("old"), null, null);
+        StoredResult stored = store.write(1L, info(), 2L, result("new"), null, null);
+
+        assertSame(stored, store.get(1L));
+        assertEquals("new", store.readResult(stored).getName().getValue());
+        assertEquals("new", new ResultStore(directory, STORE_SIZE).readResult(stored).getName().getValue());
+    }
+
+    @Test
+    public void uncommittedTailIsTruncated() throws IOException {
+        new ResultStore(directory, STORE_SIZE).write(1L, info(), 1L, result("committed"), null, null);
+        File segment = getSegment();
+        long committed = segment.length();
+
+        // the records of a job written without its committing record, followed by garbage
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            byte[] garbage = content(500, 5);
+            file.seek(committed);
+            file.write(garbage);
+        } finally {
+            file.close();
+        }
+
+        ResultStore store = new ResultStore(directory, STORE_SIZE);
+
+        assertTrue(store.contains(1L));
+        assertEquals(committed, segment.length());
+        assertEquals(committed, store.getDiskUsage());
+    }
+
+    @Test
+    public void corruptCommitIsNotIndexed() throws IOException {
+        ResultStore store = new ResultStore(directory, STORE_SIZE);
+        store.write(1L, info(), 1L, result("first"), null, null);
+        long committed = getSegment().length();
+        store.write(2L, info(), 1L, result("second"), null, null);
+        File segment = getSegment();
+
+        // a zero-filled end of the committing record keeps its header valid
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            file.seek(segment.length() - 8);
+            file.write(new byte[8]);
+        } finally {
+            file.close();
+        }
+
+        store = new ResultStore(directory, STORE_SIZE);
+
+        assertTrue(store.contains(1L));
+        assertFalse(store.contains(2L));
+        assertEquals(committed, segment.length());
+    }
+
+    @Test
+    public void corruptResultIsDetectedOnRead() throws IOException {
+        ResultStore store = new ResultStore(directory, STORE_SIZE);
+        StoredResult stored = store.write(1L, info(), 1L, result("corrupt"), null, null);
+        RandomAccessFile file = new RandomAccessFile(getSegment(), "rw");
+
+        // flips the last byte of the deflated result, just before the committing record
+        try {
+            file.seek(findInfo(file) - 1);
+            int b = file.read();
+            file.seek(file.getFilePointer() - 1);
+            file.write(b ^ 0xFF);
+        } finally {
+            file.close();
+        }
+
+        try {
+            new ResultStore(directory, STORE_SIZE).readResult(stored);
+            fail("corrupt result read");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void corruptBlobIsDetectedOnRangedRead() throws IOException {
+        byte[] image = content(100 * 1024, 5);
+        ResultStore store = new ResultStore(directory, STORE_SIZE);
+        StoredResult stored = store.write(1L, info(), 1L, result("corrupt"), blobs(7L, image), null);
+        RandomAccessFile file = new RandomAccessFile(getSegment(), "rw");
+
+        // flips the last byte of the screenshot, the first record of the segment
+        try {
+            file.seek(ResultStore.HEADER_SIZE + image.length - 1);
+            file.write(image[image.length - 1] ^ 0xFF);
+        } finally {
+            file.close();
+        }
+
+        try {
+            new ResultStore(directory, STORE_SIZE).readImage(stored, 7L, 0, 100);
+            fail("corrupt screenshot read");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Finds the position of the committing record, the last record of the segment.
+     */
+    private static long findInfo(RandomAccessFile file) throws IOException {
+        long position = 0;
+
+        while (true) {
+            file.seek(position + 4);
+            int type = file.readInt();
+
+            if (type == ResultStore.INFO) {
+                return position;
+            }
+            file.seek(position + 24);
+            position += ResultStore.HEADER_SIZE + file.readLong();
+        }
+    }
+
+    private File getSegment() {
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    private static TestExecutionInfo info() {
+        TestExecutionInfo info = new TestExecutionInfo();
+        info.setTestStatus(ExecutionStatusType.FINISHED);
+        return info;
+    }
+
+    private static TestConfigurationResult result(String name) {
+        TestConfigurationResult result = new TestConfigurationResult();
+        result.setName(name);
+        return result;
+    }
+
+    private static byte[] content(int length, long seed) {
+        byte[] content = new byte[length];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+
+    private static BlobSource blobs(long id, byte[] content) {
+        Map<Long, byte[]> blobs = new HashMap<Long, byte[]>();
+        blobs.put(id, content);
+        return new MapSource(blobs);
+    }
+
+    private static final class MapSource implements BlobSource {
+
+        private final Map<Long, byte[]> blobs;
+
+        private MapSource(Map<Long, byte[]> blobs) {
+            this.blobs = blobs;
+        }
+
+        @Override
+        public Collection<Long> getIds() {
+            return blobs.keySet();
+        }
+
+        @Override
+        public byte[] read(long id, long offset, int length) {
+            byte[] content = blobs.get(id);
+
+            if (content == null) {
+                return null;
+            }
+            int from = (int) Math.min(offset, content.length);
+            return Arrays.copyOfRange(content, from, Math.min(from + length, content.length));
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2012 PRODYNA AG
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/eclipse-1.0.php or
+ * http://www.nabucco.org/License.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nabucco.testautomation.engine.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+/**
+ * FrameStreamTest
+ * <p>
+ * Round trips through {@link FrameOutputStream} and {@link FrameInputStream}.
+ *
+ * @author agent
+ */
+public class FrameStreamTest {
+
+    private static final int THRESHOLD = 1024;
+
+    @Test
+    public void compressibleDataIsDeflated() throws IOException {
+        byte[] data = new byte[3 * FrameOutputStream.FRAME_SIZE + 17];
+
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 7);
+        }
+        byte[] wire = write(data, data.length);
+
+        assertTrue("deflated frames are smaller", wire.length < data.length / 2);
+        assertArrayEquals(data, read(wire));
+    }
+
+    @Test
+    public void incompressibleDataIsSentRaw() throws IOException {
+        byte[] data = new byte[2 * FrameOutputStream.FRAME_SIZE + 5];
+        new Random(42).nextBytes(data);
+        byte[] wire = write(data, data.length);
+
+        // type and length of each of the three frames
+        assertEquals(data.length + 3 * 5, wire.length);
+        assertArrayEquals(data, read(wire));
+    }
+
+    @Test
+    public void eachFlushSendsAFrame() throws IOException {
+        byte[] data = new byte[10 * 100];
+
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        byte[] wire = write(data, 100);
+
+        // small frames are below the threshold and never deflated
+        assertEquals(data.length + 10 * 5, wire.length);
+        assertArrayEquals(data, read(wire));
+    }
+
+    @Test
+    public void singleBytesRoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        FrameOutputStream out = new FrameOutputStream(bytes, THRESHOLD, Deflater.BEST_SPEED);
+
+        for (int i = 0; i < 300; i++) {
+            out.write(i);
+        }
+        out.close();
+        InputStream in = new FrameInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+        for (int i = 0; i < 300; i++) {
+            assertEquals(i & 0xFF, in.read());
+        }
+        assertEquals(-1, in.read());
+        in.close();
+    }
+
+    @Test
+    public void corruptFrameIsRejected() throws IOException {
+        FrameInputStream in = new FrameInputStream(new ByteArrayInputStream(new byte[] { 7, 0, 0, 0, 1, 0 }));
+
+        try {
+            in.read();
+            fail("corrupt frame read");
+        } catch (IOException ex) {
+            // expected
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void incompleteFrameIsRejected() throws IOException {
+        byte[] wire = write(new byte[100], 100);
+        byte[] truncated = new byte[wire.length - 1];
+        System.arraycopy(wire, 0, truncated, 0, truncated.length);
+
+        try {
+            read(truncated);
+            fail("incomplete frame read");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void endedStreamRefusesToDeflate() throws IOException {
+        FrameOutputStream out = new FrameOutputStream(new ByteArrayOutputStream(), THRESHOLD, Deflater.BEST_SPEED);
+        out.end();
+        out.write(new byte[2 * THRESHOLD]);
+
+        try {
+            out.flush();
+            fail("ended stream deflated");
+        } catch (IOException ex) {
+            // expected
+        }
+        // closing an ended stream does not flush again
+        out.close();
+    }
+
+    private static byte[] write(byte[] data, int flushSize) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        FrameOutputStream out = new FrameOutputStream(bytes, THRESHOLD, Deflater.BEST_SPEED);
+
+        for (int offset = 0; offset < data.length; offset += flushSize) {
+            out.write(data, offset, Math.min(flushSize, data.length - offset));
+            out.flush();
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] read(byte[] wire) throws IOException {
+        InputStream in = new FrameInputStream(new ByteArrayInputStream(wire));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+
+        try {
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                bytes.write(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes.toByteArray();
+    }
+
+}